@@ -0,0 +1,98 @@
+package com.atr.crud.benchmark;
+
+import com.atr.crud.CrudApplication;
+import com.atr.crud.domain.Role;
+import com.atr.crud.domain.Ticket;
+import com.atr.crud.domain.User;
+import com.atr.crud.repository.UserRepository;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+//
+// Application context on a private in-memory H2 database (no web server, no SQL logging) seeded with
+// 'users' users, each with 'rolesPerUser' roles and 'ticketsPerUser' tickets.
+//
+final class BenchmarkData {
+
+    private static final int SEED_CHUNK_SIZE = 500;
+
+    private BenchmarkData() {
+    }
+
+    static ConfigurableApplicationContext start(int users, int rolesPerUser, int ticketsPerUser) {
+        ConfigurableApplicationContext context = SpringApplication.run(CrudApplication.class,
+                "--spring.main.web-application-type=none",
+                "--spring.main.banner-mode=off",
+                "--spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN");
+
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        TransactionTemplate transactionTemplate = context.getBean(TransactionTemplate.class);
+
+        for (int from = 0; from < users; from += SEED_CHUNK_SIZE) {
+            List<User> chunk = new ArrayList<>();
+            for (int index = from; index < Math.min(from + SEED_CHUNK_SIZE, users); index++) {
+                chunk.add(newUser(index, rolesPerUser, ticketsPerUser, true));
+            }
+            transactionTemplate.executeWithoutResult(status -> userRepository.saveAll(chunk));
+        }
+
+        return context;
+    }
+
+    //
+    // Detached user graph. Without back references (role users, ticket user) when 'backReferences' is false.
+    //
+    static User newUser(int index, int rolesPerUser, int ticketsPerUser, boolean backReferences) {
+        OffsetDateTime now = OffsetDateTime.now();
+
+        User user = new User();
+        user.setType("Type " + (index % 5));
+        user.setName("Oscar" + index);
+        user.setSurname("Bendicho Aylagas");
+        user.setAge(18 + index % 60);
+        user.setNickname("Bendi");
+        user.setAddress("Avenida Diagonal 808, 12º 3ª");
+        user.setZipcode("08019");
+        user.setCountry("Spain");
+        user.setLanguage("es-ES");
+        user.setTimezone("Europe/Madrid");
+        user.setDescription("Description of user " + index);
+        user.setCreatedAt(now);
+        user.setUpdatedAt(now);
+
+        for (int roleIndex = 0; roleIndex < rolesPerUser; roleIndex++) {
+            Role role = new Role();
+            role.setCode("role" + roleIndex);
+            role.setCreatedAt(now);
+            role.setUpdatedAt(now);
+            if (backReferences) {
+                user.addRole(role);
+            }
+            else {
+                user.getRoles().add(role);
+            }
+        }
+
+        for (int ticketIndex = 0; ticketIndex < ticketsPerUser; ticketIndex++) {
+            Ticket ticket = new Ticket();
+            ticket.setName("ticket " + ticketIndex + " of " + index);
+            ticket.setCreatedAt(now);
+            ticket.setUpdatedAt(now);
+            if (backReferences) {
+                user.addTicket(ticket);
+            }
+            else {
+                user.getTickets().add(ticket);
+            }
+        }
+
+        return user;
+    }
+}
@@ -0,0 +1,86 @@
+package com.atr.crud.benchmark;
+
+import com.atr.crud.domain.Role;
+import com.atr.crud.domain.User;
+import com.atr.crud.filterrepository.fulltext.FullTextIndex;
+import com.atr.crud.filterrepository.rsql.CustomRsqlVisitor;
+import com.atr.crud.filterrepository.rsql.RsqlFilterCache;
+import com.atr.crud.filterrepository.rsql.TypeRegistry;
+import cz.jirutka.rsql.parser.RSQLParser;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+//
+// RSQL filter parse and compile to a Specification, uncached and through RsqlFilterCache, and its compiled in-memory
+// predicate applied to users already loaded.
+//
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilterBenchmark {
+
+    @Param({"name==Oscar1*", "age=gt=40;roles.code==admin", "(id==1 and roles.code==admin) or tickets.id==2"})
+    String q;
+
+    private ConfigurableApplicationContext context;
+
+    private TypeRegistry typeRegistry;
+
+    private RsqlFilterCache rsqlFilterCache;
+
+    private FullTextIndex fullTextIndex;
+
+    private List<User> users;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkData.start(0, 0, 0);
+        typeRegistry = context.getBean(TypeRegistry.class);
+        rsqlFilterCache = context.getBean(RsqlFilterCache.class);
+        fullTextIndex = context.getBean(FullTextIndex.class);
+
+        Role admin = new Role();
+        admin.setCode("admin");
+        users = new ArrayList<>();
+        for (int index = 0; index < 1000; index++) {
+            User user = new User();
+            user.setId((long) index);
+            user.setName("Oscar" + index);
+            user.setAge(index % 80);
+            if (index % 3 == 0) {
+                user.getRoles().add(admin);
+            }
+            users.add(user);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Specification<User> parseAndCompile() {
+        return new RSQLParser().parse(q).accept(new CustomRsqlVisitor<>(typeRegistry.getTypes(User.class), fullTextIndex));
+    }
+
+    @Benchmark
+    public Specification<User> cachedCompile() {
+        return rsqlFilterCache.compile(User.class, q);
+    }
+
+    @Benchmark
+    public long filterInMemory() {
+        Predicate<User> predicate = rsqlFilterCache.compilePredicate(User.class, User.class, q);
+        return users.stream().filter(predicate).count();
+    }
+}
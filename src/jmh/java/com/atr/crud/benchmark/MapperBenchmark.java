@@ -0,0 +1,90 @@
+package com.atr.crud.benchmark;
+
+import com.atr.crud.CrudMapper;
+import com.atr.crud.Mapper;
+import com.atr.crud.controller.TicketDTO;
+import com.atr.crud.controller.TicketMapper;
+import com.atr.crud.controller.UserDTO;
+import com.atr.crud.controller.UserMapper;
+import com.atr.crud.domain.Ticket;
+import com.atr.crud.domain.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//
+// Entity to DTO mapping: CrudMapper, reflective Mapper and MapStruct, for a user with its roles and tickets and for a
+// single ticket. Built without back references, except the user mapped by Mapper (cycle safe, Ticket.user is the
+// already mapped UserDTO).
+//
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapperBenchmark {
+
+    @Param("3")
+    int rolesPerUser;
+
+    @Param({"2", "10"})
+    int ticketsPerUser;
+
+    private User user;
+
+    private Ticket ticket;
+
+    private User userWithBackReferences;
+
+    private final List<String> columns = List.of("id", "name", "age", "roles.code", "tickets.name");
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        user = BenchmarkData.newUser(1, rolesPerUser, ticketsPerUser, false);
+        ticket = BenchmarkData.newUser(2, 0, 1, false).getTickets().get(0);
+        userWithBackReferences = BenchmarkData.newUser(3, rolesPerUser, ticketsPerUser, true);
+    }
+
+    @Benchmark
+    public UserDTO crudMapper() {
+        UserDTO userDTO = new UserDTO();
+        new CrudMapper<User, UserDTO>().map(user, userDTO, null);
+        return userDTO;
+    }
+
+    @Benchmark
+    public UserDTO crudMapperColumns() {
+        UserDTO userDTO = new UserDTO();
+        new CrudMapper<User, UserDTO>().map(user, userDTO, columns);
+        return userDTO;
+    }
+
+    @Benchmark
+    public UserDTO reflectiveMapper() {
+        return Mapper.map(userWithBackReferences, UserDTO.class);
+    }
+
+    @Benchmark
+    public UserDTO mapStruct() {
+        return UserMapper.INSTANCE.map(user);
+    }
+
+    @Benchmark
+    public TicketDTO ticketCrudMapper() {
+        TicketDTO ticketDTO = new TicketDTO();
+        new CrudMapper<Ticket, TicketDTO>().map(ticket, ticketDTO, null);
+        return ticketDTO;
+    }
+
+    @Benchmark
+    public TicketDTO ticketReflectiveMapper() {
+        return Mapper.map(ticket, TicketDTO.class);
+    }
+
+    @Benchmark
+    public TicketDTO ticketMapStruct() {
+        return TicketMapper.INSTANCE.map(ticket);
+    }
+}
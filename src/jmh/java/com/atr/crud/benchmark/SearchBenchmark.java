@@ -0,0 +1,91 @@
+package com.atr.crud.benchmark;
+
+import com.atr.crud.controller.UserDTO;
+import com.atr.crud.filterrepository.SearchPage;
+import com.atr.crud.repository.UserRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//
+// FilterRepositoryImpl search through UserRepository, for column sets (';' separated), page sizes and relation fan-out.
+// searchPageJson and searchJson compare a page serialized from UserDTOs with one written straight from the rows.
+//
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+    @Param("1000")
+    int users;
+
+    @Param("3")
+    int rolesPerUser;
+
+    @Param({"2", "10"})
+    int ticketsPerUser;
+
+    @Param({"name", "name;age;roles.code", "name;roles;tickets"})
+    String columns;
+
+    @Param({"20", "200"})
+    int pageSize;
+
+    private ConfigurableApplicationContext context;
+
+    private UserRepository userRepository;
+
+    private ObjectMapper objectMapper;
+
+    private List<String> columnList;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkData.start(users, rolesPerUser, ticketsPerUser);
+        userRepository = context.getBean(UserRepository.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+        columnList = Arrays.asList(columns.split(";"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<UserDTO> searchPage() {
+        return userRepository.searchAs(UserDTO.class, columnList, null, 1, pageSize, "id", "desc");
+    }
+
+    @Benchmark
+    public List<UserDTO> searchFiltered() {
+        return userRepository.searchAs(UserDTO.class, columnList, "roles.code==role0;age=gt=30", 0, pageSize, "id", "desc");
+    }
+
+    @Benchmark
+    public void searchPageJson() throws IOException {
+        objectMapper.writeValue(OutputStream.nullOutputStream(), userRepository.searchAs(UserDTO.class, columnList, null, 1, pageSize, "id", "desc"));
+    }
+
+    @Benchmark
+    public void searchJson() throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(OutputStream.nullOutputStream())) {
+            userRepository.searchJson(generator, UserDTO.class, columnList, null, 1, pageSize, "id", "desc");
+        }
+    }
+
+    @Benchmark
+    public SearchPage<UserDTO> searchKeyset() {
+        return userRepository.searchAfter(UserDTO.class, columnList, null, null, pageSize, "id", "desc");
+    }
+}
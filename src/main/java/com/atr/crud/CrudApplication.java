@@ -1,12 +1,14 @@
 package com.atr.crud;
 
-import com.atr.crud.filterrepository.FilterRepositoryImpl;
+import com.atr.crud.filterrepository.FilterRepositoryFactoryBean;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 
 @SpringBootApplication
-@EnableJpaRepositories(repositoryBaseClass = FilterRepositoryImpl.class)
+@ConfigurationPropertiesScan
+@EnableJpaRepositories(repositoryFactoryBeanClass = FilterRepositoryFactoryBean.class)
 public class CrudApplication {
 
 	public static void main(String[] args) {
@@ -1,79 +1,163 @@
 package com.atr.crud;
 
+import com.atr.crud.filterrepository.accessor.BeanAccessor;
+import com.atr.crud.filterrepository.accessor.PropertyAccessor;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.hibernate.Hibernate;
+
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+//
+// Copies the fields of an entity to the DTO fields with the same name, only the selected columns (all of them when
+// null or empty). Collections are mapped item by item to new DTOs of the collection element type, with the columns
+// of the collection ('roles.code' selects 'code' of each role). Fields are only read when selected, so unselected lazy
+// associations are never loaded.
+// The fields, accessors and nested columns are resolved once per (entity class, DTO class, columns) in a MappingPlan.
+//
 public class CrudMapper<X, Y> {
 
+    private static final Cache<PlanKey, MappingPlan> PLANS = Caffeine.newBuilder()
+            .maximumSize(1_000)
+            .build();
+
     public void map(X entity, Y dto, List<String> columns) {
+        // A lazy proxy has none of the entity fields set
+        Object unproxied = Hibernate.unproxy(entity);
+        plan(unproxied.getClass(), dto.getClass(), columns).map(unproxied, dto);
+    }
 
-        List<String> rootColumns = null;
-        if (columns != null && !columns.isEmpty()) {
-            rootColumns = columns.stream().map(c -> c.split("\\.")[0]).toList();
+    private static MappingPlan plan(Class<?> entityClass, Class<?> dtoClass, List<String> columns) {
+        MappingPlan plan = PLANS.getIfPresent(new PlanKey(entityClass, dtoClass, columns));
+        if (plan == null) {
+            // Cached with a copy of the columns, the caller list can change afterwards
+            List<String> columnsCopy = columns == null ? null : List.copyOf(columns);
+            plan = PLANS.get(new PlanKey(entityClass, dtoClass, columnsCopy), key -> new MappingPlan(entityClass, dtoClass, columnsCopy));
         }
+        return plan;
+    }
 
-        Class<?> entityClass = entity.getClass();
-        Class<?> dtoClass = dto.getClass();
-
-        Field[] entityFields = entityClass.getDeclaredFields();
-
-
-            for (Field entityField : entityFields) {
-                try {
-                    Field dtoField = dtoClass.getDeclaredField(entityField.getName());
-                    entityField.setAccessible(true);
-                    dtoField.setAccessible(true);
-
-                    Object entityValue = entityField.get(entity);
-
-                    if (entityValue != null && (rootColumns == null || rootColumns.contains(entityField.getName()))) {
-
-                        List<String> subEntityRootColumns = null;
-                        if (columns != null) {
-                            subEntityRootColumns = columns.stream().filter(rc -> rc.contains(entityField.getName() + ".")).map(c -> c.split("\\.")[1]).toList();
-                        }
-
-                        Class<?> entityFieldType = entityField.getType();
-                        if (!Collection.class.isAssignableFrom(entityFieldType)) {
-                            dtoField.set(dto, entityValue);
-                        }
-                        else {
-                            Collection<Object> dtoCollection = (Collection<Object>)dtoField.get(dto);
-                            Class<?> dtoCollectionGenericType = getCollectionGenericType(dtoField);
-                            Collection<?> entityCollection = (Collection<?>) entityValue;
-
-                            CrudMapper<Object, Object> crudMapper = new CrudMapper<>();
-                            for (Object entityCollectionItem:entityCollection) {
-                                try {
-                                    Object dtoCollectionItem = dtoCollectionGenericType.getDeclaredConstructor().newInstance();
-                                    crudMapper.map(entityCollectionItem, dtoCollectionItem, subEntityRootColumns);
-                                    dtoCollection.add(dtoCollectionItem);
-                                } catch (InstantiationException | InvocationTargetException | NoSuchMethodException e) {
-                                    throw new RuntimeException(e);
-                                }
-                            }
-                        }
-                    } else {
-                        dtoField.set(dto, null);
-                    }
-
-                } catch (NoSuchFieldException | IllegalAccessException e) {
-                    // Do nothing, it's OK.
+    private record PlanKey(Class<?> entityClass, Class<?> dtoClass, List<String> columns) {
+    }
+
+    //
+    // Field pairs of one entity and DTO class for one column selection
+    //
+    private static class MappingPlan {
+
+        private final List<FieldMapping> fields = new ArrayList<>();
+
+        MappingPlan(Class<?> entityClass, Class<?> dtoClass, List<String> columns) {
+            List<String> rootColumns = null;
+            if (columns != null && !columns.isEmpty()) {
+                rootColumns = columns.stream().map(column -> column.split("\\.")[0]).toList();
+            }
+
+            BeanAccessor<?> entityAccessor = BeanAccessor.of(entityClass);
+            BeanAccessor<?> dtoAccessor = BeanAccessor.of(dtoClass);
+            for (Field entityField : entityClass.getDeclaredFields()) {
+                String name = entityField.getName();
+                PropertyAccessor dtoProperty = dtoAccessor.getProperty(name);
+                if (Modifier.isStatic(entityField.getModifiers()) || dtoProperty == null || !isDeclared(dtoClass, name)) {
+                    continue;
+                }
+
+                // Unselected fields are cleared, and so are the ones the DTO field can not hold (Ticket.user in TicketDTO.user)
+                boolean collection = Collection.class.isAssignableFrom(entityField.getType());
+                boolean selected = (rootColumns == null || rootColumns.contains(name))
+                        && (collection || boxed(dtoProperty.getType()).isAssignableFrom(boxed(entityField.getType())));
+                if (!selected || !collection) {
+                    fields.add(new FieldMapping(entityAccessor.getRequiredProperty(name), dtoProperty, selected, null, null));
+                    continue;
+                }
+
+                List<String> itemColumns = null;
+                if (columns != null) {
+                    itemColumns = columns.stream().filter(column -> column.contains(name + ".")).map(column -> column.split("\\.")[1]).toList();
                 }
+                fields.add(new FieldMapping(entityAccessor.getRequiredProperty(name), dtoProperty, true, elementType(dtoProperty), itemColumns));
             }
+        }
 
+        void map(Object entity, Object dto) {
+            for (FieldMapping field : fields) {
+                field.map(entity, dto);
+            }
+        }
 
+        private static boolean isDeclared(Class<?> type, String name) {
+            for (Field field : type.getDeclaredFields()) {
+                if (field.getName().equals(name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static Class<?> boxed(Class<?> type) {
+            return MethodType.methodType(type).wrap().returnType();
+        }
+
+        private static Class<?> elementType(PropertyAccessor collectionProperty) {
+            Type genericType = collectionProperty.getGenericType();
+            ParameterizedType parameterizedType = (ParameterizedType) genericType;
+            return (Class<?>) parameterizedType.getActualTypeArguments()[0];
+        }
     }
 
-    private Class<?> getCollectionGenericType(Field collectionField) {
-        Type genericType = collectionField.getGenericType();
-        ParameterizedType parameterizedType = (ParameterizedType)genericType;
-        Type[] typeArguments = parameterizedType.getActualTypeArguments();
-        Type collectionType = typeArguments[0];
-        return (Class<?>)collectionType;
+    //
+    // One entity field copied to the DTO field of the same name. For collections, each item is mapped to a new
+    // 'itemDtoClass' with the plan of its class (resolved once per item class).
+    //
+    private static class FieldMapping {
+
+        private final PropertyAccessor entityProperty;
+
+        private final PropertyAccessor dtoProperty;
+
+        private final boolean selected;
+
+        // Null if the field is not a selected collection
+        private final BeanAccessor<?> itemDto;
+
+        private final List<String> itemColumns;
+
+        private final Map<Class<?>, MappingPlan> itemPlans = new ConcurrentHashMap<>();
+
+        FieldMapping(PropertyAccessor entityProperty, PropertyAccessor dtoProperty, boolean selected, Class<?> itemDtoClass, List<String> itemColumns) {
+            this.entityProperty = entityProperty;
+            this.dtoProperty = dtoProperty;
+            this.selected = selected;
+            this.itemDto = itemDtoClass == null ? null : BeanAccessor.of(itemDtoClass);
+            this.itemColumns = itemColumns;
+        }
+
+        @SuppressWarnings("unchecked")
+        void map(Object entity, Object dto) {
+            Object entityValue = selected ? entityProperty.get(entity) : null;
+            if (entityValue == null) {
+                dtoProperty.set(dto, null);
+            } else if (itemDto == null) {
+                dtoProperty.set(dto, entityValue);
+            } else {
+                Collection<Object> dtoCollection = (Collection<Object>) dtoProperty.get(dto);
+                for (Object item : (Collection<?>) entityValue) {
+                    Object entityItem = Hibernate.unproxy(item);
+                    Object dtoItem = itemDto.newInstance();
+                    itemPlans.computeIfAbsent(entityItem.getClass(), itemClass -> plan(itemClass, itemDto.getType(), itemColumns))
+                            .map(entityItem, dtoItem);
+                    dtoCollection.add(dtoItem);
+                }
+            }
+        }
     }
 }
@@ -1,56 +1,198 @@
 package com.atr.crud;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
+import com.atr.crud.filterrepository.accessor.BeanAccessor;
+import com.atr.crud.filterrepository.accessor.PropertyAccessor;
+import org.hibernate.Hibernate;
+
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
+//
+// Maps an object to a new instance of a destination class, copying the fields with the same name. Values the
+// destination field can not hold (User in a UserDTO field, Role items of a List<RoleDTO>) are mapped recursively to
+// the destination type. The field pairs are resolved once per (source class, destination class).
+// Every call keeps an identity map, so objects shared by the graph (the same role of many users) or cyclic
+// (User.tickets and Ticket.user) are mapped once and referenced by every field that points to them. Objects deeper
+// than maxDepth (the source is depth 0) are left unmapped and their destination fields keep their initial value.
+// Hibernate proxies (lazy to-one associations) are initialized and replaced by the entity before reading them: their
+// own fields are never set, and their class is not the entity class the plan is for.
+//
 public class Mapper {
-    public static <T, U> U map(T source, Class<U> destinationClass) throws IllegalAccessException, InstantiationException, NoSuchMethodException, InvocationTargetException {
-        U destination = destinationClass.newInstance();
-
-        Field[] sourceFields = source.getClass().getDeclaredFields();
-        Field[] destinationFields = destinationClass.getDeclaredFields();
-
-        for (Field sourceField : sourceFields) {
-            sourceField.setAccessible(true);
-            Object value = sourceField.get(source);
-
-            for (Field destinationField : destinationFields) {
-                destinationField.setAccessible(true);
-
-                if (destinationField.getName().equals(sourceField.getName())) {
-                    if (Collection.class.isAssignableFrom(destinationField.getType())) {
-                        // Handle list types
-                        Class<?> genericType = (Class<?>) ((java.lang.reflect.ParameterizedType) destinationField.getGenericType()).getActualTypeArguments()[0];
-                        Constructor<?> constructor = destinationField.getType().getDeclaredConstructor();
-                        constructor.setAccessible(true);
-                        Collection<Object> destinationList = (Collection<Object>)constructor.newInstance();
-                        Collection<?> sourceList = (Collection<?>) value;
-                        for (Object listItem : sourceList) {
-                            Object mappedListItem = map(listItem, genericType);
-                            destinationList.add(mappedListItem);
-                        }
-                        destinationField.set(destination, destinationList);
-                    } else {
-                        // Handle non-list types
-
-
-                        if (value != null && destinationField.getType().getName().contains("DTO")) {
-                            Object mappedObject = map(value, destinationField.getType());
-                            destinationField.set(destination, mappedObject);
-                        }
-                        else {
-                            destinationField.set(destination, value);
-                        }
-                    }
-                    break;
+
+    public static final int UNLIMITED_DEPTH = Integer.MAX_VALUE;
+
+    // Field pairs by source class and destination class
+    private static final ClassValue<Map<Class<?>, List<FieldPair>>> PLANS = new ClassValue<>() {
+        @Override
+        protected Map<Class<?>, List<FieldPair>> computeValue(Class<?> sourceClass) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    public static <T, U> U map(T source, Class<U> destinationClass) {
+        return map(source, destinationClass, UNLIMITED_DEPTH);
+    }
+
+    public static <T, U> U map(T source, Class<U> destinationClass, int maxDepth) {
+        return new MappingCall(maxDepth).map(source, destinationClass, 0);
+    }
+
+    //
+    // State of one map call: destination of every source object already mapped, by destination class
+    //
+    private static class MappingCall {
+
+        private final int maxDepth;
+
+        private final Map<Object, Map<Class<?>, Object>> mapped = new IdentityHashMap<>();
+
+        MappingCall(int maxDepth) {
+            this.maxDepth = maxDepth;
+        }
+
+        @SuppressWarnings("unchecked")
+        <U> U map(Object source, Class<U> destinationClass, int depth) {
+            source = Hibernate.unproxy(source);
+            Map<Class<?>, Object> destinations = mapped.computeIfAbsent(source, key -> new HashMap<>(2));
+            U destination = (U) destinations.get(destinationClass);
+            if (destination != null) {
+                return destination;
+            }
+
+            // Registered before its fields are mapped, so a cycle back to the source gets this instance
+            destination = BeanAccessor.of(destinationClass).newInstance();
+            destinations.put(destinationClass, destination);
+
+            for (FieldPair fieldPair : plan(source.getClass(), destinationClass)) {
+                fieldPair.map(this, source, destination, depth);
+            }
+            return destination;
+        }
+
+        // Value of a destination field (or collection item) of declared type 'destinationType', null if beyond maxDepth
+        Object convert(Object value, Class<?> destinationType, int depth) {
+            value = Hibernate.unproxy(value);
+            if (destinationType.isInstance(value)) {
+                return value;
+            }
+            Map<Class<?>, Object> destinations = mapped.get(value);
+            if (destinations != null && destinations.containsKey(destinationType)) {
+                return destinations.get(destinationType);
+            }
+            if (depth + 1 > maxDepth) {
+                return null;
+            }
+            return map(value, destinationType, depth + 1);
+        }
+    }
+
+    private static List<FieldPair> plan(Class<?> sourceClass, Class<?> destinationClass) {
+        return PLANS.get(sourceClass).computeIfAbsent(destinationClass, key -> {
+            BeanAccessor<?> destinationAccessor = BeanAccessor.of(destinationClass);
+            List<FieldPair> fieldPairs = new ArrayList<>();
+            for (PropertyAccessor sourceProperty : BeanAccessor.of(sourceClass).getProperties().values()) {
+                PropertyAccessor destinationProperty = destinationAccessor.getProperty(sourceProperty.getName());
+                if (destinationProperty != null && destinationProperty.isWritable()) {
+                    fieldPairs.add(new FieldPair(sourceProperty, destinationProperty));
+                }
+            }
+            return List.copyOf(fieldPairs);
+        });
+    }
+
+    //
+    // A source field and the destination field with the same name. Values are copied as they are when the destination
+    // type can hold them, collections are rebuilt item by item and anything else is mapped to the destination type.
+    //
+    private static class FieldPair {
+
+        private final PropertyAccessor sourceProperty;
+
+        private final PropertyAccessor destinationProperty;
+
+        private final Class<?> destinationType;
+
+        // Collection destination only: new empty collection and the declared item type
+        private final Supplier<Collection<Object>> collectionFactory;
+
+        private final Class<?> itemType;
+
+        FieldPair(PropertyAccessor sourceProperty, PropertyAccessor destinationProperty) {
+            this.sourceProperty = sourceProperty;
+            this.destinationProperty = destinationProperty;
+            this.destinationType = boxed(destinationProperty.getType());
+
+            boolean collection = Collection.class.isAssignableFrom(destinationType)
+                    && Collection.class.isAssignableFrom(sourceProperty.getType());
+            this.collectionFactory = collection ? collectionFactory(destinationType) : null;
+            this.itemType = collection ? itemType(destinationProperty.getGenericType()) : null;
+        }
+
+        void map(MappingCall call, Object source, Object destination, int depth) {
+            Object value = sourceProperty.get(source);
+            if (value == null) {
+                if (!destinationProperty.getType().isPrimitive()) {
+                    destinationProperty.set(destination, null);
                 }
+                return;
             }
+
+            if (collectionFactory == null) {
+                Object converted = call.convert(value, destinationType, depth);
+                if (converted != null) {
+                    destinationProperty.set(destination, converted);
+                }
+                return;
+            }
+
+            Collection<Object> items = collectionFactory.get();
+            for (Object item : (Collection<?>) value) {
+                Object converted = item == null ? null : call.convert(item, itemType, depth);
+                if (item != null && converted == null) {
+                    // Items beyond maxDepth, the collection is left unmapped
+                    return;
+                }
+                items.add(converted);
+            }
+            destinationProperty.set(destination, items);
         }
 
-        return destination;
+        @SuppressWarnings("unchecked")
+        private static Supplier<Collection<Object>> collectionFactory(Class<?> collectionType) {
+            if (!collectionType.isInterface() && !Modifier.isAbstract(collectionType.getModifiers())) {
+                BeanAccessor<?> collectionAccessor = BeanAccessor.of(collectionType);
+                return () -> (Collection<Object>) collectionAccessor.newInstance();
+            }
+            if (Set.class.isAssignableFrom(collectionType)) {
+                return LinkedHashSet::new;
+            }
+            return ArrayList::new;
+        }
+
+        private static Class<?> itemType(Type collectionType) {
+            if (collectionType instanceof ParameterizedType parameterizedType && parameterizedType.getActualTypeArguments()[0] instanceof Class<?> type) {
+                return type;
+            }
+            return Object.class;
+        }
+
+        private static Class<?> boxed(Class<?> type) {
+            if (!type.isPrimitive()) {
+                return type;
+            }
+            return MethodType.methodType(type).wrap().returnType();
+        }
     }
 }
@@ -0,0 +1,50 @@
+package com.atr.crud;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+//
+// Opt-in (crud.virtual-threads.enabled) Tomcat request handling on virtual threads, one per request. Needs a Java 21
+// runtime (build with -Pjava21). Pair it with crud.search.bulkhead-permits so requests can not exhaust the
+// connection pool.
+//
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "crud.virtual-threads.enabled", havingValue = "true")
+public class VirtualThreadsConfiguration {
+
+    @Bean
+    TomcatProtocolHandlerCustomizer<?> virtualThreadsProtocolHandlerCustomizer(ExecutorService virtualThreadsExecutor) {
+        return protocolHandler -> protocolHandler.setExecutor(virtualThreadsExecutor);
+    }
+
+    // A bean so the context shuts it down on close. Tomcat does not stop an executor it did not create
+    @Bean(destroyMethod = "shutdown")
+    ExecutorService virtualThreadsExecutor() {
+        return newVirtualThreadPerTaskExecutor();
+    }
+
+    // Java 21 API looked up at runtime, the project still compiles for Java 17
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        MethodHandle factory;
+        try {
+            factory = MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+                    MethodType.methodType(ExecutorService.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalStateException("crud.virtual-threads.enabled needs Java 21, running on " + Runtime.version(), e);
+        }
+
+        try {
+            return (ExecutorService) factory.invokeExact();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Can not create the virtual thread executor", e);
+        }
+    }
+}
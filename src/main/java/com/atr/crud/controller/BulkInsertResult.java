@@ -0,0 +1,32 @@
+package com.atr.crud.controller;
+
+public class BulkInsertResult {
+
+    private final long rows;
+
+    private final int chunks;
+
+    private final long elapsedMillis;
+
+    public BulkInsertResult(long rows, int chunks, long elapsedMillis) {
+        this.rows = rows;
+        this.chunks = chunks;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public int getChunks() {
+        return chunks;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public long getRowsPerSecond() {
+        return elapsedMillis == 0 ? rows : rows * 1000 / elapsedMillis;
+    }
+}
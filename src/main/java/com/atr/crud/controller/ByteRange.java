@@ -0,0 +1,71 @@
+package com.atr.crud.controller;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+//
+// The single byte range of a Range header: 'bytes=first-last', 'bytes=first-' (open) or 'bytes=-count' (suffix). Its
+// bytes are resolved against the length of the text, only needed whole for open and suffix ranges.
+//
+class ByteRange {
+
+    private static final Pattern RANGE = Pattern.compile("(?i)\\s*bytes\\s*=\\s*(\\d*)\\s*-\\s*(\\d*)\\s*");
+
+    // Null for a suffix range
+    private final Long first;
+
+    // Null for an open range
+    private final Long last;
+
+    // Null unless a suffix range
+    private final Long count;
+
+    private ByteRange(Long first, Long last, Long count) {
+        this.first = first;
+        this.last = last;
+        this.count = count;
+    }
+
+    // Null when malformed (also 'last' before 'first') or with several ranges
+    static ByteRange parse(String header) {
+        Matcher matcher = RANGE.matcher(header);
+        if (!matcher.matches() || matcher.group(1).isEmpty() && matcher.group(2).isEmpty()) {
+            return null;
+        }
+
+        try {
+            if (matcher.group(1).isEmpty()) {
+                return new ByteRange(null, null, Long.parseLong(matcher.group(2)));
+            }
+            long first = Long.parseLong(matcher.group(1));
+            if (matcher.group(2).isEmpty()) {
+                return new ByteRange(first, null, null);
+            }
+            long last = Long.parseLong(matcher.group(2));
+            return last < first ? null : new ByteRange(first, last, null);
+        } catch (NumberFormatException e) {
+            // Beyond a long
+            return null;
+        }
+    }
+
+    // 'first-last': the text is read up to the last byte only
+    boolean isBounded() {
+        return first != null && last != null;
+    }
+
+    // Bytes of the text to measure: one past the last byte of a bounded range (to know whether the text goes beyond it),
+    // the whole text otherwise
+    long measureLimit() {
+        return isBounded() && last < Long.MAX_VALUE ? last + 1 : Long.MAX_VALUE;
+    }
+
+    // Of a text of the given length (not below measureLimit() for a text going beyond a bounded range)
+    long first(long length) {
+        return first != null ? first : Math.max(0, length - count);
+    }
+
+    long last(long length) {
+        return last != null ? Math.min(last, length - 1) : length - 1;
+    }
+}
@@ -0,0 +1,20 @@
+package com.atr.crud.controller;
+
+import com.atr.crud.filterrepository.CountMode;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+//
+// 'total' request parameter (exact, cached or estimated, any case) to a CountMode. An unknown mode fails the binding,
+// answered with 400 like any other malformed parameter.
+//
+@Component
+class CountModeConverter implements Converter<String, CountMode> {
+
+    @Override
+    public CountMode convert(String total) {
+        return CountMode.valueOf(total.trim().toUpperCase(Locale.ROOT));
+    }
+}
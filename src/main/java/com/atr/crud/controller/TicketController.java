@@ -1,21 +1,24 @@
 package com.atr.crud.controller;
 
-import com.atr.crud.Mapper;
-import com.atr.crud.domain.Ticket;
+import com.atr.crud.filterrepository.CountMode;
+import com.atr.crud.filterrepository.SearchPage;
 import com.atr.crud.repository.TicketRepository;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.lang.reflect.InvocationTargetException;
-import java.util.ArrayList;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/tickets")
 public class TicketController {
 
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
     TicketRepository ticketRepository;
 
     public TicketController(TicketRepository ticketRepository) {
@@ -23,21 +26,33 @@ public class TicketController {
     }
 
     @GetMapping("/")
-    List<TicketDTO> findTickets(
+    ResponseEntity<List<TicketDTO>> findTickets(
             @RequestParam(required = false) List<String> columns,
             @RequestParam(required = false, name = "q") String restSql,
-            @RequestParam(required = false, name = "page_number") Integer pageNumber,
-            @RequestParam(required = false, name = "page_size") Integer pageSize
+            @RequestParam(required = false, name = "page_number", defaultValue = "0") int pageNumber,
+            @RequestParam(required = false, name = "page_size", defaultValue = "20") int pageSize,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) CountMode total
     ) {
-        List<Ticket> tickets = ticketRepository.search(columns, restSql, pageNumber, pageSize, "id", "asc");
-
-        // Mapper
-        List<TicketDTO> result = new ArrayList<>();
-        for (Ticket ticket : tickets) {
-            TicketDTO ticketDTO = TicketMapper.INSTANCE.map(ticket);
-            result.add(ticketDTO);
+        // Keyset pagination, 'cursor' empty for the first page
+        if (cursor != null) {
+            SearchPage<TicketDTO> page = ticketRepository.searchAfter(TicketDTO.class, columns, restSql, cursor, pageSize, "id", "asc");
+            ResponseEntity.BodyBuilder response = totalCount(restSql, total);
+            if (page.getNextCursor() != null) {
+                response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+            }
+            return response.body(page.getContent());
         }
 
-        return result;
+        return totalCount(restSql, total).body(ticketRepository.searchAs(TicketDTO.class, columns, restSql, pageNumber, pageSize, "id", "asc"));
+    }
+
+    // 'total' (exact, cached or estimated) adds the number of matching rows, "10000+" when estimated over the threshold
+    private ResponseEntity.BodyBuilder totalCount(String restSql, CountMode total) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (total != null) {
+            response.header(TOTAL_COUNT_HEADER, ticketRepository.count(restSql, total).toString());
+        }
+        return response;
     }
 }
@@ -1,48 +1,238 @@
 package com.atr.crud.controller;
 
+import com.atr.crud.CrudMapper;
 import com.atr.crud.domain.Role;
 import com.atr.crud.domain.Ticket;
 import com.atr.crud.domain.User;
+import com.atr.crud.filterrepository.BulkheadPermit;
+import com.atr.crud.filterrepository.CountMode;
+import com.atr.crud.filterrepository.FilterRepositoryProperties;
+import com.atr.crud.filterrepository.SearchPage;
 import com.atr.crud.repository.UserRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/api/users")
 public class UserController {
 
+    private static final String NDJSON = "application/x-ndjson";
+
+    private static final String TEXT_UTF8 = "text/plain;charset=UTF-8";
+
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
     @Autowired
     UserRepository userRepository;
 
-    @GetMapping("/")
-    List<UserDTO> findUsers(
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    FilterRepositoryProperties properties;
+
+    // Keyset pagination, 'cursor' empty for the first page. Through the result cache when enabled
+    @GetMapping(value = "/", params = "cursor")
+    ResponseEntity<List<UserDTO>> findUsersAfter(
             @RequestParam(required = false) List<String> columns,
             @RequestParam(required = false, name = "q") String restSql,
-            @RequestParam(required = false, name = "page_number") Integer pageNumber,
-            @RequestParam(required = false, name = "page_size") Integer pageSize
+            @RequestParam(required = false, name = "page_size", defaultValue = "20") int pageSize,
+            @RequestParam String cursor,
+            @RequestParam(required = false) CountMode total
             ) {
 
-        // Search
-        List<User> users = userRepository.search(columns, restSql, pageNumber, pageSize, "id", "desc");
+        SearchPage<UserDTO> page = userRepository.searchAfter(UserDTO.class, columns, restSql, cursor, pageSize, "id", "desc");
+        ResponseEntity.BodyBuilder response = totalCount(restSql, total);
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getContent());
+    }
 
-        // Mapper
-        long start = System.currentTimeMillis();
+    // Offset pagination. With the result cache enabled the page is searched as UserDTOs through it, so a repeated listing
+    // is written from the cache without a query. Without it the rows are written as UserDTO JSON straight to the
+    // response, without any User or UserDTO (the same bytes). Either way the response is committed only after a
+    // successful search, so a failed one still gets its error response
+    @GetMapping(value = "/", params = "!cursor")
+    void findUsers(
+            @RequestParam(required = false) List<String> columns,
+            @RequestParam(required = false, name = "q") String restSql,
+            @RequestParam(required = false, name = "page_number", defaultValue = "0") int pageNumber,
+            @RequestParam(required = false, name = "page_size", defaultValue = "20") int pageSize,
+            @RequestParam(required = false) CountMode total,
+            HttpServletResponse response
+            ) throws IOException {
+
+        if (total != null) {
+            response.setHeader(TOTAL_COUNT_HEADER, count(restSql, total));
+        }
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        if (properties.isResultCacheEnabled()) {
+            List<UserDTO> users = userRepository.searchAs(UserDTO.class, columns, restSql, pageNumber, pageSize, "id", "desc");
+            objectMapper.writeValue(response.getOutputStream(), users);
+            return;
+        }
+
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream());
+        userRepository.searchJson(generator, UserDTO.class, columns, restSql, pageNumber, pageSize, "id", "desc");
+        generator.close();
+    }
+
+    // 'total' (exact, cached or estimated) adds the number of matching rows, "10000+" when estimated over the threshold
+    private ResponseEntity.BodyBuilder totalCount(String restSql, CountMode total) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (total != null) {
+            response.header(TOTAL_COUNT_HEADER, count(restSql, total));
+        }
+        return response;
+    }
+
+    private String count(String restSql, CountMode total) {
+        return userRepository.count(restSql, total).toString();
+    }
+
+    // All the users matching the filter as newline delimited JSON, written while they are read. The bulkhead permit is
+    // taken before the transaction and kept until the last row is written, however slow the client
+    @GetMapping(value = "/stream", produces = NDJSON)
+    @Transactional(readOnly = true)
+    @BulkheadPermit
+    void streamUsers(
+            @RequestParam(required = false) List<String> columns,
+            @RequestParam(required = false, name = "q") String restSql,
+            HttpServletResponse response
+            ) throws IOException {
+
+        response.setContentType(NDJSON);
+
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try (Stream<UserDTO> users = userRepository.searchStream(UserDTO.class, columns, restSql, "id", "desc");
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            generator.setRootValueSeparator(null);
+            for (Iterator<UserDTO> iterator = users.iterator(); iterator.hasNext(); ) {
+                writer.writeValue(generator, iterator.next());
+                generator.writeRaw('\n');
+            }
+        }
+    }
+
+    // One user with the requested columns. Only the associations among them are loaded (a fetch graph), the others are
+    // neither read nor mapped
+    @GetMapping("/{id}")
+    UserDTO findUser(
+            @PathVariable Long id,
+            @RequestParam(required = false) List<String> columns
+            ) {
+
+        User user = userRepository.findById(id, columns).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        UserDTO userDTO = new UserDTO();
+        new CrudMapper<User, UserDTO>().map(user, userDTO, columns);
+        return userDTO;
+    }
+
+    // Description of one user as UTF-8 text, read from the database CLOB while it is written. A single byte range
+    // ('Range: bytes=first-last') is answered with 206 and only those bytes. Measuring it reads the text once more, up to
+    // the last byte of the range: the whole text only for open ('first-') and suffix ('-count') ranges. The total
+    // length is '*' when the text goes beyond the range. Holds a bulkhead permit while the CLOB is read, like streamUsers
+    @GetMapping("/{id}/description")
+    @Transactional(readOnly = true)
+    @BulkheadPermit
+    void userDescription(
+            @PathVariable Long id,
+            @RequestHeader(required = false, name = HttpHeaders.RANGE) String range,
+            HttpServletResponse response
+            ) throws IOException {
+
+        // A malformed range is ignored, like several ranges: answered with the whole text
+        ByteRange byteRange = range == null ? null : ByteRange.parse(range);
 
-        List<UserDTO> result = new ArrayList<>();
-        for (User user : users) {
-            UserDTO ticketDTO = UserMapper.INSTANCE.map(user);
-            result.add(ticketDTO);
+        long first = 0;
+        long last = Long.MAX_VALUE;
+        if (byteRange != null) {
+            long length;
+            try (Reader description = description(id)) {
+                length = Utf8Ranges.length(description, byteRange.measureLimit());
+            }
+
+            // Reached the limit: the text goes beyond the range, its length is not known
+            boolean lengthKnown = length < byteRange.measureLimit();
+            first = byteRange.first(length);
+            last = byteRange.last(length);
+            if (first >= length) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + first + "-" + last + "/" + (lengthKnown ? length : "*"));
+            response.setContentLengthLong(last - first + 1);
+        }
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setContentType(TEXT_UTF8);
+        try (Reader description = description(id)) {
+            Utf8Ranges.write(description, response.getOutputStream(), first, last);
+        }
+    }
+
+    private Reader description(Long id) {
+        Reader description = userRepository.readClob(id, "description");
+        if (description == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
         }
+        return description;
+    }
+
+    // Users (with their roles and tickets) as a JSON array or newline delimited JSON, read while they are persisted in
+    // chunks of crud.search.bulk-chunk-size users, one transaction per chunk
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, NDJSON})
+    BulkInsertResult createUsers(HttpServletRequest request) throws IOException {
+        long start = System.currentTimeMillis();
+
+        long rows = 0;
+        int chunks = 0;
+        try (MappingIterator<User> users = objectMapper.readerFor(User.class).readValues(request.getInputStream())) {
+            List<User> chunk = new ArrayList<>();
+            while (users.hasNext()) {
+                User user = users.next();
+                for (Ticket ticket : user.getTickets()) {
+                    ticket.setUser(user);
+                }
+                chunk.add(user);
 
-        long finish = System.currentTimeMillis();
-        long timeElapsed = finish - start;
-        System.out.println("Mapper: " + timeElapsed);
+                if (chunk.size() == properties.getBulkChunkSize() || !users.hasNext()) {
+                    userRepository.insertAll(chunk);
+                    rows += chunk.size();
+                    chunks++;
+                    chunk = new ArrayList<>();
+                }
+            }
+        }
 
-        return result;
+        return new BulkInsertResult(rows, chunks, System.currentTimeMillis() - start);
     }
 
     @PostMapping("/")
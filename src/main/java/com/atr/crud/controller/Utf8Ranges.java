@@ -0,0 +1,113 @@
+package com.atr.crud.controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+//
+// Byte ranges of text read from a Reader and encoded as UTF-8, in chunks of BUFFER_SIZE characters: the text is never
+// held whole. A Reader can not seek bytes, so both read the text from its start (both stop after the last byte needed).
+//
+class Utf8Ranges {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    //
+    // Length in bytes of the text encoded as UTF-8, unpaired surrogates encoded as '?' like the UTF-8 encoder does. Stops
+    // reading once it reaches 'limit': the result is the exact length when below it, some length not below it otherwise.
+    //
+    static long length(Reader reader, long limit) throws IOException {
+        long length = 0;
+        char[] buffer = new char[BUFFER_SIZE];
+        boolean pendingHighSurrogate = false;
+        int read;
+        while (length < limit && (read = reader.read(buffer)) >= 0) {
+            for (int index = 0; index < read; index++) {
+                char character = buffer[index];
+                if (pendingHighSurrogate) {
+                    pendingHighSurrogate = false;
+                    if (Character.isLowSurrogate(character)) {
+                        // High surrogate counted as 1, the pair is 4 bytes
+                        length += 3;
+                        continue;
+                    }
+                }
+
+                if (character < 0x80) {
+                    length++;
+                } else if (character < 0x800) {
+                    length += 2;
+                } else if (Character.isHighSurrogate(character)) {
+                    pendingHighSurrogate = true;
+                    length++;
+                } else if (Character.isLowSurrogate(character)) {
+                    length++;
+                } else {
+                    length += 3;
+                }
+            }
+        }
+        return length;
+    }
+
+    // Bytes 'first' to 'last' (inclusive) of the text encoded as UTF-8
+    static void write(Reader reader, OutputStream outputStream, long first, long last) throws IOException {
+        RangeOutputStream range = new RangeOutputStream(outputStream, first, last);
+        Writer writer = new OutputStreamWriter(range, StandardCharsets.UTF_8);
+        char[] buffer = new char[BUFFER_SIZE];
+        int read;
+        while (!range.isComplete() && (read = reader.read(buffer)) >= 0) {
+            // Flushed to the range each chunk, to stop reading once it is complete
+            writer.write(buffer, 0, read);
+            writer.flush();
+        }
+        // Flushes the encoder too: a trailing unpaired high surrogate is only written ('?') at the end of the input.
+        // Closing the range leaves the output stream open
+        writer.close();
+    }
+
+    //
+    // Passes through only the bytes of a range, by their position in everything written to it
+    //
+    private static class RangeOutputStream extends OutputStream {
+
+        private final OutputStream outputStream;
+
+        private final long first;
+
+        private final long last;
+
+        private long position;
+
+        RangeOutputStream(OutputStream outputStream, long first, long last) {
+            this.outputStream = outputStream;
+            this.first = first;
+            this.last = last;
+        }
+
+        boolean isComplete() {
+            return position > last;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (position >= first && position <= last) {
+                outputStream.write(b);
+            }
+            position++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            long from = Math.max(first, position);
+            long to = Math.min(last, position + length - 1) + 1;
+            if (from < to) {
+                outputStream.write(bytes, offset + (int) (from - position), (int) (to - from));
+            }
+            position += length;
+        }
+    }
+}
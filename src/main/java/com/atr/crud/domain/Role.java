@@ -1,5 +1,6 @@
 package com.atr.crud.domain;
 
+import com.atr.crud.filterrepository.change.EntityChangeListener;
 import jakarta.persistence.*;
 
 import java.time.OffsetDateTime;
@@ -7,6 +8,7 @@ import java.util.HashSet;
 import java.util.Set;
 
 @Entity
+@EntityListeners(EntityChangeListener.class)
 @Table(name = "us_role")
 public class Role {
     @Id
@@ -1,10 +1,13 @@
 package com.atr.crud.domain;
 
+import com.atr.crud.filterrepository.change.EntityChangeListener;
+import com.atr.crud.filterrepository.fulltext.FullTextIndexed;
 import jakarta.persistence.*;
 
 import java.time.OffsetDateTime;
 
 @Entity
+@EntityListeners(EntityChangeListener.class)
 @Table(name = "us_ticket")
 public class Ticket {
 
@@ -13,10 +16,11 @@ public class Ticket {
     @Column(name = "id", nullable = false)
     private Long id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private User user;
 
     @Column(name = "name")
+    @FullTextIndexed
     private String name;
 
     @Column(name = "created_at")
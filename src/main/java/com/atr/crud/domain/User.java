@@ -1,6 +1,9 @@
 package com.atr.crud.domain;
 
+import com.atr.crud.filterrepository.change.EntityChangeListener;
+import com.atr.crud.filterrepository.fulltext.FullTextIndexed;
 import jakarta.persistence.*;
+import org.hibernate.annotations.BatchSize;
 
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
@@ -8,9 +11,18 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+//
+// Associations are LAZY: reads that need them ask for them with a fetch graph (FilterRepository findById/findAll with
+// columns). Lazy loads of the collections are batched, for BATCH_SIZE users per query. Not the users themselves: with
+// an entity batch size find() takes the batch loader, which ignores the fetch graph
+//
 @Entity
+@EntityListeners(EntityChangeListener.class)
 @Table(name = "us_user")
 public class User {
+
+    static final int BATCH_SIZE = 100;
+
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE)
     @Column(name = "id", nullable = false)
@@ -27,6 +39,7 @@ public class User {
 
     @Column(name = "description")
     @Lob
+    @FullTextIndexed
     private String description;
 
     @Column(name = "address")
@@ -57,6 +70,7 @@ public class User {
     private OffsetDateTime updatedAt;
 
     @ManyToMany(cascade = {CascadeType.PERSIST, CascadeType.MERGE}, fetch = FetchType.LAZY)
+    @BatchSize(size = BATCH_SIZE)
     @JoinTable(
             name = "us_user_role",
             joinColumns = @JoinColumn(name = "role_id"),
@@ -64,7 +78,8 @@ public class User {
     )
     Set<Role> roles = new HashSet<>();
 
-    @OneToMany(cascade = {CascadeType.ALL}, orphanRemoval = true, fetch = FetchType.EAGER, mappedBy = "user")
+    @OneToMany(cascade = {CascadeType.ALL}, orphanRemoval = true, fetch = FetchType.LAZY, mappedBy = "user")
+    @BatchSize(size = BATCH_SIZE)
     List<Ticket> tickets = new ArrayList<>();
 
     public Long getId() {
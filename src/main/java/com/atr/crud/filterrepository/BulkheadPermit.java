@@ -0,0 +1,16 @@
+package com.atr.crud.filterrepository;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+//
+// The annotated bean method runs holding one RepositoryBulkhead permit, taken before its own @Transactional gets a
+// connection and kept until it returns. For methods holding a connection across repository calls, for example a
+// handler streaming rows or a CLOB to a slow client inside one transaction. No effect with the bulkhead disabled.
+//
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface BulkheadPermit {
+}
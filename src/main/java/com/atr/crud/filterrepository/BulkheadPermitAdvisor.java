@@ -0,0 +1,36 @@
+package com.atr.crud.filterrepository;
+
+import org.aopalliance.aop.Advice;
+import org.springframework.aop.Pointcut;
+import org.springframework.aop.support.AbstractPointcutAdvisor;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.Role;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+
+//
+// Applies the RepositoryBulkhead to @BulkheadPermit methods. An infrastructure advisor, picked up by the same
+// auto-proxy creator as @Transactional, and ordered before it so the permit is taken before the connection.
+//
+@Component
+@Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+class BulkheadPermitAdvisor extends AbstractPointcutAdvisor {
+
+    private final RepositoryBulkhead repositoryBulkhead;
+
+    BulkheadPermitAdvisor(RepositoryBulkhead repositoryBulkhead) {
+        this.repositoryBulkhead = repositoryBulkhead;
+        setOrder(Ordered.HIGHEST_PRECEDENCE);
+    }
+
+    @Override
+    public Pointcut getPointcut() {
+        return AnnotationMatchingPointcut.forMethodAnnotation(BulkheadPermit.class);
+    }
+
+    @Override
+    public Advice getAdvice() {
+        return repositoryBulkhead;
+    }
+}
@@ -0,0 +1,10 @@
+package com.atr.crud.filterrepository;
+
+public enum CountMode {
+    // COUNT(id) of the filter on every call
+    EXACT,
+    // Exact count kept for a while (crud.search.count-cache-ttl) per filter
+    CACHED,
+    // Exact count up to crud.search.count-estimate-threshold, the threshold as lower bound ("10000+") above it
+    ESTIMATED
+}
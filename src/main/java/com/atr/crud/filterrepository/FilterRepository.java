@@ -1,16 +1,61 @@
 package com.atr.crud.filterrepository;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.repository.NoRepositoryBean;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.io.Serializable;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 @NoRepositoryBean
 public interface FilterRepository<T, ID extends Serializable> extends JpaRepository<T, ID> {
 
     List<T> search(List<String> columns, String restSql, int pageNumber, int pageSize, String sortColumn, String sortDirection);
 
-    // TODO: count
+    // Same search hydrating the selected columns straight into a DTO with the same property names, without entities
+    <D> List<D> searchAs(Class<D> dtoType, List<String> columns, String restSql, int pageNumber, int pageSize, String sortColumn, String sortDirection);
+
+    // Same search written to the generator as a JSON array of objects shaped like 'viewType' (its property names and
+    // Jackson annotations) straight from the rows, without entities nor DTOs and not through the result cache.
+    // The generator must be created by an ObjectMapper, whose serializers write the column values
+    void searchJson(JsonGenerator generator, Class<?> viewType, List<String> columns, String restSql, int pageNumber, int pageSize,
+                    String sortColumn, String sortDirection) throws IOException;
+
+    // Keyset (seek) pagination: the page after the cursor returned with the previous page, null or empty for the first one
+    <D> SearchPage<D> searchAfter(Class<D> dtoType, List<String> columns, String restSql, String cursor, int pageSize, String sortColumn, String sortDirection);
+
+    // Every row matching the filter, read with a scrollable cursor and hydrated in chunks.
+    // Must be consumed inside a transaction and closed (try-with-resources)
+    <D> Stream<D> searchStream(Class<D> dtoType, List<String> columns, String restSql, String sortColumn, String sortDirection);
+
+    // Standard reads with a fetch plan: only the associations in 'columns' paths ('roles', 'tickets.user', 'roles.code')
+    // are loaded with the entities, through a JPA fetch graph; all of them when null or empty, like a search.
+    // Associations left out stay lazy
+    Optional<T> findById(ID id, List<String> columns);
+
+    List<T> findAll(List<String> columns);
+
+    // Character LOB attribute of one entity (for example User.description) read from the JDBC Clob as the reader is
+    // consumed, never loaded whole. Null if there is no such entity or the value is null.
+    // Must be read inside a transaction and closed
+    Reader readClob(ID id, String attribute);
+
+    // Persists the entities (and their cascaded relations) in one transaction with JDBC batching, then clears the
+    // persistence context. Bulk loads call it once per chunk so memory stays bounded
+    void insertAll(List<? extends T> entities);
+
+    // Number of rows matching the filter, COUNT(id)
+    long count(String restSql);
+
+    SearchCount count(String restSql, CountMode mode);
+
+    // The filter as a predicate over entities or DTOs already in memory (a cache, a loaded page, a stream), with the
+    // semantics of the database query
+    <D> Predicate<D> filterPredicate(Class<D> type, String restSql);
 
 }
@@ -0,0 +1,149 @@
+package com.atr.crud.filterrepository;
+
+import com.atr.crud.filterrepository.index.SearchUsageStatistics;
+import com.atr.crud.filterrepository.plan.SearchPlanner;
+import com.atr.crud.filterrepository.rsql.RsqlFilterCache;
+import com.atr.crud.filterrepository.snapshot.SnapshotRegistry;
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.jpa.repository.support.JpaEntityInformation;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactoryBean;
+import org.springframework.data.jpa.repository.support.JpaRepositoryImplementation;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.core.RepositoryInformation;
+import org.springframework.data.repository.core.RepositoryMetadata;
+import org.springframework.data.repository.core.support.RepositoryFactorySupport;
+
+import java.io.Serializable;
+
+//
+// Creates FilterRepositoryImpl instances with the collaborators they need (Spring Data instantiates
+// repository base classes by reflection, so they can not be autowired).
+//
+public class FilterRepositoryFactoryBean<R extends Repository<T, ID>, T, ID> extends JpaRepositoryFactoryBean<R, T, ID> {
+
+    private FilterRepositoryProperties properties;
+
+    private SearchPlanner searchPlanner;
+
+    private RsqlFilterCache rsqlFilterCache;
+
+    private SearchResultCache searchResultCache;
+
+    private SearchMetrics searchMetrics;
+
+    private RepositoryBulkhead repositoryBulkhead;
+
+    private RelationFetcher relationFetcher;
+
+    private SearchUsageStatistics searchUsageStatistics;
+
+    private SnapshotRegistry snapshotRegistry;
+
+    public FilterRepositoryFactoryBean(Class<? extends R> repositoryInterface) {
+        super(repositoryInterface);
+    }
+
+    @Autowired
+    public void setProperties(FilterRepositoryProperties properties) {
+        this.properties = properties;
+    }
+
+    @Autowired
+    public void setSearchPlanner(SearchPlanner searchPlanner) {
+        this.searchPlanner = searchPlanner;
+    }
+
+    @Autowired
+    public void setRsqlFilterCache(RsqlFilterCache rsqlFilterCache) {
+        this.rsqlFilterCache = rsqlFilterCache;
+    }
+
+    @Autowired
+    void setSearchResultCache(SearchResultCache searchResultCache) {
+        this.searchResultCache = searchResultCache;
+    }
+
+    @Autowired
+    void setSearchMetrics(SearchMetrics searchMetrics) {
+        this.searchMetrics = searchMetrics;
+    }
+
+    @Autowired
+    void setRepositoryBulkhead(RepositoryBulkhead repositoryBulkhead) {
+        this.repositoryBulkhead = repositoryBulkhead;
+    }
+
+    @Autowired
+    void setRelationFetcher(RelationFetcher relationFetcher) {
+        this.relationFetcher = relationFetcher;
+    }
+
+    @Autowired
+    public void setSearchUsageStatistics(SearchUsageStatistics searchUsageStatistics) {
+        this.searchUsageStatistics = searchUsageStatistics;
+    }
+
+    @Autowired
+    public void setSnapshotRegistry(SnapshotRegistry snapshotRegistry) {
+        this.snapshotRegistry = snapshotRegistry;
+    }
+
+    @Override
+    protected RepositoryFactorySupport createRepositoryFactory(EntityManager entityManager) {
+        RepositoryFactorySupport factory = new FilterRepositoryFactory(entityManager, properties, searchPlanner, rsqlFilterCache,
+                searchResultCache, searchMetrics, relationFetcher, searchUsageStatistics, snapshotRegistry);
+        // Outermost advice, the permit is taken before the repository transaction gets a connection
+        if (repositoryBulkhead.isEnabled()) {
+            factory.addRepositoryProxyPostProcessor((proxyFactory, repositoryInformation) -> proxyFactory.addAdvice(0, repositoryBulkhead));
+        }
+        return factory;
+    }
+
+    private static class FilterRepositoryFactory extends JpaRepositoryFactory {
+
+        private final FilterRepositoryProperties properties;
+
+        private final SearchPlanner searchPlanner;
+
+        private final RsqlFilterCache rsqlFilterCache;
+
+        private final SearchResultCache searchResultCache;
+
+        private final SearchMetrics searchMetrics;
+
+        private final RelationFetcher relationFetcher;
+
+        private final SearchUsageStatistics searchUsageStatistics;
+
+        private final SnapshotRegistry snapshotRegistry;
+
+        FilterRepositoryFactory(EntityManager entityManager, FilterRepositoryProperties properties, SearchPlanner searchPlanner,
+                                RsqlFilterCache rsqlFilterCache, SearchResultCache searchResultCache, SearchMetrics searchMetrics,
+                                RelationFetcher relationFetcher, SearchUsageStatistics searchUsageStatistics, SnapshotRegistry snapshotRegistry) {
+            super(entityManager);
+            this.properties = properties;
+            this.searchPlanner = searchPlanner;
+            this.rsqlFilterCache = rsqlFilterCache;
+            this.searchResultCache = searchResultCache;
+            this.searchMetrics = searchMetrics;
+            this.relationFetcher = relationFetcher;
+            this.searchUsageStatistics = searchUsageStatistics;
+            this.snapshotRegistry = snapshotRegistry;
+        }
+
+        @Override
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        protected JpaRepositoryImplementation<?, ?> getTargetRepository(RepositoryInformation information, EntityManager entityManager) {
+            JpaEntityInformation<?, Serializable> entityInformation = getEntityInformation(information.getDomainType());
+            return new FilterRepositoryImpl(entityInformation, entityManager, properties, searchPlanner, rsqlFilterCache, searchResultCache, searchMetrics,
+                    relationFetcher, searchUsageStatistics, snapshotRegistry);
+        }
+
+        @Override
+        protected Class<?> getRepositoryBaseClass(RepositoryMetadata metadata) {
+            return FilterRepositoryImpl.class;
+        }
+    }
+}
@@ -1,28 +1,61 @@
 package com.atr.crud.filterrepository;
 
-import com.atr.crud.filterrepository.rsql.CustomRsqlVisitor;
-import com.atr.crud.filterrepository.rsql.TypesExtractor;
-import cz.jirutka.rsql.parser.RSQLParser;
-import cz.jirutka.rsql.parser.ast.Node;
+import com.atr.crud.filterrepository.index.SearchUsageStatistics;
+import com.atr.crud.filterrepository.plan.JsonProjection;
+import com.atr.crud.filterrepository.plan.RelationPlan;
+import com.atr.crud.filterrepository.plan.RelationProjection;
+import com.atr.crud.filterrepository.plan.SearchPlan;
+import com.atr.crud.filterrepository.plan.SearchPlanner;
+import com.atr.crud.filterrepository.plan.SearchProjection;
+import com.atr.crud.filterrepository.rsql.RsqlFilterCache;
+import com.atr.crud.filterrepository.rsql.RsqlSpecification;
+import com.atr.crud.filterrepository.snapshot.ColumnarSnapshot;
+import com.atr.crud.filterrepository.snapshot.SnapshotRegistry;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Timer;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.Tuple;
-import jakarta.persistence.TupleElement;
 import jakarta.persistence.TypedQuery;
 import jakarta.persistence.criteria.*;
 import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.EntityType;
+import jakarta.persistence.metamodel.ManagedType;
 import jakarta.persistence.metamodel.Metamodel;
 import jakarta.persistence.metamodel.PluralAttribute;
-import jakarta.persistence.metamodel.SingularAttribute;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.graph.Graph;
+import org.hibernate.graph.RootGraph;
+import org.hibernate.jpa.SpecHints;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.query.Query;
+import org.hibernate.query.criteria.JpaOrder;
+import org.hibernate.query.sqm.NullPrecedence;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.support.JpaEntityInformation;
 import org.springframework.data.jpa.repository.support.SimpleJpaRepository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
 import java.io.Serializable;
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Type;
+import java.sql.Clob;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class FilterRepositoryImpl<T, ID extends Serializable> extends SimpleJpaRepository<T, ID> implements FilterRepository<T, ID> {
 
@@ -30,130 +63,343 @@ public class FilterRepositoryImpl<T, ID extends Serializable> extends SimpleJpaR
 
     private final Class<T> domainClass;
 
-    public FilterRepositoryImpl(JpaEntityInformation<T, ?> entityInformation, EntityManager entityManager) {
+    private final SearchPlanner searchPlanner;
+
+    private final RsqlFilterCache rsqlFilterCache;
+
+    private final SearchResultCache searchResultCache;
+
+    private final SearchMetrics searchMetrics;
+
+    private final RelationFetcher relationFetcher;
+
+    private final SearchUsageStatistics searchUsageStatistics;
+
+    private final SnapshotRegistry snapshotRegistry;
+
+    private final int relatedBatchSize;
+
+    private final int streamFetchSize;
+
+    private final int countEstimateThreshold;
+
+    // CACHED counts by normalized filter
+    private final Cache<String, SearchCount> counts;
+
+    // Fetch graphs (immutable) by normalized column list
+    private final Cache<List<String>, RootGraph<T>> fetchGraphs;
+
+    private static final String ROOT_ID_ALIAS = "rootId";
+
+    public FilterRepositoryImpl(JpaEntityInformation<T, ?> entityInformation, EntityManager entityManager,
+                                FilterRepositoryProperties properties, SearchPlanner searchPlanner, RsqlFilterCache rsqlFilterCache,
+                                SearchResultCache searchResultCache, SearchMetrics searchMetrics, RelationFetcher relationFetcher,
+                                SearchUsageStatistics searchUsageStatistics, SnapshotRegistry snapshotRegistry) {
         super(entityInformation, entityManager);
         this.entityManager = entityManager;
         this.domainClass = entityInformation.getJavaType();
+        this.searchPlanner = searchPlanner;
+        this.rsqlFilterCache = rsqlFilterCache;
+        this.searchResultCache = searchResultCache;
+        this.searchMetrics = searchMetrics;
+        this.relationFetcher = relationFetcher;
+        this.searchUsageStatistics = searchUsageStatistics;
+        this.snapshotRegistry = snapshotRegistry;
+        this.relatedBatchSize = properties.getRelatedBatchSize();
+        this.streamFetchSize = properties.getStreamFetchSize();
+        this.countEstimateThreshold = properties.getCountEstimateThreshold();
+        this.counts = Caffeine.newBuilder()
+                .maximumSize(properties.getCountCacheSize())
+                .expireAfterWrite(properties.getCountCacheTtl())
+                .build();
+        this.fetchGraphs = Caffeine.newBuilder()
+                .maximumSize(properties.getPlanCacheSize())
+                .build();
     }
 
     @Override
     public List<T> search(List<String> columns, String restSql, int pageNumber, int pageSize, String sortColumn, String sortDirection) {
+        return searchAs(domainClass, columns, restSql, pageNumber, pageSize, sortColumn, sortDirection);
+    }
 
-        long start = System.currentTimeMillis();
+    @Override
+    public <D> List<D> searchAs(Class<D> dtoType, List<String> columns, String restSql, int pageNumber, int pageSize, String sortColumn, String sortDirection) {
+        return cachedSearch(dtoType, columns, restSql, null, null, pageNumber * pageSize, pageSize, sortColumn, sortDirection).getContent();
+    }
 
-        //
-        // If no columns are specified, search for all columns.
-        //
-        if (columns == null || columns.isEmpty()) {
-            List<String> cols = new ArrayList<>();
-            entityManager.getMetamodel().entity(domainClass).getSingularAttributes().forEach(attribute -> cols.add(attribute.getName()));
-            entityManager.getMetamodel().entity(domainClass).getPluralAttributes().forEach(attribute -> cols.add(attribute.getName()));
-            columns = cols;
+    @Override
+    public <D> SearchPage<D> searchAfter(Class<D> dtoType, List<String> columns, String restSql, String cursor, int pageSize, String sortColumn, String sortDirection) {
+        if (sortColumn == null || sortColumn.isEmpty()) {
+            sortColumn = "id";
+        }
+        if (sortDirection == null || sortDirection.isEmpty()) {
+            sortDirection = "asc";
         }
 
-        //
-        // Analyze 'columns' parameter to get columns to be selected (root columns and related entity columns).
-        //
-        List<String> rootColumns = new ArrayList<>(columns);
-        Map<String, List<String>> relatedEntityColumns = new HashMap<>();
-        Map<String, Class<?>> relatedEntityType =  new HashMap<>();
+        EntityType<T> entityType = entityManager.getMetamodel().entity(domainClass);
+        Attribute<? super T, ?> sortAttribute;
+        try {
+            sortAttribute = entityType.getAttribute(sortColumn);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException("Unknown sort column: " + sortColumn, e);
+        }
+        // Rejected before the first page: its cursor could not be read back
+        if (!KeysetCursor.supports(sortAttribute.getJavaType())) {
+            throw new InvalidCursorException("Unsupported keyset sort column: " + sortColumn);
+        }
 
-        // Get related entities. For example in User entity: roles
-        List<SingularAttribute<?, ?>> relatedEntitySingularAttributes = findRelatedEntitySingularAttributes(entityManager.getMetamodel(), domainClass, columns);
-        List<PluralAttribute<?, ?, ?>> relatedEntityPluralAttributes = findRelatedEntityPluralAttributes(entityManager.getMetamodel(), domainClass, columns);
+        KeysetCursor after = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            after = KeysetCursor.decode(cursor, sortColumn, sortDirection, sortAttribute.getJavaType(), entityType.getAttribute("id").getJavaType());
+        }
 
-        //
-        for (String column:columns) {
-            String[] path =  column.split("\\.");
-            if (path.length > 1) {
-                // Related entity with specified column. For example: roles.code
-                if (!relatedEntityColumns.containsKey(path[0])) {
-                    relatedEntityColumns.put(path[0], new ArrayList<>());
-
-                    List<String> entityColumns = new ArrayList<>();
-                    entityColumns.add(path[1]);
-                    relatedEntityColumns.put(path[0], entityColumns);
-                }
-                else {
-                    relatedEntityColumns.get(path[0]).add(path[1]);
-                }
+        return cachedSearch(dtoType, columns, restSql, cursor == null ? "" : cursor, after, 0, pageSize, sortColumn, sortDirection);
+    }
 
-                rootColumns.remove(column);
+    //
+    // Search through the result cache. 'cursor' is null for offset pagination and the (maybe empty) cursor for keyset.
+    //
+    private <D> SearchPage<D> cachedSearch(Class<D> dtoType, List<String> columns, String restSql, String cursor, KeysetCursor after,
+                                           int firstResult, int pageSize, String sortColumn, String sortDirection) {
+        String normalizedRestSql = restSql == null ? "" : restSql.trim();
+        SearchResultCache.SearchResultKey key = new SearchResultCache.SearchResultKey(domainClass, dtoType, searchPlanner.normalize(columns),
+                normalizedRestSql, cursor, firstResult, pageSize, sortColumn, sortDirection);
+
+        // Entity types read by the page, any of them with a filter (it can cross any association)
+        Set<Class<?>> types = null;
+        if (normalizedRestSql.isEmpty()) {
+            types = new HashSet<>();
+            types.add(domainClass);
+            for (RelationPlan relation : searchPlanner.plan(domainClass, columns).getRelations()) {
+                types.add(relation.getType());
             }
-            else {
-                // Full related entity. For example in User entity: roles
-                SingularAttribute<?, ?> singularAttribute = relatedEntitySingularAttributes.stream().filter(attribute -> attribute.getName().equals(column)).findFirst().orElse(null);
-                if (singularAttribute != null) {
-                    List<String> entityColumns = new ArrayList<>(Arrays.stream(singularAttribute.getBindableJavaType().getDeclaredFields()).map(Field::getName).toList());
-                    List<SingularAttribute<?,?>> relatedEntitySingularAttributeAttributes = findRelatedEntitySingularAttributes(entityManager.getMetamodel(), singularAttribute.getBindableJavaType(), entityColumns);
-                    List<PluralAttribute<?,?,?>> relatedEntityPluralAttributeAttributes = findRelatedEntityPluralAttributes(entityManager.getMetamodel(), singularAttribute.getBindableJavaType(), entityColumns);
-                    entityColumns.removeIf(ec -> relatedEntitySingularAttributeAttributes.stream().map(Attribute::getName).toList().contains(ec));
-                    entityColumns.removeIf(ec -> relatedEntityPluralAttributeAttributes.stream().map(Attribute::getName).toList().contains(ec));
-
-                    rootColumns.remove(column);
-                    relatedEntityColumns.put(column, entityColumns);
-                    relatedEntityType.put(column, singularAttribute.getBindableJavaType());
-                }
+        }
+        boolean idTracked = normalizedRestSql.isEmpty() && (sortColumn == null || sortColumn.isEmpty() || sortColumn.equals("id"));
+
+        return searchResultCache.get(key, types, idTracked,
+                rootIds -> search(dtoType, columns, restSql, cursor != null, after, firstResult, pageSize, sortColumn, sortDirection, rootIds));
+    }
+
+    @Override
+    public <D> Stream<D> searchStream(Class<D> dtoType, List<String> columns, String restSql, String sortColumn, String sortDirection) {
+        SearchPlan plan = searchPlanner.plan(domainClass, columns);
+        SearchProjection<D> projection = plan.getProjection(dtoType);
 
-                PluralAttribute<?, ?, ?> pluralAttribute = relatedEntityPluralAttributes.stream().filter(attribute -> attribute.getName().equals(column)).findFirst().orElse(null);
-                if (pluralAttribute != null) {
-                    List<String> entityColumns = new ArrayList<>(Arrays.stream(pluralAttribute.getBindableJavaType().getDeclaredFields()).map(Field::getName).toList());
-                    List<SingularAttribute<?,?>> relatedEntitySingularAttributeAttributes = findRelatedEntitySingularAttributes(entityManager.getMetamodel(), pluralAttribute.getBindableJavaType(), entityColumns);
-                    List<PluralAttribute<?,?,?>> relatedEntityPluralAttributeAttributes = findRelatedEntityPluralAttributes(entityManager.getMetamodel(), pluralAttribute.getBindableJavaType(), entityColumns);
-                    entityColumns.removeIf(ec -> relatedEntitySingularAttributeAttributes.stream().map(Attribute::getName).toList().contains(ec));
-                    entityColumns.removeIf(ec -> relatedEntityPluralAttributeAttributes.stream().map(Attribute::getName).toList().contains(ec));
-
-                    rootColumns.remove(column);
-                    relatedEntityColumns.put(column, entityColumns);
-                    relatedEntityType.put(column, pluralAttribute.getBindableJavaType());
+        CriteriaQuery<Tuple> criteriaQuery = selectRows(plan, restSql, false, null, sortColumn, sortDirection);
+
+        // Forward only cursor, the driver reads streamFetchSize rows per round trip
+        @SuppressWarnings("unchecked")
+        Query<Tuple> query = entityManager.createQuery(criteriaQuery).unwrap(Query.class);
+        ScrollableResults<Tuple> rows = query.setFetchSize(streamFetchSize).scroll(ScrollMode.FORWARD_ONLY);
+
+        // Rows are hydrated (with their related entities) in chunks of relatedBatchSize, only one chunk in memory
+        Spliterator<D> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+
+            private Iterator<D> chunk = Collections.emptyIterator();
+
+            @Override
+            public boolean tryAdvance(Consumer<? super D> action) {
+                if (!chunk.hasNext()) {
+                    chunk = nextChunk(plan, projection, rows).iterator();
+                    if (!chunk.hasNext()) {
+                        return false;
+                    }
                 }
+                action.accept(chunk.next());
+                return true;
             }
+        };
+
+        return StreamSupport.stream(spliterator, false).onClose(rows::close);
+    }
+
+    private <D> List<D> nextChunk(SearchPlan plan, SearchProjection<D> projection, ScrollableResults<Tuple> rows) {
+        Map<Object, D> resultById = new LinkedHashMap<>();
+        while (resultById.size() < relatedBatchSize && rows.next()) {
+            Object[] row = rows.get().toArray();
+            resultById.put(row[plan.getIdIndex()], projection.newInstance(row));
+        }
+
+        loadRelations(plan, projection, resultById);
+
+        return new ArrayList<>(resultById.values());
+    }
+
+    //
+    // 'rootIds' collects the ids of the root rows when not null.
+    //
+    private <D> SearchPage<D> search(Class<D> dtoType, List<String> columns, String restSql, boolean keyset, KeysetCursor after,
+                                     int firstResult, int pageSize, String sortColumn, String sortDirection, Set<Object> rootIds) {
+
+        Timer.Sample searchSample = searchMetrics.start();
+        long startNanos = System.nanoTime();
+
+        //
+        // Columns to be selected (root columns and related entity columns), analyzed once per column list.
+        //
+        Timer.Sample planSample = searchMetrics.start();
+        SearchPlan plan = searchPlanner.plan(domainClass, columns);
+        SearchProjection<D> projection = plan.getProjection(dtoType);
+
+        PageRows page = selectPage(plan, restSql, keyset, after, firstResult, pageSize, sortColumn, sortDirection, planSample);
+        List<Object[]> results = page.rows();
+
+        // Sort column is the last selection when it is not one of the root columns
+        int sortIndex = plan.getRootColumns().indexOf(sortColumn);
+        if (sortIndex < 0) {
+            sortIndex = plan.getRootColumns().size();
+        }
+
+        // Map result rows to result list. Row elements are in the same order as the plan root columns
+        Timer.Sample hydrationSample = searchMetrics.start();
+        List<D> resultList = new ArrayList<>();
+        Map<Object, D> resultById = new LinkedHashMap<>();
+        for (Object[] row : results) {
+            D result = projection.newInstance(row);
+            resultList.add(result);
+            resultById.put(row[plan.getIdIndex()], result);
+        }
+        searchMetrics.record(hydrationSample, domainClass, SearchMetrics.Phase.HYDRATION);
+
+        if (rootIds != null) {
+            rootIds.addAll(resultById.keySet());
         }
 
         //
-        // Get related entities type
+        // Related entities (batched: one query per related entity and chunk of root ids)
         //
-        for (String relatedEntity:relatedEntityColumns.keySet()) {
-            if (relatedEntityType.get(relatedEntity) == null) {
-                Class<?> entityType = null;
-                SingularAttribute<?, ?> singularAttribute = entityManager.getMetamodel().entity(domainClass).getSingularAttributes()
-                        .stream().filter(sa -> sa.getName().equals(relatedEntity))
-                        .findFirst().orElse(null);
-
-                if (singularAttribute != null) {
-                    entityType = singularAttribute.getBindableJavaType();
-                }
-                else {
-                    PluralAttribute<?, ?, ?> pluralAttribute = entityManager.getMetamodel().entity(domainClass).getPluralAttributes()
-                            .stream().filter(sa -> sa.getName().equals(relatedEntity))
-                            .findFirst().orElse(null);
+        int relatedQueries = loadRelations(plan, projection, resultById);
 
-                    if (pluralAttribute != null) {
-                        entityType = pluralAttribute.getBindableJavaType();
-                    }
-                }
+        searchMetrics.recordSearch(searchSample, domainClass, page.queries() + relatedQueries, resultList.size());
+        searchUsageStatistics.record(domainClass, restSql, sortColumn, System.nanoTime() - startNanos);
 
-                relatedEntityType.put(relatedEntity, entityType);
-            }
+        String nextCursor = null;
+        if (keyset && !results.isEmpty() && results.size() == pageSize) {
+            Object[] lastRow = results.get(results.size() - 1);
+            nextCursor = new KeysetCursor(sortColumn, sortDirection, lastRow[sortIndex], lastRow[plan.getIdIndex()]).encode();
+        }
+
+        return new SearchPage<>(resultList, nextCursor);
+    }
+
+    @Override
+    public void searchJson(JsonGenerator generator, Class<?> viewType, List<String> columns, String restSql, int pageNumber, int pageSize,
+                           String sortColumn, String sortDirection) throws IOException {
+        if (!(generator.getCodec() instanceof ObjectMapper objectMapper)) {
+            throw new IllegalArgumentException("The JSON generator must be created by an ObjectMapper");
         }
 
+        Timer.Sample searchSample = searchMetrics.start();
+        long startNanos = System.nanoTime();
+
+        Timer.Sample planSample = searchMetrics.start();
+        SearchPlan plan = searchPlanner.plan(domainClass, columns);
+        JsonProjection projection = plan.getJsonProjection(viewType, objectMapper);
+
+        PageRows page = selectPage(plan, restSql, false, null, pageNumber * pageSize, pageSize, sortColumn, sortDirection, planSample);
+
         //
-        // Add 'id' column if not present
+        // Related rows by relation and root id, all of them read before writing: a failed query is not a half written page
         //
-        if (!rootColumns.contains("id")) {
-            rootColumns.add("id");
+        List<Object> rootIds = new ArrayList<>();
+        for (Object[] row : page.rows()) {
+            rootIds.add(row[plan.getIdIndex()]);
         }
+        List<RelatedRows> relatedResults = fetchRelations(plan, projection::isMapped, rootIds);
+
+        List<Map<Object, List<Object[]>>> relatedRows = new ArrayList<>(Collections.nCopies(plan.getRelations().size(), null));
+        for (RelatedRows related : relatedResults) {
+            RelationPlan relation = plan.getRelations().get(related.relationIndex());
+            Map<Object, List<Object[]>> rowsById = relatedRows.get(related.relationIndex());
+            if (rowsById == null) {
+                rowsById = new HashMap<>();
+                relatedRows.set(related.relationIndex(), rowsById);
+            }
+
+            int rootIdIndex = relation.getColumns().size();
+            for (Tuple tuple : related.rows()) {
+                Object[] row = tuple.toArray();
+                rowsById.computeIfAbsent(row[rootIdIndex], rootId -> new ArrayList<>()).add(row);
+            }
+        }
+
+        // Rows written as they are, the hydration phase is the JSON writing
+        Timer.Sample hydrationSample = searchMetrics.start();
+        SerializerProvider provider = objectMapper.getSerializerProviderInstance();
+        generator.writeStartArray();
+        for (Object[] row : page.rows()) {
+            projection.write(generator, provider, row, relatedRows);
+        }
+        generator.writeEndArray();
+        searchMetrics.record(hydrationSample, domainClass, SearchMetrics.Phase.HYDRATION);
 
-        for (String relatedEntity:relatedEntityColumns.keySet()) {
-            String idColumn = relatedEntityColumns.get(relatedEntity).stream().filter(rc -> rc.contains("id")).toList().stream().findAny().orElse(null);
-            if (idColumn == null) {
-                relatedEntityColumns.get(relatedEntity).add("id");
+        searchMetrics.recordSearch(searchSample, domainClass, page.queries() + relatedResults.size(), page.rows().size());
+        searchUsageStatistics.record(domainClass, restSql, sortColumn, System.nanoTime() - startNanos);
+    }
+
+    //
+    // Root rows of a page: plan root columns followed by the sort column when it is not one of them. From the entity
+    // snapshot when it can evaluate the filter and the sort in memory, from the database otherwise.
+    // Records the PLAN phase (started by the caller) and the QUERY phase.
+    //
+    private PageRows selectPage(SearchPlan plan, String restSql, boolean keyset, KeysetCursor after, int firstResult, int pageSize,
+                                String sortColumn, String sortDirection, Timer.Sample planSample) {
+        // Entity snapshot, used when it can evaluate the filter and the sort in memory
+        ColumnarSnapshot snapshot = snapshotRegistry.get(domainClass);
+        RsqlSpecification<T> filter = null;
+        if (snapshot != null) {
+            filter = restSql == null || restSql.isEmpty() ? null : rsqlFilterCache.compile(domainClass, restSql);
+            if (!snapshot.supports(filter, sortColumn)) {
+                snapshot = null;
             }
         }
 
+        CriteriaQuery<Tuple> criteriaQuery = snapshot == null ? selectRows(plan, restSql, keyset, after, sortColumn, sortDirection) : null;
+        searchMetrics.record(planSample, domainClass, SearchMetrics.Phase.PLAN);
+
         //
-        // Root entity query
+        // Main query, or snapshot search and its rows (from the database by id when it lacks some column)
         //
+        int queries = 0;
+        Timer.Sample querySample = searchMetrics.start();
+        List<Object[]> results = new ArrayList<>();
+        if (snapshot == null) {
+            TypedQuery<Tuple> query = entityManager.createQuery(criteriaQuery);
+            query.setFirstResult(firstResult);
+            query.setMaxResults(pageSize);
+
+            for (Tuple tuple : query.getResultList()) {
+                results.add(tuple.toArray());
+            }
+            queries++;
+        } else {
+            List<Object> ids = snapshot.searchIds(filter, sortColumn, !"desc".equals(sortDirection),
+                    after == null ? null : after.getSortValue(), after == null ? null : after.getId(), firstResult, pageSize);
+
+            List<String> selectedColumns = new ArrayList<>(plan.getRootColumns());
+            if (sortColumn != null && !sortColumn.isEmpty() && !selectedColumns.contains(sortColumn)) {
+                selectedColumns.add(sortColumn);
+            }
+            if (snapshot.hasProperties(selectedColumns)) {
+                results = snapshot.rows(ids, selectedColumns);
+            } else if (!ids.isEmpty()) {
+                results = selectRowsById(selectedColumns, ids);
+                queries++;
+            }
+        }
+        searchMetrics.record(querySample, domainClass, SearchMetrics.Phase.QUERY);
+
+        return new PageRows(results, queries);
+    }
+
+    private record PageRows(List<Object[]> rows, int queries) {
+    }
+
+    //
+    // Root entity query: plan root columns (plus the sort column), RSQL filter, keyset predicate and order.
+    //
+    private CriteriaQuery<Tuple> selectRows(SearchPlan plan, String restSql, boolean keyset, KeysetCursor after,
+                                            String sortColumn, String sortDirection) {
         CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
         CriteriaQuery<Tuple> criteriaQuery = criteriaBuilder.createTupleQuery();
         Root<T> root = criteriaQuery.from(domainClass);
@@ -162,347 +408,424 @@ public class FilterRepositoryImpl<T, ID extends Serializable> extends SimpleJpaR
         // Selected root columns
         //
         List<Selection<?>> selections = new ArrayList<>();
-        for (String rootColumn: rootColumns) {
+        for (String rootColumn: plan.getRootColumns()) {
             selections.add(root.get(rootColumn).alias(rootColumn));
         }
-        criteriaQuery.multiselect(selections);
 
-        if (!relatedEntityColumns.isEmpty()) {
-            criteriaQuery.distinct(true);
+        // Sort column is needed in the select list to build the next keyset cursor
+        boolean sorted = sortColumn != null && !sortColumn.isEmpty() && sortDirection != null && !sortDirection.isEmpty();
+        if (sorted && !plan.getRootColumns().contains(sortColumn)) {
+            selections.add(root.get(sortColumn));
         }
+        criteriaQuery.multiselect(selections);
+
+        // No DISTINCT: filters only join to-one associations and read plural ones with EXISTS subqueries
 
         //
         // Build where
         //
-        if (restSql != null && !restSql.isEmpty()) {
-            TypesExtractor<T> typesExtractor = new TypesExtractor<>();
-            Map<String, Class<?>> types = typesExtractor.extract(entityManager, domainClass);
-
-            Node rootNode = new RSQLParser().parse(restSql);
+        List<Predicate> predicates = new ArrayList<>();
+        Predicate filter = toPredicate(restSql, root, criteriaQuery, criteriaBuilder);
+        if (filter != null) {
+            predicates.add(filter);
+        }
 
-            Specification<T> spec = rootNode.accept(new CustomRsqlVisitor<>(types));
+        if (after != null) {
+            predicates.add(seekPredicate(criteriaBuilder, root.get(sortColumn), root.get("id"), sortDirection.equals("asc"), after, sortColumn.equals("id")));
+        }
 
-            Predicate predicate = Specification.where(spec).toPredicate(root, criteriaQuery, criteriaBuilder);
-            criteriaQuery.where(predicate);
+        if (!predicates.isEmpty()) {
+            criteriaQuery.where(predicates.toArray(new Predicate[0]));
         }
 
         //
         // Sort
         //
-        if (sortColumn != null && !sortColumn.isEmpty() && sortDirection != null && !sortDirection.isEmpty()) {
-            if (sortDirection.equals("asc")) {
-                criteriaQuery.orderBy(criteriaBuilder.asc(root.get(sortColumn)));
-            }
-            else {
-                criteriaQuery.orderBy(criteriaBuilder.desc(root.get(sortColumn)));
+        if (keyset || sorted) {
+            // Total order: sort column (nulls as lowest values) and then id as tie-breaker. Offset pages too, so rows
+            // with the same sort value keep their page (and the order of the snapshot search)
+            boolean ascending = sortDirection.equals("asc");
+            List<Order> orders = new ArrayList<>();
+            orders.add(order(criteriaBuilder, root.get(sortColumn), ascending));
+            if (!sortColumn.equals("id")) {
+                orders.add(order(criteriaBuilder, root.get("id"), ascending));
             }
+            criteriaQuery.orderBy(orders);
         }
 
-        //
-        // Main query
-        //
-        TypedQuery<Tuple> query = entityManager.createQuery(criteriaQuery);
-        query.setFirstResult(pageNumber);
-        query.setMaxResults(pageSize);
-
-        long startMainQuery = System.currentTimeMillis();
-        List<Tuple> results = query.getResultList();
-        long endMainQuery = System.currentTimeMillis();
-
-        // Map Tuple result list to entity list
-        List<T> resultList = new ArrayList<>();
-        for (Tuple tuple:results) {
-            T entity = null;
-            try {
-                entity = domainClass.getDeclaredConstructor().newInstance();
-            } catch (InstantiationException | IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
-                throw new RuntimeException(e);
+        return criteriaQuery;
+    }
+
+    //
+    // Columns of the root rows of the given ids, in the order of the ids (the snapshot search order).
+    //
+    private List<Object[]> selectRowsById(List<String> selectedColumns, List<Object> ids) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> criteriaQuery = criteriaBuilder.createTupleQuery();
+        Root<T> root = criteriaQuery.from(domainClass);
+
+        List<Selection<?>> selections = new ArrayList<>();
+        for (String selectedColumn : selectedColumns) {
+            selections.add(root.get(selectedColumn));
+        }
+        // Id last, to find the row of each id
+        selections.add(root.get("id"));
+        criteriaQuery.multiselect(selections);
+        criteriaQuery.where(root.get("id").in(ids));
+
+        Map<Object, Object[]> rowById = new HashMap<>();
+        for (Tuple tuple : entityManager.createQuery(criteriaQuery).getResultList()) {
+            Object[] row = tuple.toArray();
+            rowById.put(row[selectedColumns.size()], Arrays.copyOf(row, selectedColumns.size()));
+        }
+
+        // Rows deleted since the snapshot refresh are skipped
+        List<Object[]> rows = new ArrayList<>();
+        for (Object id : ids) {
+            Object[] row = rowById.get(id);
+            if (row != null) {
+                rows.add(row);
             }
-            resultList.add(entity);
-
-            for (TupleElement<?> element:tuple.getElements()) {
-                try {
-                    // Root columns
-                    if (rootColumns.contains(element.getAlias())) {
-                        Field field = domainClass.getDeclaredField(element.getAlias());
-                        field.setAccessible(true);
-                        field.set(entity, tuple.get(element.getAlias(), element.getJavaType()));
-                    }
-                } catch (IllegalAccessException | NoSuchFieldException e) {
-                    throw new RuntimeException(e);
+        }
+        return rows;
+    }
+
+    //
+    // Related entities of the given root results (batched: one query per related entity and chunk of root ids).
+    // Returns the number of queries issued.
+    //
+    private <D> int loadRelations(SearchPlan plan, SearchProjection<D> projection, Map<Object, D> resultById) {
+        List<RelatedRows> relatedResults = fetchRelations(plan, relationIndex -> projection.getRelations().get(relationIndex).isMapped(),
+                resultById.keySet());
+
+        // Related objects already created by relation, shared between root results. For example a role of many users
+        Map<Integer, Map<Object, Object>> relatedObjectsByRelation = new HashMap<>();
+
+        // Map Tuple result lists to related objects and stitch them to their root result, on this thread.
+        // Tuple elements are the plan related columns followed by the root entity id
+        for (RelatedRows related : relatedResults) {
+            int relationIndex = related.relationIndex();
+            RelationPlan relation = plan.getRelations().get(relationIndex);
+            RelationProjection relationProjection = projection.getRelations().get(relationIndex);
+            Map<Object, Object> relatedObjects = relatedObjectsByRelation.computeIfAbsent(relationIndex, index -> new HashMap<>());
+
+            Timer.Sample relatedHydrationSample = searchMetrics.start();
+            int rootIdIndex = relation.getColumns().size();
+            for (Tuple relatedResult : related.rows()) {
+                Object[] row = relatedResult.toArray();
+
+                Object relatedObject = relatedObjects.get(row[relation.getIdIndex()]);
+                if (relatedObject == null) {
+                    relatedObject = relationProjection.newInstance(row);
+                    relatedObjects.put(row[relation.getIdIndex()], relatedObject);
                 }
+
+                relationProjection.attach(resultById.get(row[rootIdIndex]), relatedObject);
             }
+            searchMetrics.record(relatedHydrationSample, domainClass, SearchMetrics.Phase.RELATION_HYDRATION, relation.getName());
         }
 
-        //
-        // Related entities (N+1)
-        //
-        long elapsedRelatedQueries = 0;
-        for (T result:resultList) {
-            // Set to null related entities not requested in columns
-            for (Attribute attribute:findSingularAttributes(entityManager.getMetamodel(), domainClass)) {
-                if (!relatedEntityColumns.containsKey(attribute.getName())) {
-                    try {
-                        Field fieldToNull = domainClass.getDeclaredField(attribute.getName());
-                        fieldToNull.setAccessible(true);
-                        fieldToNull.set(result, null);
-                    } catch (NoSuchFieldException | IllegalAccessException e) {
-                        throw new RuntimeException(e);
-                    }
-                }
+        return relatedResults.size();
+    }
+
+    //
+    // Rows of the mapped relations of the given root ids, one result list per query issued: one per relation and chunk
+    // of root ids. Independent of each other, so they can run concurrently
+    //
+    private List<RelatedRows> fetchRelations(SearchPlan plan, IntPredicate mapped, Collection<Object> resultRootIds) {
+        List<Object> rootIds = new ArrayList<>(resultRootIds);
+        List<Integer> fetchRelationIndexes = new ArrayList<>();
+        List<Function<EntityManager, List<Tuple>>> fetches = new ArrayList<>();
+        for (int relationIndex = 0; relationIndex < plan.getRelations().size(); relationIndex++) {
+            RelationPlan relation = plan.getRelations().get(relationIndex);
+            if (!mapped.test(relationIndex)) {
+                continue;
             }
 
-            for (Attribute attribute:findPluralAttributes(entityManager.getMetamodel(), domainClass)) {
-                if (!relatedEntityColumns.containsKey(attribute.getName())) {
-                    try {
-                        Field fieldToNull = domainClass.getDeclaredField(attribute.getName());
-                        fieldToNull.setAccessible(true);
-                        fieldToNull.set(result, null);
-                    } catch (NoSuchFieldException | IllegalAccessException e) {
-                        throw new RuntimeException(e);
-                    }
-                }
+            for (int from = 0; from < rootIds.size(); from += relatedBatchSize) {
+                List<Object> rootIdsChunk = rootIds.subList(from, Math.min(from + relatedBatchSize, rootIds.size()));
+                fetchRelationIndexes.add(relationIndex);
+                fetches.add(fetchEntityManager -> fetchRelated(fetchEntityManager, relation, rootIdsChunk));
             }
+        }
+
+        List<List<Tuple>> relatedResultLists = relationFetcher.fetchAll(entityManager, fetches);
+
+        List<RelatedRows> relatedResults = new ArrayList<>();
+        for (int fetchIndex = 0; fetchIndex < fetches.size(); fetchIndex++) {
+            relatedResults.add(new RelatedRows(fetchRelationIndexes.get(fetchIndex), relatedResultLists.get(fetchIndex)));
+        }
+        return relatedResults;
+    }
 
-            // Build N+1 Queries
-            for (String relatedEntity:relatedEntityColumns.keySet()) {
-                CriteriaQuery<Tuple> relatedCriteriaQuery = criteriaBuilder.createTupleQuery();
-                Root<?> relatedRoot = relatedCriteriaQuery.from(relatedEntityType.get(relatedEntity));
+    // Result list of one related fetch, rows of the relation at relationIndex of the plan
+    private record RelatedRows(int relationIndex, List<Tuple> rows) {
+    }
 
-                // Build join
-                String relatedRelatedEntity = null;
-                for (SingularAttribute<?, ?> singularAttribute : entityManager.getMetamodel().entity(relatedEntityType.get(relatedEntity)).getSingularAttributes()) {
-                    if (domainClass.equals(singularAttribute.getBindableJavaType())) {
-                        relatedRelatedEntity = singularAttribute.getName();
+    //
+    // Selected columns of the related entities of a chunk of root ids, and the root entity id they belong to.
+    // Runs on the given EntityManager, the repository one or a read-only one of a RelationFetcher thread.
+    //
+    private List<Tuple> fetchRelated(EntityManager fetchEntityManager, RelationPlan relation, List<Object> rootIdsChunk) {
+        CriteriaBuilder criteriaBuilder = fetchEntityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> relatedCriteriaQuery = criteriaBuilder.createTupleQuery();
+        Root<?> relatedRoot = relatedCriteriaQuery.from(relation.getType());
+        Join<?, ?> relatedJoin = relatedRoot.join(relation.getBackReference(), JoinType.INNER);
+
+        List<Selection<?>> relatedSelection = new ArrayList<>();
+        for (String relatedColumn:relation.getColumns()) {
+            relatedSelection.add(relatedRoot.get(relatedColumn).alias(relatedColumn));
+        }
+        relatedSelection.add(relatedJoin.get("id").alias(ROOT_ID_ALIAS));
+        relatedCriteriaQuery.multiselect(relatedSelection);
+
+        // Where (join)
+        relatedCriteriaQuery.where(relatedJoin.get("id").in(rootIdsChunk));
+
+        // Related entity query
+        TypedQuery<Tuple> relatedQuery = fetchEntityManager.createQuery(relatedCriteriaQuery);
+
+        Timer.Sample relatedQuerySample = searchMetrics.start();
+        List<Tuple> relatedResultList = relatedQuery.getResultList();
+        searchMetrics.record(relatedQuerySample, domainClass, SearchMetrics.Phase.RELATION_QUERY, relation.getName());
+        return relatedResultList;
+    }
+
+    @Override
+    public Optional<T> findById(ID id, List<String> columns) {
+        return Optional.ofNullable(entityManager.find(domainClass, id, Map.of(SpecHints.HINT_SPEC_FETCH_GRAPH, fetchGraph(columns))));
+    }
+
+    @Override
+    public List<T> findAll(List<String> columns) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<T> criteriaQuery = criteriaBuilder.createQuery(domainClass);
+        criteriaQuery.select(criteriaQuery.from(domainClass));
+
+        return entityManager.createQuery(criteriaQuery)
+                .setHint(SpecHints.HINT_SPEC_FETCH_GRAPH, fetchGraph(columns))
+                .getResultList();
+    }
+
+    //
+    // Fetch graph of the associations in the columns (all of them with no columns): a node per association of each path,
+    // the basic attributes are loaded anyway. Built once per normalized column list. A single collection is joined, two
+    // would multiply each other rows (duplicates in a List): the others are left to their lazy @BatchSize loads.
+    //
+    @SuppressWarnings("unchecked")
+    private RootGraph<T> fetchGraph(List<String> columns) {
+        return fetchGraphs.get(searchPlanner.normalize(columns), normalizedColumns -> {
+            Metamodel metamodel = entityManager.getMetamodel();
+            EntityType<T> entityType = metamodel.entity(domainClass);
+            RootGraph<T> graph = (RootGraph<T>) entityManager.createEntityGraph(domainClass);
+
+            List<String> paths = normalizedColumns;
+            if (paths.isEmpty()) {
+                paths = entityType.getAttributes().stream()
+                        .filter(Attribute::isAssociation)
+                        .map(Attribute::getName)
+                        .sorted()
+                        .toList();
+            }
+
+            // Path of the joined collection
+            String fetchedCollection = null;
+            for (String column : paths) {
+                Graph<?> node = graph;
+                ManagedType<?> type = entityType;
+                String[] path = column.split("\\.");
+                for (int index = 0; index < path.length; index++) {
+                    // Fails on unknown attributes
+                    Attribute<?, ?> attribute = type.getAttribute(path[index]);
+                    if (!attribute.isAssociation()) {
+                        break;
                     }
-                }
 
-                if (relatedRelatedEntity == null) {
-                    for (PluralAttribute<?, ?, ?> pluralAttribute : entityManager.getMetamodel().entity(relatedEntityType.get(relatedEntity)).getPluralAttributes()) {
-                        if (domainClass.equals(pluralAttribute.getBindableJavaType())) {
-                            relatedRelatedEntity = pluralAttribute.getName();
+                    if (attribute.isCollection()) {
+                        String collectionPath = String.join(".", Arrays.asList(path).subList(0, index + 1));
+                        if (fetchedCollection != null && !fetchedCollection.equals(collectionPath)) {
+                            break;
                         }
+                        fetchedCollection = collectionPath;
                     }
-                }
-
-                Join<?, T> relatedJoin = relatedRoot.join(relatedRelatedEntity, JoinType.INNER);
 
-                // Selected related entity columns
-                List<Selection<?>> relatedSelection = new ArrayList<>();
-                for (String relatedColumn:relatedEntityColumns.get(relatedEntity)) {
-                    relatedSelection.add(relatedRoot.get(relatedColumn).alias(relatedColumn));
+                    if (index == path.length - 1) {
+                        node.addAttributeNode(path[index]);
+                    } else {
+                        node = node.addSubGraph(path[index]);
+                        Class<?> relatedType = attribute instanceof PluralAttribute<?, ?, ?> plural
+                                ? plural.getElementType().getJavaType() : attribute.getJavaType();
+                        type = metamodel.managedType(relatedType);
+                    }
                 }
-                relatedCriteriaQuery.multiselect(relatedSelection);
-
-                // Where (join)
-                Long id;
-                try {
-                    Field idField = domainClass.getDeclaredField("id");
-                    idField.setAccessible(true);
-                    id = (Long) idField.get(result);
-                } catch (NoSuchFieldException | IllegalAccessException e) {
-                    throw new RuntimeException(e);
+            }
+            return graph.makeRootGraph(null, false);
+        });
+    }
+
+    @Override
+    public Reader readClob(ID id, String attribute) {
+        // Fails on unknown attributes
+        entityManager.getMetamodel().entity(domainClass).getAttribute(attribute);
+
+        AbstractEntityPersister persister = (AbstractEntityPersister) entityManager.getEntityManagerFactory()
+                .unwrap(SessionFactoryImplementor.class).getMappingMetamodel().getEntityDescriptor(domainClass);
+        String sql = "select " + persister.getPropertyColumnNames(attribute)[0] + " from " + persister.getTableName()
+                + " where " + persister.getIdentifierColumnNames()[0] + " = ?";
+
+        // Plain JDBC on the connection of the current transaction: JPA would read the attribute as a whole String.
+        // The statement stays open until the reader is closed
+        return entityManager.unwrap(Session.class).doReturningWork(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            try {
+                statement.setObject(1, id);
+                ResultSet resultSet = statement.executeQuery();
+                Clob clob = resultSet.next() ? resultSet.getClob(1) : null;
+                if (clob == null) {
+                    statement.close();
+                    return null;
                 }
-                Predicate predicate = criteriaBuilder.equal(relatedJoin.get("id"), id);
-                relatedCriteriaQuery.where(predicate);
-
-                // Related entity query
-                TypedQuery<Tuple> relatedQuery = entityManager.createQuery(relatedCriteriaQuery);
-
-                long startRelatedQuery = System.currentTimeMillis();
-                List<Tuple> relatedResultList = relatedQuery.getResultList();
-                long endRelatedQuery = System.currentTimeMillis();
-                elapsedRelatedQueries += (endRelatedQuery-startRelatedQuery);
-
-                // Map Tuple result list to related entity list
-                for (Tuple relatedResult : relatedResultList) {
-                    // Process each of related entity columns requested
-                    for (TupleElement<?> element:relatedResult.getElements()) {
-                        boolean isPlural = entityManager.getMetamodel().entity(domainClass).getPluralAttributes().stream().anyMatch(a -> a.getName().equals(relatedEntity));
-                        if (isPlural) {
-                            // OneToMany or ManyToMany (Collection / Plural attribute)
-                            Field collectionField = null;
-                            try {
-                                collectionField = domainClass.getDeclaredField(relatedEntity);
-                            } catch (NoSuchFieldException e) {
-                                throw new RuntimeException(e);
-                            }
-                            collectionField.setAccessible(true);
-
-                            Type genericType = collectionField.getGenericType();
-                            ParameterizedType parameterizedType = (ParameterizedType) genericType;
-                            Type[] typeArguments = parameterizedType.getActualTypeArguments();
-                            Type collectionType = typeArguments[0];
-                            Class<?> elementClass = (Class<?>) collectionType;
-
-                            Collection<Object> collection;
-                            try {
-                                collection = (Collection<Object>) collectionField.get(result);
-                            } catch (IllegalAccessException e) {
-                                throw new RuntimeException(e);
-                            }
-
-                            // Check if related entity object exists, if not create new one
-                            Object object = collection.stream().filter(u -> checkExistingInstance("id", relatedResult.get("id"), u, elementClass)).findFirst().orElse(null);
-                            if (object == null) {
-                                object = createInstance("id", relatedResult.get("id"), elementClass);
-                            }
-
-                            // Set selected column to field
-                            Field objectField;
-                            try {
-                                objectField = elementClass.getDeclaredField(element.getAlias());
-                            } catch (NoSuchFieldException e) {
-                                throw new RuntimeException(e);
-                            }
-                            objectField.setAccessible(true);
-                            try {
-                                objectField.set(object, relatedResult.get(element.getAlias()));
-                            } catch (IllegalAccessException e) {
-                                throw new RuntimeException(e);
-                            }
-
-                            // Add related entity object to collection
-                            if (!collection.contains(object)) {
-                                collection.add(object);
-                            }
-                        }
-                        else {
-                            // ManyToOne or OneToOne (Singular attribute)
-                            try {
-                                Field relatedFieldObject = domainClass.getDeclaredField(relatedEntity);
-                                relatedFieldObject.setAccessible(true);
-
-                                Object relatedObject = relatedFieldObject.get(result);
-                                if (relatedObject == null) {
-                                    relatedObject = createInstance("id", relatedResult.get("id"), relatedEntityType.get(relatedEntity));
-                                    relatedFieldObject.set(result, relatedObject);
-                                }
-
-                                Field relatedObjectField = relatedEntityType.get(relatedEntity).getDeclaredField(element.getAlias());
-                                relatedObjectField.setAccessible(true);
-                                relatedObjectField.set(relatedObject, relatedResult.get(element.getAlias(), element.getJavaType()));
-
-                                // Always set null related entities of the related entities. For example in User: roles.users
-                                for(Attribute attribute:findSingularAttributes(entityManager.getMetamodel(), relatedEntityType.get(relatedEntity))) {
-                                    try {
-                                        Field fieldToNull = relatedEntityType.get(relatedEntity).getDeclaredField(attribute.getName());
-                                        fieldToNull.setAccessible(true);
-                                        fieldToNull.set(relatedObject, null);
-                                    } catch (NoSuchFieldException | IllegalAccessException e) {
-                                        throw new RuntimeException(e);
-                                    }
-                                }
-
-                                for(Attribute attribute:findPluralAttributes(entityManager.getMetamodel(), relatedEntityType.get(relatedEntity))) {
-                                    try {
-                                        Field fieldToNull = relatedEntityType.get(relatedEntity).getDeclaredField(attribute.getName());
-                                        fieldToNull.setAccessible(true);
-                                        fieldToNull.set(relatedObject, null);
-                                    } catch (NoSuchFieldException | IllegalAccessException e) {
-                                        throw new RuntimeException(e);
-                                    }
-                                }
-
-                            } catch (NoSuchFieldException | IllegalAccessException e) {
-                                throw new RuntimeException(e);
-                            }
 
+                return new FilterReader(clob.getCharacterStream()) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                            clob.free();
+                            statement.close();
+                        } catch (SQLException e) {
+                            throw new IOException(e);
                         }
                     }
-                }
+                };
+            } catch (SQLException | RuntimeException e) {
+                statement.close();
+                throw e;
             }
-        }
+        });
+    }
 
-        long end = System.currentTimeMillis();
-        System.out.println("Main query: " + (endMainQuery-startMainQuery));
-        System.out.println("Related queries: " + elapsedRelatedQueries);
-        System.out.println("Java process process: " + ((end - start) - (elapsedRelatedQueries + (endMainQuery-startMainQuery))));
-        System.out.println("Full search process: " + (end - start));
+    @Override
+    @Transactional
+    public void insertAll(List<? extends T> entities) {
+        for (T entity : entities) {
+            entityManager.persist(entity);
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
 
-        return resultList;
+    @Override
+    public long count(String restSql) {
+        return count(restSql, CountMode.EXACT).getValue();
     }
 
-    private <Y> Y createInstance(String idFieldName, Object idValue, Class<Y> clazz) {
-        try {
-            Y object = clazz.getDeclaredConstructor().newInstance();
-            Field idObjectField = clazz.getDeclaredField(idFieldName);
-            idObjectField.setAccessible(true);
-            idObjectField.set(object, idValue);
-            return object;
-        } catch (InstantiationException | IllegalAccessException | NoSuchFieldException | NoSuchMethodException |
-                 InvocationTargetException e) {
-            throw new RuntimeException(e);
+    @Override
+    public SearchCount count(String restSql, CountMode mode) {
+        String normalizedRestSql = restSql == null ? "" : restSql.trim();
+
+        switch (mode) {
+            case CACHED:
+                return counts.get(normalizedRestSql, this::exactCount);
+            case ESTIMATED:
+                return estimatedCount(normalizedRestSql);
+            default:
+                return exactCount(normalizedRestSql);
         }
     }
 
-    private boolean checkExistingInstance(String idFieldName, Object idValue, Object object, Class<?> type) {
-        Field idField;
-        try {
-            idField = type.getDeclaredField(idFieldName);
-            idField.setAccessible(true);
-            Object id = idField.get(object);
-            return id.equals(idValue);
-        } catch (NoSuchFieldException | IllegalAccessException e) {
-            throw new RuntimeException(e);
-        }
+    @Override
+    public <D> java.util.function.Predicate<D> filterPredicate(Class<D> type, String restSql) {
+        return rsqlFilterCache.compilePredicate(domainClass, type, restSql);
     }
 
-    private List<SingularAttribute<?, ?>> findRelatedEntitySingularAttributes(Metamodel metamodel, Class<?> entityClass, List<String> columns) {
-        List<SingularAttribute<?, ?>> entitySingularAttributes = new ArrayList<>();
+    private SearchCount exactCount(String restSql) {
+        ColumnarSnapshot snapshot = snapshotRegistry.get(domainClass);
+        if (snapshot != null) {
+            RsqlSpecification<T> filter = restSql.isEmpty() ? null : rsqlFilterCache.compile(domainClass, restSql);
+            if (snapshot.supports(filter, null)) {
+                return new SearchCount(snapshot.count(filter), false);
+            }
+        }
 
-        List<String> entityColumns = columns.stream().map(c -> c.split("\\.")[0]).toList();
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> criteriaQuery = criteriaBuilder.createQuery(Long.class);
+        Root<T> root = criteriaQuery.from(domainClass);
+        criteriaQuery.select(criteriaBuilder.count(root.get("id")));
 
-        for (SingularAttribute<?, ?> singularAttribute : metamodel.entity(entityClass).getSingularAttributes()) {
-            if (entityColumns.contains(singularAttribute.getName()) &&
-                    (singularAttribute.getPersistentAttributeType() == Attribute.PersistentAttributeType.MANY_TO_ONE ||
-                            singularAttribute.getPersistentAttributeType() == Attribute.PersistentAttributeType.ONE_TO_ONE)) {
-                entitySingularAttributes.add(singularAttribute);
-            }
+        Predicate filter = toPredicate(restSql, root, criteriaQuery, criteriaBuilder);
+        if (filter != null) {
+            criteriaQuery.where(filter);
         }
 
-        return entitySingularAttributes;
+        return new SearchCount(entityManager.createQuery(criteriaQuery).getSingleResult(), false);
     }
 
-    private List<PluralAttribute<?, ?, ?>> findRelatedEntityPluralAttributes(Metamodel metamodel, Class<?> entityClass, List<String> columns) {
-        List<PluralAttribute<?, ?, ?>> entityPluralAttributes = new ArrayList<>();
-
-        List<String> entityColumns = columns.stream().map(c -> c.split("\\.")[0]).toList();
+    //
+    // Reads at most threshold + 1 ids instead of counting every matching row.
+    //
+    private SearchCount estimatedCount(String restSql) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object> criteriaQuery = criteriaBuilder.createQuery(Object.class);
+        Root<T> root = criteriaQuery.from(domainClass);
+        criteriaQuery.select(root.get("id"));
 
-        for (PluralAttribute<?, ?, ?> pluralAttribute : metamodel.entity(entityClass).getPluralAttributes()) {
-            if (entityColumns.contains(pluralAttribute.getName()) &&
-                    (pluralAttribute.getPersistentAttributeType() == Attribute.PersistentAttributeType.MANY_TO_MANY ||
-                            pluralAttribute.getPersistentAttributeType() == Attribute.PersistentAttributeType.ONE_TO_MANY)) {
-                entityPluralAttributes.add(pluralAttribute);
-            }
+        Predicate filter = toPredicate(restSql, root, criteriaQuery, criteriaBuilder);
+        if (filter != null) {
+            criteriaQuery.where(filter);
         }
 
-        return entityPluralAttributes;
-    }
+        int rows = entityManager.createQuery(criteriaQuery)
+                .setMaxResults(countEstimateThreshold + 1)
+                .getResultList()
+                .size();
 
-    private List<SingularAttribute<?, ?>> findSingularAttributes(Metamodel metamodel, Class<?> entityClass) {
-        List<SingularAttribute<?, ?>> entitySingularAttributes = new ArrayList<>();
+        if (rows > countEstimateThreshold) {
+            return new SearchCount(countEstimateThreshold, true);
+        }
+        return new SearchCount(rows, false);
+    }
 
-        for (SingularAttribute<?, ?> singularAttribute : metamodel.entity(entityClass).getSingularAttributes()) {
-            if (singularAttribute.getPersistentAttributeType() == Attribute.PersistentAttributeType.MANY_TO_ONE ||
-                    singularAttribute.getPersistentAttributeType() == Attribute.PersistentAttributeType.ONE_TO_ONE) {
-                entitySingularAttributes.add(singularAttribute);
-            }
+    //
+    // RSQL filter as a predicate of the given query, null if there is no filter.
+    //
+    private Predicate toPredicate(String restSql, Root<T> root, CriteriaQuery<?> criteriaQuery, CriteriaBuilder criteriaBuilder) {
+        if (restSql == null || restSql.isEmpty()) {
+            return null;
         }
 
-        return entitySingularAttributes;
+        Specification<T> spec = rsqlFilterCache.compile(domainClass, restSql);
+
+        return Specification.where(spec).toPredicate(root, criteriaQuery, criteriaBuilder);
     }
 
-    private List<PluralAttribute<?, ?, ?>> findPluralAttributes(Metamodel metamodel, Class<?> entityClass) {
-        List<PluralAttribute<?, ?, ?>> entityPluralAttributes = new ArrayList<>();
+    //
+    // Rows after the cursor row in the (sort column, id) order. Null sort values sort first ascending and last descending.
+    //
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Predicate seekPredicate(CriteriaBuilder criteriaBuilder, Path sortPath, Path idPath, boolean ascending, KeysetCursor after, boolean sortById) {
+        Comparable id = (Comparable) after.getId();
+        Predicate idAfter = ascending ? criteriaBuilder.greaterThan(idPath, id) : criteriaBuilder.lessThan(idPath, id);
+        if (sortById) {
+            return idAfter;
+        }
 
-        for (PluralAttribute<?, ?, ?> pluralAttribute : metamodel.entity(entityClass).getPluralAttributes()) {
-            if (pluralAttribute.getPersistentAttributeType() == Attribute.PersistentAttributeType.MANY_TO_MANY ||
-                    pluralAttribute.getPersistentAttributeType() == Attribute.PersistentAttributeType.ONE_TO_MANY) {
-                entityPluralAttributes.add(pluralAttribute);
-            }
+        if (after.getSortValue() == null) {
+            Predicate sameKey = criteriaBuilder.and(criteriaBuilder.isNull(sortPath), idAfter);
+            return ascending ? criteriaBuilder.or(sameKey, criteriaBuilder.isNotNull(sortPath)) : sameKey;
         }
 
-        return entityPluralAttributes;
+        Comparable value = (Comparable) after.getSortValue();
+        Predicate keyAfter = ascending ? criteriaBuilder.greaterThan(sortPath, value) : criteriaBuilder.lessThan(sortPath, value);
+        Predicate sameKey = criteriaBuilder.and(criteriaBuilder.equal(sortPath, value), idAfter);
+        return ascending ? criteriaBuilder.or(keyAfter, sameKey) : criteriaBuilder.or(keyAfter, sameKey, criteriaBuilder.isNull(sortPath));
+    }
+
+    private Order order(CriteriaBuilder criteriaBuilder, Path<?> path, boolean ascending) {
+        Order order = ascending ? criteriaBuilder.asc(path) : criteriaBuilder.desc(path);
+        if (order instanceof JpaOrder jpaOrder) {
+            jpaOrder.nullPrecedence(ascending ? NullPrecedence.FIRST : NullPrecedence.LAST);
+        }
+        return order;
     }
 }
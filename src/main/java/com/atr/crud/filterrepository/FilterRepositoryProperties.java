@@ -0,0 +1,240 @@
+package com.atr.crud.filterrepository;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@ConfigurationProperties(prefix = "crud.search")
+public class FilterRepositoryProperties {
+
+    // Max number of root ids bound into a single related entities query (IN clause size).
+    private int relatedBatchSize = 500;
+
+    // Max number of search plans (entity and column list) kept in memory.
+    private long planCacheSize = 1000;
+
+    // Max number of compiled RSQL filters (entity and filter string) kept in memory.
+    private long filterCacheSize = 1000;
+
+    // Max number of associations crossed by a filter property. For example 2 allows user.roles.code in Ticket.
+    private int filterPathDepth = 2;
+
+    // Related entity queries of one search running concurrently on worker threads, and threads shared by all searches
+    // for them. Opt-in: below 2 (the default) they run one after another on the request thread.
+    // Each worker takes an extra connection and needs a free bulkhead permit (bulkhead-permits above 0 and below the
+    // pool size), without one the query runs on the request thread. Worker queries run in their own transaction, so
+    // relation rows can reflect changes committed after the root rows were read.
+    private int relationParallelism = 1;
+
+    private int relationThreads = 8;
+
+    // JDBC fetch size of searchStream.
+    private int streamFetchSize = 500;
+
+    // Search result cache, disabled by default. Entries are also removed when the entities they read change.
+    private boolean resultCacheEnabled = false;
+
+    private long resultCacheSize = 1000;
+
+    private Duration resultCacheTtl = Duration.ofSeconds(10);
+
+    // Entities persisted per transaction (and persistence context) by bulk loads.
+    private int bulkChunkSize = 1000;
+
+    // Max concurrent repository calls (0 for no limit), and how long a call waits for a permit.
+    private int bulkheadPermits = 0;
+
+    private Duration bulkheadTimeout = Duration.ofSeconds(5);
+
+    // How long CACHED counts are kept, and how many filters per entity.
+    private Duration countCacheTtl = Duration.ofSeconds(30);
+
+    private long countCacheSize = 1000;
+
+    // ESTIMATED counts stop counting above this number of rows.
+    private int countEstimateThreshold = 10000;
+
+    // File keeping the filter and sort usage statistics across restarts, empty for none.
+    private String usageFile = "";
+
+    // Create the recommended indexes at startup (H2 only).
+    private boolean indexAutoApply = false;
+
+    // Entities (simple names) searched in a columnar in-memory snapshot, and how far behind the database it can be.
+    private List<String> snapshotEntities = new ArrayList<>();
+
+    private Duration snapshotLag = Duration.ofSeconds(1);
+
+    // Max number of ids an =fts= comparison binds into one IN list, more ids are split into several lists (OR)
+    private int fullTextMaxIds = 1000;
+
+    public int getRelatedBatchSize() {
+        return relatedBatchSize;
+    }
+
+    public void setRelatedBatchSize(int relatedBatchSize) {
+        this.relatedBatchSize = relatedBatchSize;
+    }
+
+    public long getPlanCacheSize() {
+        return planCacheSize;
+    }
+
+    public void setPlanCacheSize(long planCacheSize) {
+        this.planCacheSize = planCacheSize;
+    }
+
+    public Duration getCountCacheTtl() {
+        return countCacheTtl;
+    }
+
+    public void setCountCacheTtl(Duration countCacheTtl) {
+        this.countCacheTtl = countCacheTtl;
+    }
+
+    public long getCountCacheSize() {
+        return countCacheSize;
+    }
+
+    public void setCountCacheSize(long countCacheSize) {
+        this.countCacheSize = countCacheSize;
+    }
+
+    public int getCountEstimateThreshold() {
+        return countEstimateThreshold;
+    }
+
+    public void setCountEstimateThreshold(int countEstimateThreshold) {
+        this.countEstimateThreshold = countEstimateThreshold;
+    }
+
+    public int getStreamFetchSize() {
+        return streamFetchSize;
+    }
+
+    public void setStreamFetchSize(int streamFetchSize) {
+        this.streamFetchSize = streamFetchSize;
+    }
+
+    public long getFilterCacheSize() {
+        return filterCacheSize;
+    }
+
+    public void setFilterCacheSize(long filterCacheSize) {
+        this.filterCacheSize = filterCacheSize;
+    }
+
+    public int getFilterPathDepth() {
+        return filterPathDepth;
+    }
+
+    public void setFilterPathDepth(int filterPathDepth) {
+        this.filterPathDepth = filterPathDepth;
+    }
+
+    public boolean isResultCacheEnabled() {
+        return resultCacheEnabled;
+    }
+
+    public void setResultCacheEnabled(boolean resultCacheEnabled) {
+        this.resultCacheEnabled = resultCacheEnabled;
+    }
+
+    public long getResultCacheSize() {
+        return resultCacheSize;
+    }
+
+    public void setResultCacheSize(long resultCacheSize) {
+        this.resultCacheSize = resultCacheSize;
+    }
+
+    public Duration getResultCacheTtl() {
+        return resultCacheTtl;
+    }
+
+    public void setResultCacheTtl(Duration resultCacheTtl) {
+        this.resultCacheTtl = resultCacheTtl;
+    }
+
+    public int getBulkChunkSize() {
+        return bulkChunkSize;
+    }
+
+    public void setBulkChunkSize(int bulkChunkSize) {
+        this.bulkChunkSize = bulkChunkSize;
+    }
+
+    public int getBulkheadPermits() {
+        return bulkheadPermits;
+    }
+
+    public void setBulkheadPermits(int bulkheadPermits) {
+        this.bulkheadPermits = bulkheadPermits;
+    }
+
+    public Duration getBulkheadTimeout() {
+        return bulkheadTimeout;
+    }
+
+    public void setBulkheadTimeout(Duration bulkheadTimeout) {
+        this.bulkheadTimeout = bulkheadTimeout;
+    }
+
+    public int getFullTextMaxIds() {
+        return fullTextMaxIds;
+    }
+
+    public void setFullTextMaxIds(int fullTextMaxIds) {
+        this.fullTextMaxIds = fullTextMaxIds;
+    }
+
+    public int getRelationParallelism() {
+        return relationParallelism;
+    }
+
+    public void setRelationParallelism(int relationParallelism) {
+        this.relationParallelism = relationParallelism;
+    }
+
+    public int getRelationThreads() {
+        return relationThreads;
+    }
+
+    public void setRelationThreads(int relationThreads) {
+        this.relationThreads = relationThreads;
+    }
+
+    public String getUsageFile() {
+        return usageFile;
+    }
+
+    public void setUsageFile(String usageFile) {
+        this.usageFile = usageFile;
+    }
+
+    public boolean isIndexAutoApply() {
+        return indexAutoApply;
+    }
+
+    public void setIndexAutoApply(boolean indexAutoApply) {
+        this.indexAutoApply = indexAutoApply;
+    }
+
+    public List<String> getSnapshotEntities() {
+        return snapshotEntities;
+    }
+
+    public void setSnapshotEntities(List<String> snapshotEntities) {
+        this.snapshotEntities = snapshotEntities;
+    }
+
+    public Duration getSnapshotLag() {
+        return snapshotLag;
+    }
+
+    public void setSnapshotLag(Duration snapshotLag) {
+        this.snapshotLag = snapshotLag;
+    }
+}
@@ -0,0 +1,20 @@
+package com.atr.crud.filterrepository;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+//
+// A keyset cursor that was not produced by searchAfter for the same sort (malformed or tampered with), or a sort column
+// the entity does not have. A client error: answered with 400 (also when wrapped by the repository exception translation).
+//
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidCursorException extends IllegalArgumentException {
+
+    public InvalidCursorException(String message) {
+        super(message);
+    }
+
+    public InvalidCursorException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
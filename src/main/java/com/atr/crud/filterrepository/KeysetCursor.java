@@ -0,0 +1,98 @@
+package com.atr.crud.filterrepository;
+
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+//
+// Position of the last row of a keyset (seek) page: its sort key and its id as tie-breaker.
+// Encoded as an opaque string, bound to the sort column and direction it was produced for.
+//
+class KeysetCursor {
+
+    private static final String NULL_VALUE = "~";
+
+    private final String sortColumn;
+
+    private final String sortDirection;
+
+    private final Object sortValue;
+
+    private final Object id;
+
+    KeysetCursor(String sortColumn, String sortDirection, Object sortValue, Object id) {
+        this.sortColumn = sortColumn;
+        this.sortDirection = sortDirection;
+        this.sortValue = sortValue;
+        this.id = id;
+    }
+
+    Object getSortValue() {
+        return sortValue;
+    }
+
+    Object getId() {
+        return id;
+    }
+
+    String encode() {
+        return String.join(".",
+                encodePart(sortColumn),
+                encodePart(sortDirection),
+                sortValue == null ? NULL_VALUE : encodePart(sortValue.toString()),
+                encodePart(id.toString()));
+    }
+
+    static KeysetCursor decode(String cursor, String sortColumn, String sortDirection, Class<?> sortType, Class<?> idType) {
+        String[] parts = cursor.split("\\.");
+        if (parts.length != 4) {
+            throw new InvalidCursorException("Invalid cursor: " + cursor);
+        }
+
+        if (!decodePart(parts[0]).equals(sortColumn) || !decodePart(parts[1]).equals(sortDirection)) {
+            throw new InvalidCursorException("Cursor was created for a different sort than " + sortColumn + " " + sortDirection);
+        }
+
+        Object sortValue;
+        Object id;
+        try {
+            sortValue = parts[2].equals(NULL_VALUE) ? null : parseValue(decodePart(parts[2]), sortType);
+            id = parseValue(decodePart(parts[3]), idType);
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new InvalidCursorException("Invalid cursor value: " + cursor, e);
+        }
+
+        return new KeysetCursor(sortColumn, sortDirection, sortValue, id);
+    }
+
+    // Sort value types a cursor can carry
+    static boolean supports(Class<?> type) {
+        return type.equals(String.class) || type.equals(Integer.class) || type.equals(Long.class) || type.equals(OffsetDateTime.class);
+    }
+
+    private static String encodePart(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodePart(String value) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException("Invalid cursor part: " + value, e);
+        }
+    }
+
+    private static Object parseValue(String value, Class<?> type) {
+        if (type.equals(String.class)) {
+            return value;
+        } else if (type.equals(Integer.class)) {
+            return Integer.parseInt(value);
+        } else if (type.equals(Long.class)) {
+            return Long.parseLong(value);
+        } else if (type.equals(OffsetDateTime.class)) {
+            return OffsetDateTime.parse(value);
+        }
+        throw new InvalidCursorException("Unsupported keyset sort type: " + type.getSimpleName());
+    }
+}
@@ -0,0 +1,146 @@
+package com.atr.crud.filterrepository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Session;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+//
+// Runs the related entity queries of a search page concurrently. Each worker fetch gets its own read-only
+// EntityManager (and connection) on a dedicated pool of crud.search.relation-threads threads, the global cap, and a
+// search has at most crud.search.relation-parallelism worker fetches in flight. Results are returned in fetch order so
+// the caller stitches them on its own thread.
+// Worker connections count against the RepositoryBulkhead: a fetch only goes to a worker with a permit free right now,
+// otherwise it runs on the caller EntityManager (the request keeps its connection, it never waits for a second one).
+// Without the bulkhead, with a single fetch or with either setting below 2 every fetch runs on the caller.
+// Worker fetches read outside the caller transaction, so they can see changes committed after the root rows were read.
+//
+@Component
+class RelationFetcher implements DisposableBean {
+
+    private final ExecutorService executor;
+
+    private final int parallelism;
+
+    private final RepositoryBulkhead repositoryBulkhead;
+
+    RelationFetcher(FilterRepositoryProperties properties, RepositoryBulkhead repositoryBulkhead) {
+        this.parallelism = properties.getRelationParallelism();
+        this.repositoryBulkhead = repositoryBulkhead;
+        if (properties.getRelationThreads() > 1 && parallelism > 1 && repositoryBulkhead.isEnabled()) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool(properties.getRelationThreads(), runnable -> {
+                Thread thread = new Thread(runnable, "relation-fetch-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.executor = null;
+        }
+    }
+
+    <R> List<R> fetchAll(EntityManager entityManager, List<Function<EntityManager, R>> fetches) {
+        List<R> results = new ArrayList<>(Collections.nCopies(fetches.size(), null));
+        if (executor == null || fetches.size() < 2) {
+            for (int index = 0; index < fetches.size(); index++) {
+                results.set(index, fetches.get(index).apply(entityManager));
+            }
+            return results;
+        }
+
+        // Slots written by the workers, each one by a single task. Future.get makes them visible here
+        List<WorkerFetch> workerFetches = new ArrayList<>();
+        CompletionService<Void> completion = new ExecutorCompletionService<>(executor);
+        EntityManagerFactory entityManagerFactory = entityManager.getEntityManagerFactory();
+        int next = 0;
+        int running = 0;
+        try {
+            while (next < fetches.size() || running > 0) {
+                if (next == fetches.size()) {
+                    completion.take().get();
+                    running--;
+                    continue;
+                }
+
+                int index = next++;
+                if (running >= parallelism || !repositoryBulkhead.tryAcquireExtra()) {
+                    // On the caller connection, while the workers run
+                    results.set(index, fetches.get(index).apply(entityManager));
+                    continue;
+                }
+
+                WorkerFetch workerFetch = new WorkerFetch();
+                workerFetch.future = completion.submit(() -> {
+                    if (!workerFetch.claimed.compareAndSet(false, true)) {
+                        // Cancelled before it started, the permit is already released
+                        return null;
+                    }
+                    EntityManager fetchEntityManager = entityManagerFactory.createEntityManager();
+                    try {
+                        fetchEntityManager.unwrap(Session.class).setDefaultReadOnly(true);
+                        results.set(index, fetches.get(index).apply(fetchEntityManager));
+                    } finally {
+                        fetchEntityManager.close();
+                        repositoryBulkhead.releaseExtra();
+                    }
+                    return null;
+                });
+                workerFetches.add(workerFetch);
+                running++;
+            }
+        } catch (InterruptedException e) {
+            cancel(workerFetches);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while fetching relations", e);
+        } catch (ExecutionException e) {
+            cancel(workerFetches);
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (RuntimeException e) {
+            cancel(workerFetches);
+            throw e;
+        }
+        return results;
+    }
+
+    // Fetches not started yet give their permit back here, the started ones when they finish
+    private void cancel(List<WorkerFetch> workerFetches) {
+        for (WorkerFetch workerFetch : workerFetches) {
+            workerFetch.future.cancel(true);
+            if (workerFetch.claimed.compareAndSet(false, true)) {
+                repositoryBulkhead.releaseExtra();
+            }
+        }
+    }
+
+    // A fetch submitted to a worker. Claimed by whoever comes first: the worker running it or a cancel
+    private static class WorkerFetch {
+
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        private Future<Void> future;
+    }
+
+    @Override
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
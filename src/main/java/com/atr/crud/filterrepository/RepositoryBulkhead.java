@@ -0,0 +1,105 @@
+package com.atr.crud.filterrepository;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+//
+// Bounds the concurrent repository calls (crud.search.bulkhead-permits, 0 disables it) so many request threads
+// (for example virtual threads) wait here for crud.search.bulkhead-timeout instead of exhausting the connection pool.
+// Added to every repository proxy by FilterRepositoryFactoryBean, outermost: a call that begins its own transaction
+// takes the permit before the connection. A caller that began a transaction earlier already holds a connection, so it
+// must take the permit first with @BulkheadPermit. Nested calls on the same thread reuse the permit.
+// A Stream or Reader returned by the call that took the permit still reads from the connection: it keeps the permit
+// until it is closed.
+// Parallel relation fetches take one extra permit per worker connection, so permits must stay below the pool size.
+//
+@Component
+class RepositoryBulkhead implements MethodInterceptor {
+
+    private final Semaphore permits;
+
+    private final Duration timeout;
+
+    private final ThreadLocal<Boolean> holdsPermit = ThreadLocal.withInitial(() -> false);
+
+    RepositoryBulkhead(FilterRepositoryProperties properties) {
+        this.permits = properties.getBulkheadPermits() > 0 ? new Semaphore(properties.getBulkheadPermits(), true) : null;
+        this.timeout = properties.getBulkheadTimeout();
+    }
+
+    boolean isEnabled() {
+        return permits != null;
+    }
+
+    // Permit for one more connection taken on behalf of a call that already holds one (a parallel relation fetch).
+    // Never waits: waiting for a second connection while holding the first is how a pool deadlocks
+    boolean tryAcquireExtra() {
+        return permits != null && permits.tryAcquire();
+    }
+
+    void releaseExtra() {
+        permits.release();
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        if (permits == null || holdsPermit.get()) {
+            return invocation.proceed();
+        }
+
+        if (!permits.tryAcquire(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+            throw new TransientDataAccessResourceException("No repository permit available after " + timeout.toMillis() + " ms");
+        }
+
+        Runnable release = releaseOnce();
+        boolean kept = false;
+        holdsPermit.set(true);
+        try {
+            Object result = invocation.proceed();
+            if (result instanceof Stream<?> stream) {
+                kept = true;
+                return stream.onClose(release);
+            }
+            if (result instanceof Reader reader) {
+                kept = true;
+                return new FilterReader(reader) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            release.run();
+                        }
+                    }
+                };
+            }
+            return result;
+        } finally {
+            holdsPermit.set(false);
+            if (!kept) {
+                release.run();
+            }
+        }
+    }
+
+    // Closing a stream or reader twice releases its permit once
+    private Runnable releaseOnce() {
+        AtomicBoolean released = new AtomicBoolean();
+        return () -> {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        };
+    }
+}
@@ -0,0 +1,27 @@
+package com.atr.crud.filterrepository;
+
+public class SearchCount {
+
+    private final long value;
+
+    // True when value is only a lower bound of the total (estimated count over the threshold)
+    private final boolean lowerBound;
+
+    public SearchCount(long value, boolean lowerBound) {
+        this.value = value;
+        this.lowerBound = lowerBound;
+    }
+
+    public long getValue() {
+        return value;
+    }
+
+    public boolean isLowerBound() {
+        return lowerBound;
+    }
+
+    @Override
+    public String toString() {
+        return lowerBound ? value + "+" : String.valueOf(value);
+    }
+}
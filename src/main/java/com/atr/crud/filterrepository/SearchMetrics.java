@@ -0,0 +1,78 @@
+package com.atr.crud.filterrepository;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+//
+// Search instrumentation:
+//   crud.search.phase    timer per entity, phase and relation (phases: plan, query, hydration, relation.query,
+//                        relation.hydration; relation is 'none' for the root entity phases)
+//   crud.search          timer of the whole search per entity
+//   crud.search.queries  queries issued per search
+//   crud.search.rows     root rows returned per search
+// All of them with percentile histograms, for p99 per phase.
+//
+@Component
+class SearchMetrics {
+
+    static final String NO_RELATION = "none";
+
+    enum Phase {
+        PLAN("plan"),
+        QUERY("query"),
+        HYDRATION("hydration"),
+        RELATION_QUERY("relation.query"),
+        RELATION_HYDRATION("relation.hydration");
+
+        private final String tag;
+
+        Phase(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private final MeterRegistry meterRegistry;
+
+    SearchMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    Timer.Sample start() {
+        return Timer.start(meterRegistry);
+    }
+
+    void record(Timer.Sample sample, Class<?> domainClass, Phase phase) {
+        record(sample, domainClass, phase, NO_RELATION);
+    }
+
+    void record(Timer.Sample sample, Class<?> domainClass, Phase phase, String relation) {
+        sample.stop(Timer.builder("crud.search.phase")
+                .tag("entity", domainClass.getSimpleName())
+                .tag("phase", phase.tag)
+                .tag("relation", relation)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
+    void recordSearch(Timer.Sample sample, Class<?> domainClass, int queries, int rows) {
+        String entity = domainClass.getSimpleName();
+
+        sample.stop(Timer.builder("crud.search")
+                .tag("entity", entity)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+
+        DistributionSummary.builder("crud.search.queries")
+                .tag("entity", entity)
+                .register(meterRegistry)
+                .record(queries);
+
+        DistributionSummary.builder("crud.search.rows")
+                .tag("entity", entity)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(rows);
+    }
+}
@@ -0,0 +1,24 @@
+package com.atr.crud.filterrepository;
+
+import java.util.List;
+
+public class SearchPage<D> {
+
+    private final List<D> content;
+
+    // Opaque keyset cursor to request the next page, null when there are no more rows
+    private final String nextCursor;
+
+    public SearchPage(List<D> content, String nextCursor) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<D> getContent() {
+        return content;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
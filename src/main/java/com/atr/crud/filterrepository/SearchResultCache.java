@@ -0,0 +1,328 @@
+package com.atr.crud.filterrepository;
+
+import com.atr.crud.filterrepository.accessor.BeanAccessor;
+import com.atr.crud.filterrepository.accessor.PropertyAccessor;
+import com.atr.crud.filterrepository.change.EntityChangeEvent;
+import com.atr.crud.filterrepository.snapshot.SnapshotRefreshEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+//
+// Opt-in (crud.search.result-cache-enabled) cache of search pages by normalized request. Entries are removed when an
+// entity they depend on changes: any change of the entity types of the page, except updates of root rows of an
+// unfiltered page sorted by id, which only remove the pages containing that id. They are removed again when a snapshot
+// of those types is refreshed: a search from the snapshot between the commit and the refresh read the old rows.
+// Hits, misses and evictions are published as the cache.* metrics with tag cache=crud.search.results, invalidations as
+// crud.search.results.invalidations.
+// Pages are copied in and out (DTOs included), callers never share instances.
+//
+@Component
+class SearchResultCache {
+
+    // Null when disabled
+    private final Cache<SearchResultKey, CachedPage> results;
+
+    private final Counter invalidations;
+
+    // Incremented when a change is flushed and again after its commit. A search running meanwhile is not cached (it
+    // could have read old rows)
+    private final AtomicLong generation = new AtomicLong();
+
+    //
+    // Cached pages by what removes them, so a change only visits the pages it affects. Filtered pages depend on every
+    // change. Pages tracked by id depend on any change of their other types, on persists and removes of their root type
+    // and on updates of their root ids. Pages leave the index when they leave the cache.
+    //
+    private final Set<CachedPage> anyChangePages = ConcurrentHashMap.newKeySet();
+
+    private final ConcurrentMap<Class<?>, Set<CachedPage>> typePages = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Class<?>, Set<CachedPage>> rowSetPages = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<RowKey, Set<CachedPage>> rowPages = new ConcurrentHashMap<>();
+
+    SearchResultCache(FilterRepositoryProperties properties, MeterRegistry meterRegistry) {
+        if (properties.isResultCacheEnabled()) {
+            this.results = Caffeine.newBuilder()
+                    .maximumSize(properties.getResultCacheSize())
+                    .expireAfterWrite(properties.getResultCacheTtl())
+                    .removalListener((SearchResultKey key, CachedPage page, RemovalCause cause) -> {
+                        if (page != null) {
+                            unindex(page);
+                        }
+                    })
+                    .recordStats()
+                    .build();
+            CaffeineCacheMetrics.monitor(meterRegistry, results, "crud.search.results");
+        }
+        else {
+            this.results = null;
+        }
+        this.invalidations = meterRegistry.counter("crud.search.results.invalidations");
+    }
+
+    //
+    // 'types' are the entity types the page is read from, null for all of them (the filter can cross any association).
+    // 'search' receives the set to collect the root ids into, null when the page is not tracked by id.
+    //
+    @SuppressWarnings("unchecked")
+    <D> SearchPage<D> get(SearchResultKey key, Set<Class<?>> types, boolean idTracked, Function<Set<Object>, SearchPage<D>> search) {
+        if (results == null) {
+            return search.apply(null);
+        }
+
+        CachedPage cached = results.getIfPresent(key);
+        if (cached != null) {
+            return (SearchPage<D>) copy(cached.page());
+        }
+
+        long searchGeneration = generation.get();
+        Set<Object> rootIds = idTracked ? new HashSet<>() : null;
+        SearchPage<D> page = search.apply(rootIds);
+        if (generation.get() != searchGeneration) {
+            return page;
+        }
+
+        // Indexed before it is visible. A change between the check above and the put is caught by the check below
+        CachedPage fresh = new CachedPage(key, copy(page), key.domainClass(), types, rootIds);
+        index(fresh);
+        if (results.asMap().putIfAbsent(key, fresh) != null) {
+            unindex(fresh);
+        } else if (generation.get() != searchGeneration) {
+            invalidate(fresh);
+        }
+        return page;
+    }
+
+    // During the flush, before the commit: searches from now on may read rows about to change
+    @EventListener
+    public void onEntityFlush(EntityChangeEvent event) {
+        generation.incrementAndGet();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEntityChange(EntityChangeEvent event) {
+        if (results == null) {
+            return;
+        }
+
+        generation.incrementAndGet();
+        invalidateAll(anyChangePages);
+        invalidateAll(typePages.get(event.getEntityClass()));
+        if (event.getChangeType() == EntityChangeEvent.ChangeType.UPDATE) {
+            invalidateAll(rowPages.get(new RowKey(event.getEntityClass(), event.getId())));
+        } else {
+            invalidateAll(rowSetPages.get(event.getEntityClass()));
+        }
+    }
+
+    // Rows applied to a snapshot after their commit: pages searched meanwhile may hold the old rows. As if every row of
+    // the entity classes changed
+    @EventListener
+    public void onSnapshotRefresh(SnapshotRefreshEvent event) {
+        if (results == null) {
+            return;
+        }
+
+        generation.incrementAndGet();
+        invalidateAll(anyChangePages);
+        for (Class<?> entityClass : event.getEntityClasses()) {
+            invalidateAll(typePages.get(entityClass));
+            invalidateAll(rowSetPages.get(entityClass));
+        }
+    }
+
+    private void invalidateAll(Set<CachedPage> pages) {
+        if (pages == null) {
+            return;
+        }
+        for (CachedPage page : pages) {
+            invalidate(page);
+        }
+    }
+
+    private void invalidate(CachedPage page) {
+        // Only this page, not a newer one cached with the same key
+        if (results.asMap().remove(page.key(), page)) {
+            invalidations.increment();
+        }
+        unindex(page);
+    }
+
+    private void index(CachedPage page) {
+        if (page.types() == null) {
+            anyChangePages.add(page);
+            return;
+        }
+
+        for (Class<?> type : page.types()) {
+            if (page.rootIds() != null && type.equals(page.domainClass())) {
+                add(rowSetPages, type, page);
+                for (Object rootId : page.rootIds()) {
+                    add(rowPages, new RowKey(type, rootId), page);
+                }
+            } else {
+                add(typePages, type, page);
+            }
+        }
+    }
+
+    private void unindex(CachedPage page) {
+        if (page.types() == null) {
+            anyChangePages.remove(page);
+            return;
+        }
+
+        for (Class<?> type : page.types()) {
+            if (page.rootIds() != null && type.equals(page.domainClass())) {
+                remove(rowSetPages, type, page);
+                for (Object rootId : page.rootIds()) {
+                    remove(rowPages, new RowKey(type, rootId), page);
+                }
+            } else {
+                remove(typePages, type, page);
+            }
+        }
+    }
+
+    private static <K> void add(ConcurrentMap<K, Set<CachedPage>> index, K key, CachedPage page) {
+        index.compute(key, (indexKey, pages) -> {
+            Set<CachedPage> updated = pages == null ? ConcurrentHashMap.newKeySet() : pages;
+            updated.add(page);
+            return updated;
+        });
+    }
+
+    private static <K> void remove(ConcurrentMap<K, Set<CachedPage>> index, K key, CachedPage page) {
+        index.computeIfPresent(key, (indexKey, pages) -> {
+            pages.remove(page);
+            return pages.isEmpty() ? null : pages;
+        });
+    }
+
+    //
+    // Deep copy of a page: collections, maps and beans copied, java.* values (strings, numbers, dates) shared
+    //
+    private static <D> SearchPage<D> copy(SearchPage<D> page) {
+        Map<Object, Object> copies = new IdentityHashMap<>();
+        List<D> content = new ArrayList<>(page.getContent().size());
+        for (D item : page.getContent()) {
+            @SuppressWarnings("unchecked")
+            D itemCopy = (D) copyValue(item, copies);
+            content.add(itemCopy);
+        }
+        return new SearchPage<>(content, page.getNextCursor());
+    }
+
+    private static Object copyValue(Object value, Map<Object, Object> copies) {
+        if (value == null || value.getClass().isEnum() || (value.getClass().getName().startsWith("java.")
+                && !(value instanceof Collection) && !(value instanceof Map))) {
+            return value;
+        }
+
+        Object copy = copies.get(value);
+        if (copy != null) {
+            return copy;
+        }
+
+        if (value instanceof Collection<?> collection) {
+            Collection<Object> collectionCopy = collection instanceof Set ? new LinkedHashSet<>() : new ArrayList<>(collection.size());
+            copies.put(value, collectionCopy);
+            for (Object element : collection) {
+                collectionCopy.add(copyValue(element, copies));
+            }
+            return collectionCopy;
+        }
+
+        if (value instanceof Map<?, ?> map) {
+            Map<Object, Object> mapCopy = new LinkedHashMap<>();
+            copies.put(value, mapCopy);
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                mapCopy.put(entry.getKey(), copyValue(entry.getValue(), copies));
+            }
+            return mapCopy;
+        }
+
+        BeanAccessor<?> accessor = BeanAccessor.of(value.getClass());
+        Object beanCopy = accessor.newInstance();
+        copies.put(value, beanCopy);
+        for (PropertyAccessor property : accessor.getProperties().values()) {
+            if (property.isWritable()) {
+                property.set(beanCopy, copyValue(property.get(value), copies));
+            }
+        }
+        return beanCopy;
+    }
+
+    record SearchResultKey(Class<?> domainClass, Class<?> resultType, List<String> columns, String restSql, String cursor,
+                           int firstResult, int pageSize, String sortColumn, String sortDirection) {
+    }
+
+    private record RowKey(Class<?> entityClass, Object id) {
+    }
+
+    //
+    // Not a record: pages are told apart by identity, two searches can cache equal pages under the same key
+    //
+    private static final class CachedPage {
+
+        private final SearchResultKey key;
+
+        private final SearchPage<?> page;
+
+        private final Class<?> domainClass;
+
+        private final Set<Class<?>> types;
+
+        private final Set<Object> rootIds;
+
+        CachedPage(SearchResultKey key, SearchPage<?> page, Class<?> domainClass, Set<Class<?>> types, Set<Object> rootIds) {
+            this.key = key;
+            this.page = page;
+            this.domainClass = domainClass;
+            this.types = types;
+            this.rootIds = rootIds;
+        }
+
+        SearchResultKey key() {
+            return key;
+        }
+
+        SearchPage<?> page() {
+            return page;
+        }
+
+        Class<?> domainClass() {
+            return domainClass;
+        }
+
+        Set<Class<?>> types() {
+            return types;
+        }
+
+        Set<Object> rootIds() {
+            return rootIds;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.atr.crud.filterrepository.accessor;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+//
+// Instantiates a class and accesses its fields without reflection on the hot path.
+// Method handles (and a LambdaMetafactory generated constructor) are created once per class.
+//
+public class BeanAccessor<T> {
+
+    private static final ClassValue<BeanAccessor<?>> ACCESSORS = new ClassValue<>() {
+        @Override
+        protected BeanAccessor<?> computeValue(Class<?> type) {
+            return new BeanAccessor<>(type);
+        }
+    };
+
+    private final Class<T> type;
+
+    private final Supplier<T> constructor;
+
+    private final Map<String, PropertyAccessor> properties;
+
+    @SuppressWarnings("unchecked")
+    public static <T> BeanAccessor<T> of(Class<T> type) {
+        return (BeanAccessor<T>) ACCESSORS.get(type);
+    }
+
+    private BeanAccessor(Class<T> type) {
+        this.type = type;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+            this.constructor = createConstructor(lookup, type);
+            this.properties = createProperties(lookup, type);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Can not create accessors for " + type.getName(), e);
+        }
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    public T newInstance() {
+        return constructor.get();
+    }
+
+    // Field declared in the class or one of its superclasses, null if there is no such field
+    public PropertyAccessor getProperty(String name) {
+        return properties.get(name);
+    }
+
+    public PropertyAccessor getRequiredProperty(String name) {
+        PropertyAccessor property = properties.get(name);
+        if (property == null) {
+            throw new IllegalArgumentException("Unknown property '" + name + "' in " + type.getSimpleName());
+        }
+        return property;
+    }
+
+    public Map<String, PropertyAccessor> getProperties() {
+        return properties;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Supplier<T> createConstructor(MethodHandles.Lookup lookup, Class<T> type) throws ReflectiveOperationException {
+        MethodHandle constructor = lookup.findConstructor(type, MethodType.methodType(void.class));
+        try {
+            CallSite callSite = LambdaMetafactory.metafactory(
+                    lookup,
+                    "get",
+                    MethodType.methodType(Supplier.class),
+                    MethodType.methodType(Object.class),
+                    constructor,
+                    MethodType.methodType(type));
+            return (Supplier<T>) callSite.getTarget().invokeExact();
+        } catch (Throwable e) {
+            // Lookup without enough access to spin a lambda class, invoke the constructor handle instead
+            MethodHandle genericConstructor = constructor.asType(MethodType.methodType(Object.class));
+            return () -> {
+                try {
+                    return (T) genericConstructor.invokeExact();
+                } catch (Throwable t) {
+                    throw new IllegalStateException("Can not instantiate " + type.getName(), t);
+                }
+            };
+        }
+    }
+
+    private static Map<String, PropertyAccessor> createProperties(MethodHandles.Lookup lookup, Class<?> type) throws IllegalAccessException {
+        Map<String, PropertyAccessor> properties = new LinkedHashMap<>();
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            MethodHandles.Lookup currentLookup = current == type ? lookup : MethodHandles.privateLookupIn(current, MethodHandles.lookup());
+            for (Field field : current.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic() || properties.containsKey(field.getName())) {
+                    continue;
+                }
+                MethodHandle getter = currentLookup.unreflectGetter(field)
+                        .asType(MethodType.methodType(Object.class, Object.class));
+                MethodHandle setter = Modifier.isFinal(field.getModifiers()) ? null : currentLookup.unreflectSetter(field)
+                        .asType(MethodType.methodType(void.class, Object.class, Object.class));
+                properties.put(field.getName(), new PropertyAccessor(field, getter, setter));
+            }
+        }
+        return Collections.unmodifiableMap(properties);
+    }
+}
@@ -0,0 +1,64 @@
+package com.atr.crud.filterrepository.accessor;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Field;
+import java.lang.reflect.Type;
+
+//
+// Reads and writes one field of a class through method handles resolved once.
+//
+public class PropertyAccessor {
+
+    private final String name;
+
+    private final Class<?> type;
+
+    private final Type genericType;
+
+    // (Object)Object
+    private final MethodHandle getter;
+
+    // (Object,Object)void
+    private final MethodHandle setter;
+
+    PropertyAccessor(Field field, MethodHandle getter, MethodHandle setter) {
+        this.name = field.getName();
+        this.type = field.getType();
+        this.genericType = field.getGenericType();
+        this.getter = getter;
+        this.setter = setter;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    public Type getGenericType() {
+        return genericType;
+    }
+
+    // False for final fields
+    public boolean isWritable() {
+        return setter != null;
+    }
+
+    public Object get(Object bean) {
+        try {
+            return (Object) getter.invokeExact(bean);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Can not read '" + name + "' of " + bean.getClass().getSimpleName(), e);
+        }
+    }
+
+    public void set(Object bean, Object value) {
+        try {
+            setter.invokeExact(bean, value);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Can not write '" + name + "' of " + bean.getClass().getSimpleName(), e);
+        }
+    }
+}
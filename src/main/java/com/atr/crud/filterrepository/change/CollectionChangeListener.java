@@ -0,0 +1,71 @@
+package com.atr.crud.filterrepository.change;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.Status;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.AbstractCollectionEvent;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostCollectionRemoveEvent;
+import org.hibernate.event.spi.PostCollectionRemoveEventListener;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.event.spi.PostCollectionUpdateEventListener;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+//
+// Hibernate listener publishing an EntityChangeEvent (UPDATE of the owner) when only a collection of an entity changes,
+// for example the roles of a user: JPA @PostUpdate is not called for those. Registered in the session factory of the
+// application on creation.
+//
+@Component
+public class CollectionChangeListener implements PostCollectionRecreateEventListener, PostCollectionUpdateEventListener,
+        PostCollectionRemoveEventListener {
+
+    private final ApplicationEventPublisher publisher;
+
+    public CollectionChangeListener(EntityManagerFactory entityManagerFactory, ApplicationEventPublisher publisher) {
+        this.publisher = publisher;
+
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COLLECTION_RECREATE, this);
+        registry.appendListeners(EventType.POST_COLLECTION_UPDATE, this);
+        registry.appendListeners(EventType.POST_COLLECTION_REMOVE, this);
+    }
+
+    @Override
+    public void onPostRecreateCollection(PostCollectionRecreateEvent event) {
+        publish(event);
+    }
+
+    @Override
+    public void onPostUpdateCollection(PostCollectionUpdateEvent event) {
+        publish(event);
+    }
+
+    @Override
+    public void onPostRemoveCollection(PostCollectionRemoveEvent event) {
+        publish(event);
+    }
+
+    private void publish(AbstractCollectionEvent event) {
+        Object owner = event.getAffectedOwnerOrNull();
+        if (owner == null) {
+            return;
+        }
+
+        // Collections of a removed owner go with it, its own REMOVE event follows
+        EntityEntry entry = event.getSession().getPersistenceContextInternal().getEntry(owner);
+        if (entry != null && (entry.getStatus() == Status.DELETED || entry.getStatus() == Status.GONE)) {
+            return;
+        }
+
+        Class<?> ownerClass = event.getSession().getFactory().getMappingMetamodel()
+                .getEntityDescriptor(event.getAffectedOwnerEntityName()).getMappedClass();
+        publisher.publishEvent(new EntityChangeEvent(EntityChangeEvent.ChangeType.UPDATE, ownerClass, event.getAffectedOwnerIdOrNull(), owner));
+    }
+}
@@ -0,0 +1,46 @@
+package com.atr.crud.filterrepository.change;
+
+//
+// An entity row persisted, updated or removed. Published by EntityChangeListener during the flush and usually
+// consumed after commit (@TransactionalEventListener) by the in-memory structures derived from the database.
+//
+public class EntityChangeEvent {
+
+    public enum ChangeType {
+        PERSIST,
+        UPDATE,
+        REMOVE
+    }
+
+    private final ChangeType changeType;
+
+    private final Class<?> entityClass;
+
+    private final Object id;
+
+    // Entity instance as flushed, for consumers indexing its state
+    private final Object entity;
+
+    public EntityChangeEvent(ChangeType changeType, Class<?> entityClass, Object id, Object entity) {
+        this.changeType = changeType;
+        this.entityClass = entityClass;
+        this.id = id;
+        this.entity = entity;
+    }
+
+    public ChangeType getChangeType() {
+        return changeType;
+    }
+
+    public Class<?> getEntityClass() {
+        return entityClass;
+    }
+
+    public Object getId() {
+        return id;
+    }
+
+    public Object getEntity() {
+        return entity;
+    }
+}
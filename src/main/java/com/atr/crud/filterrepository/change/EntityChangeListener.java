@@ -0,0 +1,42 @@
+package com.atr.crud.filterrepository.change;
+
+import com.atr.crud.filterrepository.accessor.BeanAccessor;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+//
+// JPA entity listener (@EntityListeners) publishing an EntityChangeEvent per changed row. Hibernate gets it from the
+// Spring context, so it can be injected.
+//
+@Component
+public class EntityChangeListener {
+
+    private final ApplicationEventPublisher publisher;
+
+    public EntityChangeListener(ApplicationEventPublisher publisher) {
+        this.publisher = publisher;
+    }
+
+    @PostPersist
+    public void postPersist(Object entity) {
+        publish(EntityChangeEvent.ChangeType.PERSIST, entity);
+    }
+
+    @PostUpdate
+    public void postUpdate(Object entity) {
+        publish(EntityChangeEvent.ChangeType.UPDATE, entity);
+    }
+
+    @PostRemove
+    public void postRemove(Object entity) {
+        publish(EntityChangeEvent.ChangeType.REMOVE, entity);
+    }
+
+    private void publish(EntityChangeEvent.ChangeType changeType, Object entity) {
+        Object id = BeanAccessor.of(entity.getClass()).getRequiredProperty("id").get(entity);
+        publisher.publishEvent(new EntityChangeEvent(changeType, entity.getClass(), id, entity));
+    }
+}
@@ -0,0 +1,130 @@
+package com.atr.crud.filterrepository.fulltext;
+
+import com.atr.crud.filterrepository.FilterRepositoryProperties;
+import com.atr.crud.filterrepository.accessor.BeanAccessor;
+import com.atr.crud.filterrepository.change.EntityChangeEvent;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.EntityType;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+//
+// In-process inverted index of the entity properties annotated with @FullTextIndexed, for the =fts= RSQL operator.
+// Built from the database before the application serves requests, then kept up to date after every commit with the
+// flushed state of the changed entities.
+//
+@Component
+public class FullTextIndex implements SmartInitializingSingleton {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    // Index by entity and property name
+    private final Map<Class<?>, Map<String, InvertedIndex>> indexes;
+
+    private final int maxIds;
+
+    public FullTextIndex(EntityManagerFactory entityManagerFactory, FilterRepositoryProperties properties) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.maxIds = properties.getFullTextMaxIds();
+
+        Map<Class<?>, Map<String, InvertedIndex>> indexes = new HashMap<>();
+        for (EntityType<?> entityType : entityManagerFactory.getMetamodel().getEntities()) {
+            Map<String, InvertedIndex> entityIndexes = new HashMap<>();
+            for (Attribute<?, ?> attribute : entityType.getAttributes()) {
+                if (attribute.getJavaMember() instanceof Field field && field.isAnnotationPresent(FullTextIndexed.class)) {
+                    entityIndexes.put(attribute.getName(), new InvertedIndex());
+                }
+            }
+            if (!entityIndexes.isEmpty()) {
+                indexes.put(entityType.getJavaType(), Map.copyOf(entityIndexes));
+            }
+        }
+        this.indexes = Map.copyOf(indexes);
+    }
+
+    public boolean isIndexed(Class<?> entityClass, String property) {
+        return indexes.getOrDefault(entityClass, Map.of()).containsKey(property);
+    }
+
+    //
+    // Ids of the rows matching any of the queries, each one a list of terms all of them required. For example
+    // description=fts=('quick fox',lazy*).
+    //
+    public Set<Object> search(Class<?> entityClass, String property, List<?> queries) {
+        InvertedIndex index = indexes.getOrDefault(entityClass, Map.of()).get(property);
+        if (index == null) {
+            throw new IllegalArgumentException("Property is not full-text indexed: " + entityClass.getSimpleName() + "." + property);
+        }
+
+        Set<Object> ids = new HashSet<>();
+        for (Object query : queries) {
+            ids.addAll(index.search(String.valueOf(query)));
+        }
+        return ids;
+    }
+
+    // Most ids bound in one IN list
+    public int getMaxIds() {
+        return maxIds;
+    }
+
+    // True if the text matches any of the queries, the in-memory equivalent of search
+    public static boolean matches(String text, List<?> queries) {
+        for (Object query : queries) {
+            if (InvertedIndex.matches(text, String.valueOf(query))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            for (Map.Entry<Class<?>, Map<String, InvertedIndex>> entityIndexes : indexes.entrySet()) {
+                String entityName = entityManager.getMetamodel().entity(entityIndexes.getKey()).getName();
+                for (Map.Entry<String, InvertedIndex> index : entityIndexes.getValue().entrySet()) {
+                    String jpql = "select e.id, e." + index.getKey() + " from " + entityName + " e";
+                    try (Stream<Object[]> rows = entityManager.createQuery(jpql, Object[].class).getResultStream()) {
+                        rows.forEach(row -> index.getValue().put(row[0], (String) row[1]));
+                    }
+                }
+            }
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    // Before the other listeners (search result cache) so they never see the index behind the database
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onEntityChange(EntityChangeEvent event) {
+        Map<String, InvertedIndex> entityIndexes = indexes.get(event.getEntityClass());
+        if (entityIndexes == null) {
+            return;
+        }
+
+        for (Map.Entry<String, InvertedIndex> index : entityIndexes.entrySet()) {
+            if (event.getChangeType() == EntityChangeEvent.ChangeType.REMOVE) {
+                index.getValue().remove(event.getId());
+            } else {
+                Object text = BeanAccessor.of(event.getEntityClass()).getRequiredProperty(index.getKey()).get(event.getEntity());
+                index.getValue().put(event.getId(), (String) text);
+            }
+        }
+    }
+}
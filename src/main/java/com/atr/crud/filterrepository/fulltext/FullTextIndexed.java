@@ -0,0 +1,14 @@
+package com.atr.crud.filterrepository.fulltext;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+//
+// Entity text property kept in the in-process FullTextIndex, searchable with the =fts= RSQL operator.
+//
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface FullTextIndexed {
+}
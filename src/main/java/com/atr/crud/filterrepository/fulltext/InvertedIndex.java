@@ -0,0 +1,149 @@
+package com.atr.crud.filterrepository.fulltext;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+//
+// Posting list (ids of the rows containing it) per term of one entity text property. Terms are the lower case
+// letter and digit sequences of the text. Sorted, so a query term ending with '*' reads a range of terms.
+//
+class InvertedIndex {
+
+    private final NavigableMap<String, Set<Object>> postings = new TreeMap<>();
+
+    // Terms of every indexed row, to remove its postings when it changes
+    private final Map<Object, Set<String>> rowTerms = new HashMap<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    void put(Object id, String text) {
+        Set<String> terms = new HashSet<>(tokenize(text, false));
+
+        lock.writeLock().lock();
+        try {
+            removeRow(id);
+            if (!terms.isEmpty()) {
+                rowTerms.put(id, terms);
+                for (String term : terms) {
+                    postings.computeIfAbsent(term, key -> new HashSet<>()).add(id);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(Object id) {
+        lock.writeLock().lock();
+        try {
+            removeRow(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //
+    // Ids of the rows containing every term of the query. For example 'quick fox' or 'qui*'.
+    //
+    Set<Object> search(String query) {
+        List<String> terms = tokenize(query, true);
+        if (terms.isEmpty()) {
+            return Set.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            Set<Object> ids = null;
+            for (String term : terms) {
+                Set<Object> termIds = term.endsWith("*") ? prefixIds(term.substring(0, term.length() - 1)) : postings.getOrDefault(term, Set.of());
+                if (ids == null) {
+                    ids = new HashSet<>(termIds);
+                } else {
+                    ids.retainAll(termIds);
+                }
+                if (ids.isEmpty()) {
+                    break;
+                }
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // True if a row with the text would be found by the query, without indexing it
+    static boolean matches(String text, String query) {
+        List<String> terms = tokenize(query, true);
+        if (terms.isEmpty()) {
+            return false;
+        }
+
+        Set<String> textTerms = new HashSet<>(tokenize(text, false));
+        for (String term : terms) {
+            boolean found;
+            if (term.endsWith("*")) {
+                String prefix = term.substring(0, term.length() - 1);
+                found = textTerms.stream().anyMatch(textTerm -> textTerm.startsWith(prefix));
+            } else {
+                found = textTerms.contains(term);
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Set<Object> prefixIds(String prefix) {
+        Set<Object> ids = new HashSet<>();
+        for (Set<Object> termIds : postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+            ids.addAll(termIds);
+        }
+        return ids;
+    }
+
+    private void removeRow(Object id) {
+        Set<String> terms = rowTerms.remove(id);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            Set<Object> termIds = postings.get(term);
+            termIds.remove(id);
+            if (termIds.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    // Query terms keep a trailing '*' (prefix), anything after a '*' is ignored
+    private static List<String> tokenize(String text, boolean query) {
+        if (text == null) {
+            return List.of();
+        }
+
+        List<String> terms = new ArrayList<>();
+        for (String token : text.toLowerCase(Locale.ROOT).split(query ? "[^\\p{L}\\p{N}*]+" : "[^\\p{L}\\p{N}]+")) {
+            int wildcard = token.indexOf('*');
+            if (wildcard == 0) {
+                continue;
+            }
+            if (wildcard > 0) {
+                token = token.substring(0, wildcard + 1);
+            }
+            if (!token.isEmpty()) {
+                terms.add(token);
+            }
+        }
+        return terms;
+    }
+}
@@ -0,0 +1,156 @@
+package com.atr.crud.filterrepository.index;
+
+import com.atr.crud.filterrepository.FilterRepositoryProperties;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.Metamodel;
+import jakarta.persistence.metamodel.PluralAttribute;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.metamodel.MappingMetamodel;
+import org.hibernate.persister.collection.AbstractCollectionPersister;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+//
+// CREATE INDEX recommendations from SearchUsageStatistics, most beneficial first. A usage of a property path needs an
+// index on the column it compares or sorts by and, for each plural association it crosses, on the collection key
+// columns the EXISTS subquery is correlated on (to-one associations are joined on primary keys). Columns already
+// leading an index are skipped.
+// With crud.search.index-auto-apply the recommendations are created at startup on an H2 database.
+//
+@Component
+public class IndexAdvisor {
+
+    private final SearchUsageStatistics statistics;
+
+    private final Metamodel metamodel;
+
+    private final MappingMetamodel mappingMetamodel;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final boolean autoApply;
+
+    public IndexAdvisor(SearchUsageStatistics statistics, EntityManagerFactory entityManagerFactory, JdbcTemplate jdbcTemplate,
+                        FilterRepositoryProperties properties) {
+        this.statistics = statistics;
+        this.metamodel = entityManagerFactory.getMetamodel();
+        this.mappingMetamodel = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getMappingMetamodel();
+        this.jdbcTemplate = jdbcTemplate;
+        this.autoApply = properties.isIndexAutoApply();
+    }
+
+    public List<IndexRecommendation> recommend() {
+        Map<String, Set<String>> indexedColumns = new HashMap<>();
+        Map<String, IndexRecommendation> recommendations = new LinkedHashMap<>();
+
+        for (PropertyUsage usage : statistics.getUsages()) {
+            if (usage.getKind().getWeight() == 0) {
+                continue;
+            }
+
+            List<IndexRecommendation> targets;
+            try {
+                targets = targetsOf(usage.getEntityClass(), usage.getProperty());
+            } catch (IllegalArgumentException e) {
+                // Property removed since the usage was recorded
+                continue;
+            }
+
+            for (IndexRecommendation target : targets) {
+                Set<String> tableIndexedColumns = indexedColumns.computeIfAbsent(target.getTable(), this::indexedColumns);
+                if (tableIndexedColumns.contains(target.getColumns().get(0).toUpperCase())) {
+                    continue;
+                }
+                recommendations.computeIfAbsent(target.getStatement(), statement -> target).add(usage);
+            }
+        }
+
+        List<IndexRecommendation> ranked = new ArrayList<>(recommendations.values());
+        ranked.sort(Comparator.comparingDouble(IndexRecommendation::getScore).reversed());
+        return ranked;
+    }
+
+    // Statements executed
+    public List<String> apply() {
+        List<String> statements = new ArrayList<>();
+        for (IndexRecommendation recommendation : recommend()) {
+            jdbcTemplate.execute(recommendation.getStatement());
+            statements.add(recommendation.getStatement());
+        }
+        return statements;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void applyAtStartup() {
+        if (autoApply && "H2".equals(jdbcTemplate.execute((ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName()))) {
+            apply();
+        }
+    }
+
+    //
+    // Tables and columns a search on the property path reads. For example roles.code in User: the us_user_role key
+    // column and us_role.code.
+    //
+    private List<IndexRecommendation> targetsOf(Class<?> entityClass, String property) {
+        List<IndexRecommendation> targets = new ArrayList<>();
+        String[] path = property.split("\\.");
+
+        Class<?> currentClass = entityClass;
+        for (int index = 0; index < path.length - 1; index++) {
+            Attribute<?, ?> attribute = metamodel.entity(currentClass).getAttribute(path[index]);
+            if (attribute instanceof PluralAttribute<?, ?, ?> pluralAttribute) {
+                String role = entityPersister(currentClass).getEntityName() + "." + path[index];
+                AbstractCollectionPersister collectionPersister = (AbstractCollectionPersister) mappingMetamodel.getCollectionDescriptor(role);
+                targets.add(new IndexRecommendation(collectionPersister.getTableName(), Arrays.asList(collectionPersister.getKeyColumnNames())));
+                currentClass = pluralAttribute.getElementType().getJavaType();
+            } else {
+                currentClass = attribute.getJavaType();
+            }
+        }
+
+        // Validates the property
+        metamodel.entity(currentClass).getAttribute(path[path.length - 1]);
+        AbstractEntityPersister entityPersister = entityPersister(currentClass);
+        targets.add(new IndexRecommendation(entityPersister.getTableName(), Arrays.asList(entityPersister.getPropertyColumnNames(path[path.length - 1]))));
+        return targets;
+    }
+
+    private AbstractEntityPersister entityPersister(Class<?> entityClass) {
+        return (AbstractEntityPersister) mappingMetamodel.getEntityDescriptor(entityClass);
+    }
+
+    // Upper case columns leading an index of the table
+    private Set<String> indexedColumns(String table) {
+        return jdbcTemplate.execute((ConnectionCallback<Set<String>>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            String tableName = metaData.storesUpperCaseIdentifiers() ? table.toUpperCase() : table;
+
+            Set<String> columns = new HashSet<>();
+            try (ResultSet indexes = metaData.getIndexInfo(null, null, tableName, false, true)) {
+                while (indexes.next()) {
+                    if (indexes.getShort("ORDINAL_POSITION") == 1 && indexes.getString("COLUMN_NAME") != null) {
+                        columns.add(indexes.getString("COLUMN_NAME").toUpperCase());
+                    }
+                }
+            }
+            return columns;
+        });
+    }
+}
@@ -0,0 +1,58 @@
+package com.atr.crud.filterrepository.index;
+
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+//
+// Missing index on a table column, with its estimated benefit: the search latency (ms) of the usages it serves, each
+// weighted by its UsageKind.
+//
+public class IndexRecommendation {
+
+    private final String table;
+
+    private final List<String> columns;
+
+    // Entity properties served, for example User.roles.code
+    private final Set<String> properties = new TreeSet<>();
+
+    private double score;
+
+    private long searches;
+
+    IndexRecommendation(String table, List<String> columns) {
+        this.table = table;
+        this.columns = List.copyOf(columns);
+    }
+
+    void add(PropertyUsage usage) {
+        properties.add(usage.getEntity() + "." + usage.getProperty());
+        score += usage.getTotalMillis() * usage.getKind().getWeight();
+        searches += usage.getSearches();
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    public Set<String> getProperties() {
+        return properties;
+    }
+
+    public double getScore() {
+        return Math.round(score * 100) / 100.0;
+    }
+
+    public long getSearches() {
+        return searches;
+    }
+
+    public String getStatement() {
+        return "CREATE INDEX idx_" + table + "_" + String.join("_", columns) + " ON " + table + " (" + String.join(", ", columns) + ")";
+    }
+}
@@ -0,0 +1,57 @@
+package com.atr.crud.filterrepository.index;
+
+//
+// Searches of an entity using a property path in a given way (filter operation or sort), and their total latency.
+//
+public class PropertyUsage {
+
+    private final Class<?> entityClass;
+
+    private final String property;
+
+    private final UsageKind kind;
+
+    private final long searches;
+
+    private final long totalNanos;
+
+    PropertyUsage(Class<?> entityClass, String property, UsageKind kind, long searches, long totalNanos) {
+        this.entityClass = entityClass;
+        this.property = property;
+        this.kind = kind;
+        this.searches = searches;
+        this.totalNanos = totalNanos;
+    }
+
+    Class<?> getEntityClass() {
+        return entityClass;
+    }
+
+    public String getEntity() {
+        return entityClass.getSimpleName();
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    public UsageKind getKind() {
+        return kind;
+    }
+
+    public long getSearches() {
+        return searches;
+    }
+
+    public double getTotalMillis() {
+        return totalNanos / 1_000_000.0;
+    }
+
+    public double getMeanMillis() {
+        return searches == 0 ? 0 : getTotalMillis() / searches;
+    }
+
+    long getTotalNanos() {
+        return totalNanos;
+    }
+}
@@ -0,0 +1,35 @@
+package com.atr.crud.filterrepository.index;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//
+// Actuator endpoint /actuator/searchindexes: property usage statistics of the searches and the CREATE INDEX
+// recommendations ranked by estimated benefit. Read only, as it is exposed over the web without security: the
+// statistics are reset through JMX (SearchIndexesResetEndpoint).
+//
+@Component
+@Endpoint(id = "searchindexes")
+public class SearchIndexesEndpoint {
+
+    private final SearchUsageStatistics statistics;
+
+    private final IndexAdvisor indexAdvisor;
+
+    public SearchIndexesEndpoint(SearchUsageStatistics statistics, IndexAdvisor indexAdvisor) {
+        this.statistics = statistics;
+        this.indexAdvisor = indexAdvisor;
+    }
+
+    @ReadOperation
+    public Map<String, Object> searchIndexes() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("recommendations", indexAdvisor.recommend());
+        report.put("usages", statistics.getUsages());
+        return report;
+    }
+}
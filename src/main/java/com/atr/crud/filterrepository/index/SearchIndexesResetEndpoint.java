@@ -0,0 +1,25 @@
+package com.atr.crud.filterrepository.index;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.jmx.annotation.JmxEndpoint;
+import org.springframework.stereotype.Component;
+
+//
+// JMX only endpoint searchindexesreset: clears the property usage statistics of SearchIndexesEndpoint. Reachable once
+// JMX is enabled (spring.jmx.enabled) and the endpoint exposed (management.endpoints.jmx.exposure.include).
+//
+@Component
+@JmxEndpoint(id = "searchindexesreset")
+public class SearchIndexesResetEndpoint {
+
+    private final SearchUsageStatistics statistics;
+
+    public SearchIndexesResetEndpoint(SearchUsageStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    @DeleteOperation
+    public void reset() {
+        statistics.clear();
+    }
+}
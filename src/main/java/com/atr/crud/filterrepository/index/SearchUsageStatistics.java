@@ -0,0 +1,136 @@
+package com.atr.crud.filterrepository.index;
+
+import com.atr.crud.filterrepository.FilterRepositoryProperties;
+import com.atr.crud.filterrepository.rsql.GenericRsqlSpecification;
+import com.atr.crud.filterrepository.rsql.RsqlFilterCache;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+//
+// Properties used by the searches run against the database (result cache misses), by filter operation and sort, with
+// the search latency. Kept across restarts in crud.search.usage-file when set, one tab separated usage per line.
+//
+@Component
+public class SearchUsageStatistics implements DisposableBean {
+
+    private final RsqlFilterCache rsqlFilterCache;
+
+    // Null when not persisted
+    private final Path usageFile;
+
+    private final Map<UsageKey, Usage> usages = new ConcurrentHashMap<>();
+
+    public SearchUsageStatistics(RsqlFilterCache rsqlFilterCache, FilterRepositoryProperties properties) {
+        this.rsqlFilterCache = rsqlFilterCache;
+        this.usageFile = properties.getUsageFile().isEmpty() ? null : Path.of(properties.getUsageFile());
+        if (usageFile != null && Files.exists(usageFile)) {
+            load();
+        }
+    }
+
+    public void record(Class<?> domainClass, String restSql, String sortColumn, long nanos) {
+        // Once per search, even if the filter compares the same property twice
+        Set<UsageKey> keys = new HashSet<>();
+        if (restSql != null && !restSql.isBlank()) {
+            for (GenericRsqlSpecification<?> comparison : rsqlFilterCache.compile(domainClass, restSql).getComparisons()) {
+                UsageKind kind = UsageKind.of(comparison);
+                if (kind != null) {
+                    keys.add(new UsageKey(domainClass, comparison.getProperty(), kind));
+                }
+            }
+        }
+        if (sortColumn != null && !sortColumn.isEmpty()) {
+            keys.add(new UsageKey(domainClass, sortColumn, UsageKind.SORT));
+        }
+
+        for (UsageKey key : keys) {
+            Usage usage = usages.computeIfAbsent(key, usageKey -> new Usage());
+            usage.searches.increment();
+            usage.nanos.add(nanos);
+        }
+    }
+
+    // Most expensive first
+    public List<PropertyUsage> getUsages() {
+        List<PropertyUsage> propertyUsages = new ArrayList<>();
+        usages.forEach((key, usage) -> propertyUsages.add(
+                new PropertyUsage(key.domainClass(), key.property(), key.kind(), usage.searches.sum(), usage.nanos.sum())));
+        propertyUsages.sort(Comparator.comparingLong(PropertyUsage::getTotalNanos).reversed());
+        return propertyUsages;
+    }
+
+    public void clear() {
+        usages.clear();
+    }
+
+    @Override
+    public void destroy() {
+        if (usageFile == null) {
+            return;
+        }
+
+        List<String> lines = new ArrayList<>();
+        for (PropertyUsage usage : getUsages()) {
+            lines.add(String.join("\t", usage.getEntityClass().getName(), usage.getProperty(), usage.getKind().name(),
+                    Long.toString(usage.getSearches()), Long.toString(usage.getTotalNanos())));
+        }
+        try {
+            Files.write(usageFile, lines, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can not write search usage file " + usageFile, e);
+        }
+    }
+
+    private void load() {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(usageFile, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can not read search usage file " + usageFile, e);
+        }
+
+        for (String line : lines) {
+            String[] fields = line.split("\t");
+            if (fields.length != 5) {
+                throw new IllegalStateException("Invalid search usage line: " + line);
+            }
+
+            Class<?> domainClass;
+            try {
+                domainClass = ClassUtils.forName(fields[0], getClass().getClassLoader());
+            } catch (ClassNotFoundException e) {
+                // Entity removed since the file was written
+                continue;
+            }
+
+            Usage usage = usages.computeIfAbsent(new UsageKey(domainClass, fields[1], UsageKind.valueOf(fields[2])), usageKey -> new Usage());
+            usage.searches.add(Long.parseLong(fields[3]));
+            usage.nanos.add(Long.parseLong(fields[4]));
+        }
+    }
+
+    private record UsageKey(Class<?> domainClass, String property, UsageKind kind) {
+    }
+
+    private static class Usage {
+
+        private final LongAdder searches = new LongAdder();
+
+        private final LongAdder nanos = new LongAdder();
+    }
+}
@@ -0,0 +1,58 @@
+package com.atr.crud.filterrepository.index;
+
+import com.atr.crud.filterrepository.rsql.GenericRsqlSpecification;
+import com.atr.crud.filterrepository.rsql.RsqlSearchOperation;
+
+//
+// How a search uses a property, with the share of its latency an index on the property column could save.
+// Negations and patterns with a leading wildcard can not use an index.
+//
+public enum UsageKind {
+    EQUAL(1.0),
+    IN(1.0),
+    PREFIX(0.8),
+    RANGE(0.6),
+    SORT(0.4),
+    CONTAINS(0),
+    NEGATION(0);
+
+    private final double weight;
+
+    UsageKind(double weight) {
+        this.weight = weight;
+    }
+
+    public double getWeight() {
+        return weight;
+    }
+
+    // Null for operators without a simple operation and =fts= (served by the FullTextIndex, not by a column index)
+    static UsageKind of(GenericRsqlSpecification<?> comparison) {
+        RsqlSearchOperation operation = RsqlSearchOperation.getSimpleOperator(comparison.getOperator());
+        if (operation == null || operation == RsqlSearchOperation.FULL_TEXT) {
+            return null;
+        }
+
+        switch (operation) {
+            case EQUAL:
+            case IS_NULL: {
+                Object argument = comparison.getArguments().isEmpty() ? null : comparison.getArguments().get(0);
+                if (argument instanceof String pattern && pattern.startsWith("*")) {
+                    return CONTAINS;
+                } else if (argument instanceof String pattern && pattern.contains("*")) {
+                    return PREFIX;
+                }
+                return EQUAL;
+            }
+            case IN:
+                return IN;
+            case GREATER_THAN:
+            case GREATER_THAN_OR_EQUAL:
+            case LESS_THAN:
+            case LESS_THAN_OR_EQUAL:
+                return RANGE;
+            default:
+                return NEGATION;
+        }
+    }
+}
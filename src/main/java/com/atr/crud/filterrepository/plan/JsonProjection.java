@@ -0,0 +1,185 @@
+package com.atr.crud.filterrepository.plan;
+
+import com.atr.crud.filterrepository.accessor.BeanAccessor;
+import com.atr.crud.filterrepository.accessor.PropertyAccessor;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+//
+// Rows of a SearchPlan written as JSON objects shaped like a view type (for example UserDTO): its property names, order
+// and null inclusion as the ObjectMapper resolves them, without instances of the entity or the view type.
+// Properties missing in the view type are skipped, like in SearchProjection. Properties of the view type that are not
+// selected are written as null (so omitted with NON_NULL), a requested plural relation without rows as an empty array
+// when the view type initializes its collection.
+//
+public class JsonProjection {
+
+    private final int idIndex;
+
+    // Written properties of the view type, in its serialization order
+    private final List<JsonField> fields;
+
+    // Plan relations the view type has a property for, the only ones to load
+    private final boolean[] mappedRelations;
+
+    JsonProjection(SearchPlan plan, Class<?> viewType, ObjectMapper objectMapper) {
+        this(plan.getRootColumns(), plan.getIdIndex(), plan.getRelations(), viewType, objectMapper);
+    }
+
+    private JsonProjection(List<String> columns, int idIndex, List<RelationPlan> relations, Class<?> viewType, ObjectMapper objectMapper) {
+        this.idIndex = idIndex;
+        this.mappedRelations = new boolean[relations.size()];
+
+        SerializationConfig config = objectMapper.getSerializationConfig();
+        BeanDescription description = config.introspect(config.constructType(viewType));
+        JsonInclude.Value viewInclusion = description.findPropertyInclusion(config.getDefaultPropertyInclusion(viewType));
+
+        // Initial values, to know which collections are never null
+        BeanAccessor<?> accessor = BeanAccessor.of(viewType);
+        Object initial = accessor.newInstance();
+
+        List<JsonField> fields = new ArrayList<>();
+        for (BeanPropertyDefinition property : description.findProperties()) {
+            if (!property.couldSerialize()) {
+                continue;
+            }
+
+            JsonInclude.Include inclusion = viewInclusion.withOverrides(property.findInclusion()).getValueInclusion();
+            JsonField field = new JsonField(property.getName(), inclusion == JsonInclude.Include.ALWAYS || inclusion == JsonInclude.Include.USE_DEFAULTS);
+            fields.add(field);
+
+            String name = property.getInternalName();
+            field.columnIndex = columns.indexOf(name);
+            if (field.columnIndex >= 0) {
+                continue;
+            }
+
+            PropertyAccessor relationProperty = accessor.getProperty(name);
+            for (int relationIndex = 0; relationIndex < relations.size(); relationIndex++) {
+                RelationPlan relation = relations.get(relationIndex);
+                if (!relation.getName().equals(name) || relationProperty == null) {
+                    continue;
+                }
+
+                mappedRelations[relationIndex] = true;
+                field.relationIndex = relationIndex;
+                field.plural = relation.isPlural();
+                field.emptyArray = relation.isPlural() && relationProperty.get(initial) != null;
+                field.related = new JsonProjection(relation.getColumns(), relation.getIdIndex(), List.of(), getRelatedType(relationProperty), objectMapper);
+            }
+        }
+        this.fields = List.copyOf(fields);
+    }
+
+    // False when the view type has no property for the relation, so there is nothing to load
+    public boolean isMapped(int relationIndex) {
+        return mappedRelations[relationIndex];
+    }
+
+    //
+    // Writes one row as a JSON object. 'relatedRows' are the related rows by root id, in the same order as the plan
+    // relations (null for relations not loaded); their elements are the related columns.
+    //
+    public void write(JsonGenerator generator, SerializerProvider provider, Object[] row, List<Map<Object, List<Object[]>>> relatedRows) throws IOException {
+        generator.writeStartObject();
+        for (JsonField field : fields) {
+            if (field.columnIndex >= 0) {
+                Object value = row[field.columnIndex];
+                if (value != null || field.includeNull) {
+                    generator.writeFieldName(field.name);
+                    writeValue(generator, provider, value);
+                }
+                continue;
+            }
+
+            Map<Object, List<Object[]>> rowsById = field.relationIndex >= 0 ? relatedRows.get(field.relationIndex) : null;
+            List<Object[]> rows = rowsById == null ? null : rowsById.get(row[idIndex]);
+            if (rowsById == null || ((rows == null || rows.isEmpty()) && !field.emptyArray)) {
+                // Not selected, or no related rows
+                if (field.includeNull) {
+                    generator.writeFieldName(field.name);
+                    generator.writeNull();
+                }
+                continue;
+            }
+
+            generator.writeFieldName(field.name);
+            if (!field.plural) {
+                field.related.write(generator, provider, rows.get(0), List.of());
+                continue;
+            }
+
+            generator.writeStartArray();
+            if (rows != null) {
+                for (Object[] relatedRow : rows) {
+                    field.related.write(generator, provider, relatedRow, List.of());
+                }
+            }
+            generator.writeEndArray();
+        }
+        generator.writeEndObject();
+    }
+
+    private static void writeValue(JsonGenerator generator, SerializerProvider provider, Object value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else if (value instanceof String string) {
+            generator.writeString(string);
+        } else if (value instanceof Long number) {
+            generator.writeNumber(number);
+        } else if (value instanceof Integer number) {
+            generator.writeNumber(number);
+        } else if (value instanceof Boolean bool) {
+            generator.writeBoolean(bool);
+        } else {
+            // Dates and anything else with the ObjectMapper serializers and settings
+            provider.findValueSerializer(value.getClass()).serialize(value, generator, provider);
+        }
+    }
+
+    private static Class<?> getRelatedType(PropertyAccessor property) {
+        if (Collection.class.isAssignableFrom(property.getType())) {
+            ParameterizedType parameterizedType = (ParameterizedType) property.getGenericType();
+            return (Class<?>) parameterizedType.getActualTypeArguments()[0];
+        }
+        return property.getType();
+    }
+
+    //
+    // One property of the view type: a plan column (columnIndex), a plan relation (relationIndex) or neither
+    //
+    private static class JsonField {
+
+        private final SerializedString name;
+
+        private final boolean includeNull;
+
+        private int columnIndex = -1;
+
+        private int relationIndex = -1;
+
+        private boolean plural;
+
+        private boolean emptyArray;
+
+        private JsonProjection related;
+
+        JsonField(String name, boolean includeNull) {
+            this.name = new SerializedString(name);
+            this.includeNull = includeNull;
+        }
+    }
+}
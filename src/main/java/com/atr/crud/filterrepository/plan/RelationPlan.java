@@ -0,0 +1,64 @@
+package com.atr.crud.filterrepository.plan;
+
+import java.util.List;
+
+//
+// Related entity requested in a search. For example in User: roles (plural) or in Ticket: user (singular).
+//
+public class RelationPlan {
+
+    private final String name;
+
+    private final Class<?> type;
+
+    private final boolean plural;
+
+    // Attribute of the related entity pointing back to the root entity. For example in Role: users
+    private final String backReference;
+
+    // Selected columns of the related entity, also used as selection aliases. 'id' always included
+    private final List<String> columns;
+
+    private final int idIndex;
+
+    // Related entities of the related entity, always set to null for singular relations. For example in Ticket: user.tickets
+    private final List<String> relationsToNull;
+
+    RelationPlan(String name, Class<?> type, boolean plural, String backReference, List<String> columns, List<String> relationsToNull) {
+        this.name = name;
+        this.type = type;
+        this.plural = plural;
+        this.backReference = backReference;
+        this.columns = List.copyOf(columns);
+        this.idIndex = columns.indexOf("id");
+        this.relationsToNull = List.copyOf(relationsToNull);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    public boolean isPlural() {
+        return plural;
+    }
+
+    public String getBackReference() {
+        return backReference;
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    public int getIdIndex() {
+        return idIndex;
+    }
+
+    public List<String> getRelationsToNull() {
+        return relationsToNull;
+    }
+}
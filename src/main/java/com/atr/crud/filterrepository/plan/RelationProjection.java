@@ -0,0 +1,106 @@
+package com.atr.crud.filterrepository.plan;
+
+import com.atr.crud.filterrepository.accessor.BeanAccessor;
+import com.atr.crud.filterrepository.accessor.PropertyAccessor;
+
+import java.lang.reflect.ParameterizedType;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+//
+// Hydration of the rows of a RelationPlan into the related type of a result type. For example RoleDTO in UserDTO.roles
+//
+public class RelationProjection {
+
+    private final boolean plural;
+
+    // Property of the parent result type holding the related object(s), null if the result type does not have it
+    private final PropertyAccessor property;
+
+    private final BeanAccessor<?> accessor;
+
+    // Accessors of the plan related columns, in the same order as the columns (and the tuple elements). Null if missing
+    private final List<PropertyAccessor> columnProperties;
+
+    private final List<PropertyAccessor> propertiesToNull;
+
+    RelationProjection(RelationPlan relation, PropertyAccessor property) {
+        this.plural = relation.isPlural();
+        this.property = property;
+
+        if (property == null) {
+            this.accessor = null;
+            this.columnProperties = List.of();
+            this.propertiesToNull = List.of();
+            return;
+        }
+
+        this.accessor = BeanAccessor.of(getRelatedType(property));
+
+        List<PropertyAccessor> columnProperties = new ArrayList<>();
+        for (String column : relation.getColumns()) {
+            columnProperties.add(accessor.getProperty(column));
+        }
+        this.columnProperties = columnProperties;
+
+        List<PropertyAccessor> propertiesToNull = new ArrayList<>();
+        for (String relationToNull : relation.getRelationsToNull()) {
+            PropertyAccessor propertyToNull = accessor.getProperty(relationToNull);
+            if (propertyToNull != null) {
+                propertiesToNull.add(propertyToNull);
+            }
+        }
+        this.propertiesToNull = List.copyOf(propertiesToNull);
+    }
+
+    // False when the result type has no property for this relation, so there is nothing to load
+    public boolean isMapped() {
+        return property != null;
+    }
+
+    public Object newInstance(Object[] row) {
+        Object related = accessor.newInstance();
+
+        // Only the related columns, the row can have more elements (for example the root entity id)
+        for (int index = 0; index < columnProperties.size(); index++) {
+            PropertyAccessor columnProperty = columnProperties.get(index);
+            if (columnProperty != null) {
+                columnProperty.set(related, row[index]);
+            }
+        }
+
+        for (PropertyAccessor propertyToNull : propertiesToNull) {
+            propertyToNull.set(related, null);
+        }
+
+        return related;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void attach(Object parent, Object related) {
+        if (plural) {
+            // OneToMany or ManyToMany (Collection / Plural attribute)
+            Collection<Object> collection = (Collection<Object>) property.get(parent);
+            if (collection == null) {
+                collection = Set.class.isAssignableFrom(property.getType()) ? new LinkedHashSet<>() : new ArrayList<>();
+                property.set(parent, collection);
+            }
+            collection.add(related);
+        }
+        else {
+            // ManyToOne or OneToOne (Singular attribute)
+            property.set(parent, related);
+        }
+    }
+
+    private Class<?> getRelatedType(PropertyAccessor property) {
+        if (Collection.class.isAssignableFrom(property.getType())) {
+            ParameterizedType parameterizedType = (ParameterizedType) property.getGenericType();
+            return (Class<?>) parameterizedType.getActualTypeArguments()[0];
+        }
+        return property.getType();
+    }
+}
@@ -0,0 +1,72 @@
+package com.atr.crud.filterrepository.plan;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+//
+// Immutable result of analyzing the 'columns' parameter of a search for one entity.
+// Built once per entity and normalized column list by SearchPlanner and shared between requests.
+//
+public class SearchPlan {
+
+    private final Class<?> domainClass;
+
+    // Selected root columns, also used as selection aliases. 'id' always included
+    private final List<String> rootColumns;
+
+    private final int idIndex;
+
+    private final List<RelationPlan> relations;
+
+    // Related entities not requested in columns, always set to null
+    private final List<String> relationsToNull;
+
+    // Hydration accessors per result type (the entity itself or a DTO)
+    private final Map<Class<?>, SearchProjection<?>> projections = new ConcurrentHashMap<>();
+
+    // JSON writers per view type and ObjectMapper (its settings decide names and inclusion)
+    private final Map<JsonViewKey, JsonProjection> jsonProjections = new ConcurrentHashMap<>();
+
+    SearchPlan(Class<?> domainClass, List<String> rootColumns, List<RelationPlan> relations, List<String> relationsToNull) {
+        this.domainClass = domainClass;
+        this.rootColumns = List.copyOf(rootColumns);
+        this.idIndex = rootColumns.indexOf("id");
+        this.relations = List.copyOf(relations);
+        this.relationsToNull = List.copyOf(relationsToNull);
+    }
+
+    public Class<?> getDomainClass() {
+        return domainClass;
+    }
+
+    public List<String> getRootColumns() {
+        return rootColumns;
+    }
+
+    public int getIdIndex() {
+        return idIndex;
+    }
+
+    public List<RelationPlan> getRelations() {
+        return relations;
+    }
+
+    public List<String> getRelationsToNull() {
+        return relationsToNull;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <D> SearchProjection<D> getProjection(Class<D> resultType) {
+        return (SearchProjection<D>) projections.computeIfAbsent(resultType, type -> new SearchProjection<>(this, type));
+    }
+
+    public JsonProjection getJsonProjection(Class<?> viewType, ObjectMapper objectMapper) {
+        return jsonProjections.computeIfAbsent(new JsonViewKey(viewType, objectMapper), key -> new JsonProjection(this, viewType, objectMapper));
+    }
+
+    private record JsonViewKey(Class<?> viewType, ObjectMapper objectMapper) {
+    }
+}
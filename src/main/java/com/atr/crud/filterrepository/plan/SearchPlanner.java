@@ -0,0 +1,191 @@
+package com.atr.crud.filterrepository.plan;
+
+import com.atr.crud.filterrepository.FilterRepositoryProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Lob;
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.EntityType;
+import jakarta.persistence.metamodel.Metamodel;
+import jakarta.persistence.metamodel.PluralAttribute;
+import jakarta.persistence.metamodel.SingularAttribute;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+@Component
+public class SearchPlanner {
+
+    private final Metamodel metamodel;
+
+    private final Cache<SearchPlanKey, SearchPlan> plans;
+
+    public SearchPlanner(EntityManagerFactory entityManagerFactory, FilterRepositoryProperties properties) {
+        this.metamodel = entityManagerFactory.getMetamodel();
+        this.plans = Caffeine.newBuilder()
+                .maximumSize(properties.getPlanCacheSize())
+                .build();
+    }
+
+    public SearchPlan plan(Class<?> domainClass, List<String> columns) {
+        return plans.get(new SearchPlanKey(domainClass, normalize(columns)), key -> build(key.domainClass(), key.columns()));
+    }
+
+    //
+    // Same columns in a different order or repeated produce the same plan. Empty means all columns.
+    //
+    public List<String> normalize(List<String> columns) {
+        if (columns == null) {
+            return List.of();
+        }
+        return columns.stream()
+                .filter(Objects::nonNull)
+                .map(String::trim)
+                .filter(column -> !column.isEmpty())
+                .distinct()
+                .sorted()
+                .toList();
+    }
+
+    private SearchPlan build(Class<?> domainClass, List<String> columns) {
+        EntityType<?> entityType = metamodel.entity(domainClass);
+
+        //
+        // If no columns are specified, search for all columns. LOBs only when requested by name, their size is unbounded
+        //
+        if (columns.isEmpty()) {
+            List<String> cols = new ArrayList<>();
+            entityType.getSingularAttributes().stream()
+                    .filter(attribute -> !isLob(attribute))
+                    .forEach(attribute -> cols.add(attribute.getName()));
+            entityType.getPluralAttributes().forEach(attribute -> cols.add(attribute.getName()));
+            columns = cols;
+        }
+
+        //
+        // Analyze columns to get columns to be selected (root columns and related entity columns).
+        //
+        List<String> rootColumns = new ArrayList<>();
+        Map<String, List<String>> relatedEntityColumns = new LinkedHashMap<>();
+
+        for (String column:columns) {
+            String[] path = column.split("\\.");
+            Attribute<?, ?> attribute = entityType.getAttribute(path[0]);
+
+            if (path.length > 1) {
+                // Related entity with specified column. For example: roles.code
+                relatedEntityColumns.computeIfAbsent(path[0], name -> new ArrayList<>()).add(path[1]);
+            }
+            else if (attribute.isAssociation()) {
+                // Full related entity. For example in User entity: roles
+                List<String> entityColumns = relatedEntityColumns.computeIfAbsent(path[0], name -> new ArrayList<>());
+                for (SingularAttribute<?, ?> relatedAttribute : metamodel.entity(getBindableJavaType(attribute)).getSingularAttributes()) {
+                    if (!relatedAttribute.isAssociation() && !isLob(relatedAttribute) && !entityColumns.contains(relatedAttribute.getName())) {
+                        entityColumns.add(relatedAttribute.getName());
+                    }
+                }
+            }
+            else {
+                rootColumns.add(column);
+            }
+        }
+
+        //
+        // Add 'id' column if not present
+        //
+        if (!rootColumns.contains("id")) {
+            rootColumns.add("id");
+        }
+
+        for (List<String> entityColumns : relatedEntityColumns.values()) {
+            if (!entityColumns.contains("id")) {
+                entityColumns.add("id");
+            }
+        }
+
+        //
+        // Related entities
+        //
+        List<RelationPlan> relations = new ArrayList<>();
+        for (Map.Entry<String, List<String>> relatedEntity : relatedEntityColumns.entrySet()) {
+            Attribute<?, ?> attribute = entityType.getAttribute(relatedEntity.getKey());
+            Class<?> relatedType = getBindableJavaType(attribute);
+
+            EntityType<?> relatedEntityType = metamodel.entity(relatedType);
+
+            // Fail on unknown related columns. For example: roles.unknown
+            relatedEntity.getValue().forEach(relatedEntityType::getAttribute);
+
+            List<String> relationsToNull = new ArrayList<>();
+            if (!attribute.isCollection()) {
+                for (Attribute<?, ?> relatedAttribute : relatedEntityType.getAttributes()) {
+                    if (relatedAttribute.isAssociation()) {
+                        relationsToNull.add(relatedAttribute.getName());
+                    }
+                }
+            }
+
+            relations.add(new RelationPlan(
+                    relatedEntity.getKey(),
+                    relatedType,
+                    attribute.isCollection(),
+                    findBackReference(relatedType, domainClass),
+                    relatedEntity.getValue(),
+                    relationsToNull));
+        }
+
+        //
+        // Related entities not requested in columns
+        //
+        List<String> relationsToNull = new ArrayList<>();
+        for (Attribute<?, ?> attribute : entityType.getAttributes()) {
+            if (attribute.isAssociation() && !relatedEntityColumns.containsKey(attribute.getName())) {
+                relationsToNull.add(attribute.getName());
+            }
+        }
+
+        return new SearchPlan(domainClass, rootColumns, relations, relationsToNull);
+    }
+
+    private String findBackReference(Class<?> relatedType, Class<?> domainClass) {
+        String backReference = null;
+        for (SingularAttribute<?, ?> singularAttribute : metamodel.entity(relatedType).getSingularAttributes()) {
+            if (domainClass.equals(singularAttribute.getBindableJavaType())) {
+                backReference = singularAttribute.getName();
+            }
+        }
+
+        if (backReference == null) {
+            for (PluralAttribute<?, ?, ?> pluralAttribute : metamodel.entity(relatedType).getPluralAttributes()) {
+                if (domainClass.equals(pluralAttribute.getBindableJavaType())) {
+                    backReference = pluralAttribute.getName();
+                }
+            }
+        }
+
+        if (backReference == null) {
+            throw new IllegalStateException(relatedType.getSimpleName() + " has no attribute referencing " + domainClass.getSimpleName());
+        }
+        return backReference;
+    }
+
+    private boolean isLob(Attribute<?, ?> attribute) {
+        return attribute.getJavaMember() instanceof Field field && field.isAnnotationPresent(Lob.class);
+    }
+
+    private Class<?> getBindableJavaType(Attribute<?, ?> attribute) {
+        if (attribute instanceof PluralAttribute<?, ?, ?> pluralAttribute) {
+            return pluralAttribute.getBindableJavaType();
+        }
+        return ((SingularAttribute<?, ?>) attribute).getBindableJavaType();
+    }
+
+    private record SearchPlanKey(Class<?> domainClass, List<String> columns) {
+    }
+}
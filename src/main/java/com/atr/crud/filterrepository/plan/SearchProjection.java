@@ -0,0 +1,76 @@
+package com.atr.crud.filterrepository.plan;
+
+import com.atr.crud.filterrepository.accessor.BeanAccessor;
+import com.atr.crud.filterrepository.accessor.PropertyAccessor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//
+// Hydration of the rows of a SearchPlan into a result type: the entity itself or a DTO with the same property names
+// (for example User or UserDTO). Properties missing in the result type are skipped.
+//
+public class SearchProjection<D> {
+
+    private final BeanAccessor<D> accessor;
+
+    // Accessors of the plan root columns, in the same order as the columns (and the tuple elements). Null if missing
+    private final List<PropertyAccessor> rootProperties;
+
+    private final List<PropertyAccessor> propertiesToNull;
+
+    // In the same order as the plan relations
+    private final List<RelationProjection> relations;
+
+    SearchProjection(SearchPlan plan, Class<D> resultType) {
+        this.accessor = BeanAccessor.of(resultType);
+
+        List<PropertyAccessor> rootProperties = new ArrayList<>();
+        for (String rootColumn : plan.getRootColumns()) {
+            rootProperties.add(accessor.getProperty(rootColumn));
+        }
+        this.rootProperties = rootProperties;
+
+        List<PropertyAccessor> propertiesToNull = new ArrayList<>();
+        for (String relationToNull : plan.getRelationsToNull()) {
+            PropertyAccessor property = accessor.getProperty(relationToNull);
+            if (property != null) {
+                propertiesToNull.add(property);
+            }
+        }
+        this.propertiesToNull = List.copyOf(propertiesToNull);
+
+        List<RelationProjection> relations = new ArrayList<>();
+        for (RelationPlan relation : plan.getRelations()) {
+            relations.add(new RelationProjection(relation, accessor.getProperty(relation.getName())));
+        }
+        this.relations = List.copyOf(relations);
+    }
+
+    public Class<D> getResultType() {
+        return accessor.getType();
+    }
+
+    public D newInstance(Object[] row) {
+        D result = accessor.newInstance();
+
+        // Only the root columns, the row can have more elements (for example the sort column)
+        for (int index = 0; index < rootProperties.size(); index++) {
+            PropertyAccessor property = rootProperties.get(index);
+            if (property != null) {
+                property.set(result, row[index]);
+            }
+        }
+
+        // Set to null related entities not requested in columns
+        for (PropertyAccessor propertyToNull : propertiesToNull) {
+            propertyToNull.set(result, null);
+        }
+
+        return result;
+    }
+
+    public List<RelationProjection> getRelations() {
+        return relations;
+    }
+}
@@ -1,33 +1,33 @@
 package com.atr.crud.filterrepository.rsql;
 
+import com.atr.crud.filterrepository.fulltext.FullTextIndex;
 import cz.jirutka.rsql.parser.ast.AndNode;
 import cz.jirutka.rsql.parser.ast.ComparisonNode;
 import cz.jirutka.rsql.parser.ast.OrNode;
 import cz.jirutka.rsql.parser.ast.RSQLVisitor;
-import org.springframework.data.jpa.domain.Specification;
 
 import java.util.Map;
 
-public class CustomRsqlVisitor<T> implements RSQLVisitor<Specification<T>, Void> {
+public class CustomRsqlVisitor<T> implements RSQLVisitor<RsqlSpecification<T>, Void> {
 
     private GenericRsqlSpecBuilder<T> builder;
 
-    public CustomRsqlVisitor(Map<String, Class<?>> types) {
-        builder = new GenericRsqlSpecBuilder<>(types);
+    public CustomRsqlVisitor(Map<String, PropertyType> types, FullTextIndex fullTextIndex) {
+        builder = new GenericRsqlSpecBuilder<>(types, fullTextIndex);
     }
 
     @Override
-    public Specification<T> visit(final AndNode node, final Void param) {
+    public RsqlSpecification<T> visit(final AndNode node, final Void param) {
         return builder.createSpecification(node);
     }
 
     @Override
-    public Specification<T> visit(final OrNode node, final Void param) {
+    public RsqlSpecification<T> visit(final OrNode node, final Void param) {
         return builder.createSpecification(node);
     }
 
     @Override
-    public Specification<T> visit(final ComparisonNode node, final Void params) {
+    public RsqlSpecification<T> visit(final ComparisonNode node, final Void params) {
         return builder.createSpecification(node);
     }
 
@@ -0,0 +1,92 @@
+package com.atr.crud.filterrepository.rsql;
+
+import jakarta.persistence.criteria.CommonAbstractCriteria;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.From;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+//
+// Joins of a compiled filter applied to one query. Every comparison of the filter shares one join per association
+// path, and plural associations of the query root are read by correlated EXISTS subqueries (a scope of their own)
+// so the query rows are never multiplied and need no DISTINCT.
+//
+class FilterScope {
+
+    private final From<?, ?> from;
+
+    // Path of 'from' in the filter properties, empty for the query root. For example 'user.roles.'
+    private final String prefix;
+
+    private final CommonAbstractCriteria query;
+
+    private final CriteriaBuilder builder;
+
+    // Inner joins by path relative to 'from'
+    private final Map<String, From<?, ?>> joins = new HashMap<>();
+
+    FilterScope(Root<?> root, CommonAbstractCriteria query, CriteriaBuilder builder) {
+        this(root, "", query, builder);
+    }
+
+    private FilterScope(From<?, ?> from, String prefix, CommonAbstractCriteria query, CriteriaBuilder builder) {
+        this.from = from;
+        this.prefix = prefix;
+        this.query = query;
+        this.builder = builder;
+    }
+
+    CriteriaBuilder getBuilder() {
+        return builder;
+    }
+
+    // True for the query root, where plural association paths need an EXISTS subquery
+    boolean isRoot() {
+        return prefix.isEmpty();
+    }
+
+    <Y> Path<Y> getPath(String property) {
+        String relative = property.substring(prefix.length());
+        int lastDot = relative.lastIndexOf('.');
+        From<?, ?> parent = lastDot < 0 ? from : join(relative.substring(0, lastDot));
+        return parent.get(relative.substring(lastDot + 1));
+    }
+
+    //
+    // EXISTS a row of the plural association at pluralPath (for example roles or user.roles) matching the predicate,
+    // built on the scope of the association join.
+    //
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    Predicate exists(String pluralPath, Function<FilterScope, Predicate> predicate) {
+        String relative = pluralPath.substring(prefix.length());
+        int lastDot = relative.lastIndexOf('.');
+        From<?, ?> parent = lastDot < 0 ? from : join(relative.substring(0, lastDot));
+
+        Subquery<Integer> subquery = query.subquery(Integer.class);
+        From<?, ?> correlated = parent instanceof Root<?> root ? subquery.correlate((Root) root) : subquery.correlate((Join) parent);
+        Join<?, ?> pluralJoin = correlated.join(relative.substring(lastDot + 1), JoinType.INNER);
+
+        FilterScope scope = new FilterScope(pluralJoin, pluralPath + ".", subquery, builder);
+        subquery.select(builder.literal(1)).where(predicate.apply(scope));
+        return builder.exists(subquery);
+    }
+
+    private From<?, ?> join(String path) {
+        From<?, ?> join = joins.get(path);
+        if (join == null) {
+            int lastDot = path.lastIndexOf('.');
+            From<?, ?> parent = lastDot < 0 ? from : join(path.substring(0, lastDot));
+            join = parent.join(path.substring(lastDot + 1), JoinType.INNER);
+            joins.put(path, join);
+        }
+        return join;
+    }
+}
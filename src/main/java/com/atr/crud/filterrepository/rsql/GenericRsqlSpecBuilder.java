@@ -1,10 +1,9 @@
 package com.atr.crud.filterrepository.rsql;
 
+import com.atr.crud.filterrepository.fulltext.FullTextIndex;
 import cz.jirutka.rsql.parser.ast.ComparisonNode;
 import cz.jirutka.rsql.parser.ast.LogicalNode;
-import cz.jirutka.rsql.parser.ast.LogicalOperator;
 import cz.jirutka.rsql.parser.ast.Node;
-import org.springframework.data.jpa.domain.Specification;
 
 import java.util.List;
 import java.util.Map;
@@ -13,13 +12,16 @@ import java.util.stream.Collectors;
 
 public class GenericRsqlSpecBuilder<T> {
 
-    private Map<String, Class<?>> types;
+    private Map<String, PropertyType> types;
 
-    public GenericRsqlSpecBuilder(Map<String, Class<?>> types) {
+    private FullTextIndex fullTextIndex;
+
+    public GenericRsqlSpecBuilder(Map<String, PropertyType> types, FullTextIndex fullTextIndex) {
         this.types = types;
+        this.fullTextIndex = fullTextIndex;
     }
 
-    public Specification<T> createSpecification(final Node node) {
+    public RsqlSpecification<T> createSpecification(final Node node) {
         if (node instanceof LogicalNode) {
             return createSpecification((LogicalNode) node);
         }
@@ -29,36 +31,33 @@ public class GenericRsqlSpecBuilder<T> {
         return null;
     }
 
-    public Specification<T> createSpecification(final LogicalNode logicalNode) {
+    public RsqlSpecification<T> createSpecification(final LogicalNode logicalNode) {
         
-        List<Specification<T>> specs = logicalNode.getChildren()
+        List<RsqlSpecification<T>> specs = logicalNode.getChildren()
                 .stream()
                 .map(node -> createSpecification(node))
                 .filter(Objects::nonNull)
                 .collect(Collectors.toList());
         
-        Specification<T> result = specs.get(0);
-        if (logicalNode.getOperator() == LogicalOperator.AND) {
-           for (int i = 1; i < specs.size(); i++) {
-               result = Specification.where(result).and(specs.get(i));
-           }
+        return new LogicalRsqlSpecification<>(logicalNode.getOperator(), specs);
+    }
+
+    public RsqlSpecification<T> createSpecification(final ComparisonNode comparisonNode) {
+        PropertyType type = types.get(comparisonNode.getSelector());
+        if (type == null) {
+            throw new IllegalArgumentException("Unknown filter property: " + comparisonNode.getSelector());
         }
-        else if (logicalNode.getOperator() == LogicalOperator.OR) {
-           for (int i = 1; i < specs.size(); i++) {
-               result = Specification.where(result).or(specs.get(i));
-           }
+        if (RsqlSearchOperation.getSimpleOperator(comparisonNode.getOperator()) == RsqlSearchOperation.FULL_TEXT
+                && !fullTextIndex.isIndexed(type.getEntityType(), type.getName())) {
+            throw new IllegalArgumentException("Filter property is not full-text indexed: " + comparisonNode.getSelector());
         }
-        return result;
-    }
 
-    public Specification<T> createSpecification(final ComparisonNode comparisonNode) {
-        return Specification.where(
-            new GenericRsqlSpecification<>(
-                comparisonNode.getSelector(),
-                comparisonNode.getOperator(),
-                comparisonNode.getArguments(),
-                types
-            )
+        return new GenericRsqlSpecification<>(
+            comparisonNode.getSelector(),
+            comparisonNode.getOperator(),
+            comparisonNode.getArguments(),
+            type,
+            fullTextIndex
         );
     }
 }
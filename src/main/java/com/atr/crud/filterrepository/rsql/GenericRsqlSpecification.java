@@ -1,150 +1,169 @@
 package com.atr.crud.filterrepository.rsql;
 
+import com.atr.crud.filterrepository.fulltext.FullTextIndex;
 import cz.jirutka.rsql.parser.ast.ComparisonOperator;
 import jakarta.persistence.criteria.*;
-import org.springframework.data.jpa.domain.Specification;
 
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
-public class GenericRsqlSpecification<T> implements Specification<T> {
+public class GenericRsqlSpecification<T> extends RsqlSpecification<T> {
 
     private String property;
     private ComparisonOperator operator;
-    private List<String> arguments;
 
-    private Map<String, Class<?>> types;
+    // First plural association of the property path, compared inside an EXISTS subquery. Null if none
+    private String pluralPath;
 
-    public GenericRsqlSpecification(final String property, final ComparisonOperator operator, final List<String> arguments, final Map<String, Class<?>> types) {
+    // =fts= resolves the ids of the matching rows of the entity declaring the property
+    private Class<?> entityType;
+    private FullTextIndex fullTextIndex;
+
+    // Arguments cast once to the property type (a boolean for =isnull= and =isnotnull=), the specification is reused by
+    // every query of a cached filter
+    private List<Object> args;
+
+    // Same comparison on a value in memory
+    private RsqlComparison comparison;
+
+    public GenericRsqlSpecification(final String property, final ComparisonOperator operator, final List<String> arguments, final PropertyType type,
+                                    final FullTextIndex fullTextIndex) {
         super();
         this.property = property;
         this.operator = operator;
-        this.arguments = arguments;
-        this.types = types;
+        this.pluralPath = type.getPluralPath();
+        this.entityType = type.getEntityType();
+        this.fullTextIndex = fullTextIndex;
+        RsqlSearchOperation operation = RsqlSearchOperation.getSimpleOperator(operator);
+        if (operation == RsqlSearchOperation.IS_NULL || operation == RsqlSearchOperation.IS_NOT_NULL) {
+            this.args = arguments.stream().map(Boolean::parseBoolean).collect(Collectors.toList());
+        } else {
+            this.args = arguments.stream().map(type::parse).collect(Collectors.toList());
+        }
+        this.comparison = new RsqlComparison(operation, args);
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    public ComparisonOperator getOperator() {
+        return operator;
+    }
+
+    public List<Object> getArguments() {
+        return args;
+    }
+
+    public RsqlComparison getComparison() {
+        return comparison;
+    }
+
+    String getPluralPath() {
+        return pluralPath;
     }
 
     @Override
-    public Predicate toPredicate(Root<T> root, CriteriaQuery<?> query, CriteriaBuilder builder) {
-        List<Object> args = castArguments();
+    Predicate toPredicate(FilterScope scope) {
+        if (pluralPath != null && scope.isRoot()) {
+            return scope.exists(pluralPath, this::compare);
+        }
+        return compare(scope);
+    }
+
+    Predicate compare(FilterScope scope) {
+        CriteriaBuilder builder = scope.getBuilder();
         Object argument = args.get(0);
-        String[] path = property.split("\\.");
 
         switch (RsqlSearchOperation.getSimpleOperator(operator)) {
             case EQUAL: {
                 if (argument instanceof String) {
-                    if (path.length > 1) {
-                        Join<T, ?> join = root.join(path[0], JoinType.INNER);
-                        return builder.like(join.get(path[1]), argument.toString().replace('*', '%'));
-                    }
-                    else {
-                        return builder.like(root.get(property), argument.toString().replace('*', '%'));
-                    }
+                    return builder.like(getPath(scope), argument.toString().replace('*', '%'));
                 } else if (argument == null) {
-                    if (path.length > 1) {
-                        Join<T, ?> join = root.join(path[0], JoinType.INNER);
-                        return builder.isNull(join.get(path[1]));
-                    }
-                    else {
-                        return builder.isNull(root.get(property));
-                    }
+                    return builder.isNull(getPath(scope));
                 } else {
-                    if (path.length > 1) {
-                        Join<T, ?> join = root.join(path[0], JoinType.INNER);
-                        return builder.equal(join.get(path[1]), argument);
-                    }
-                    else {
-                        return builder.equal(root.get(property), argument);
-                    }
+                    return builder.equal(getPath(scope), argument);
                 }
             }
             case NOT_EQUAL: {
                 if (argument instanceof String) {
-                    if (path.length > 1) {
-                        Join<T, ?> join = root.join(path[0], JoinType.INNER);
-                        return builder.notLike(join.get(path[1]), argument.toString().replace('*', '%'));
-                    }
-                    else {
-                        return builder.notLike(root.get(property), argument.toString().replace('*', '%'));
-                    }
+                    return builder.notLike(getPath(scope), argument.toString().replace('*', '%'));
                 } else if (argument == null) {
-                    if (path.length > 1) {
-                        Join<T, ?> join = root.join(path[0], JoinType.INNER);
-                        return builder.isNotNull(join.get(path[1]));
-                    }
-                    else {
-                        return builder.isNotNull(root.get(property));
-                    }
+                    return builder.isNotNull(getPath(scope));
                 } else {
-                    if (path.length > 1) {
-                        Join<T, ?> join = root.join(path[0], JoinType.INNER);
-                        return builder.notEqual(join.get(path[1]), argument);
-                    }
-                    else {
-                        return builder.notEqual(root.get(property), argument);
-                    }
+                    return builder.notEqual(getPath(scope), argument);
                 }
             }
             case GREATER_THAN: {
-                // TODO: implement join
                 if (argument instanceof OffsetDateTime) {
-                    return builder.greaterThan(root.get(property), (OffsetDateTime)argument);
+                    return builder.greaterThan(getPath(scope), (OffsetDateTime)argument);
                 }
                 else {
-                    return builder.greaterThan(root.get(property), argument.toString());
+                    return builder.greaterThan(getPath(scope), argument.toString());
                 }
             }
             case GREATER_THAN_OR_EQUAL: {
-                // TODO: implement join
-                return builder.greaterThanOrEqualTo(root.<String> get(property), argument.toString());
+                return builder.greaterThanOrEqualTo(this.<String>getPath(scope), argument.toString());
             }
             case LESS_THAN: {
-                // TODO: implement join
                 if (argument instanceof OffsetDateTime) {
-                    return builder.lessThan(root.get(property), (OffsetDateTime)argument);
+                    return builder.lessThan(getPath(scope), (OffsetDateTime)argument);
                 }
                 else {
-                    return builder.lessThan(root.get(property), argument.toString());
+                    return builder.lessThan(getPath(scope), argument.toString());
                 }
             }
             case LESS_THAN_OR_EQUAL: {
-                // TODO: implement join
                 if (argument instanceof OffsetDateTime) {
-                    return builder.lessThanOrEqualTo(root.<String>get(property), argument.toString());
+                    return builder.lessThanOrEqualTo(this.<String>getPath(scope), argument.toString());
                 }
                 else {
-                    return builder.lessThanOrEqualTo(root.get(property), argument.toString());
+                    return builder.lessThanOrEqualTo(getPath(scope), argument.toString());
                 }
             }
             case IN:
-                // TODO: implement joins
-                return root.get(property).in(args);
+                return getPath(scope).in(args);
             case NOT_IN:
-                // TODO: implement join
-                return builder.not(root.get(property).in(args));
+                return builder.not(getPath(scope).in(args));
+            case IS_NULL:
+                return Boolean.TRUE.equals(argument) ? builder.isNull(getPath(scope)) : builder.isNotNull(getPath(scope));
+            case IS_NOT_NULL:
+                return Boolean.TRUE.equals(argument) ? builder.isNotNull(getPath(scope)) : builder.isNull(getPath(scope));
+            case FULL_TEXT: {
+                // Id of the entity declaring the property, for example tickets.id for tickets.name
+                Set<Object> ids = fullTextIndex.search(entityType, property.substring(property.lastIndexOf('.') + 1), args);
+                if (ids.isEmpty()) {
+                    return builder.disjunction();
+                }
+                return idIn(scope, ids);
+            }
         }
 
         return null;
     }
 
-    private List<Object> castArguments() {
-
-        Class<? extends Object> type = types.get(property);
+    // The ids matched in the index, an OR of IN lists of at most fullTextIndex.getMaxIds() ids each
+    private Predicate idIn(FilterScope scope, Set<Object> ids) {
+        Path<Object> id = scope.getPath(property.substring(0, property.lastIndexOf('.') + 1) + "id");
+        List<Object> idList = new ArrayList<>(ids);
+        int chunkSize = fullTextIndex.getMaxIds();
+        List<Predicate> chunks = new ArrayList<>();
+        for (int from = 0; from < idList.size(); from += chunkSize) {
+            chunks.add(id.in(idList.subList(from, Math.min(from + chunkSize, idList.size()))));
+        }
+        return chunks.size() == 1 ? chunks.get(0) : scope.getBuilder().or(chunks.toArray(new Predicate[0]));
+    }
 
-        List<Object> args = arguments.stream().map(arg -> {
-            if (type.equals(Integer.class)) {
-                return Integer.parseInt(arg);
-            } else if (type.equals(Long.class)) {
-                return Long.parseLong(arg);
-            } else if (type.equals(OffsetDateTime.class)) {
-                return OffsetDateTime.parse(arg);
-            } else {
-                return arg;
-            }
-        }).collect(Collectors.toList());
+    @Override
+    void collectComparisons(List<GenericRsqlSpecification<T>> comparisons) {
+        comparisons.add(this);
+    }
 
-        return args;
+    private <Y> Path<Y> getPath(FilterScope scope) {
+        return scope.getPath(property);
     }
 
     // standard constructor, getter, setter
@@ -0,0 +1,66 @@
+package com.atr.crud.filterrepository.rsql;
+
+import cz.jirutka.rsql.parser.ast.LogicalOperator;
+import jakarta.persistence.criteria.Predicate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+//
+// AND / OR group of a compiled RSQL filter.
+// Comparisons of an OR group on the same plural association share one EXISTS subquery: roles.code==admin,roles.code==db
+// is a single EXISTS (roles with code admin or db). In an AND group each one keeps its own EXISTS, a single subquery
+// would require both conditions on the same related row.
+//
+public class LogicalRsqlSpecification<T> extends RsqlSpecification<T> {
+
+    private final LogicalOperator operator;
+
+    private final List<RsqlSpecification<T>> children;
+
+    public LogicalRsqlSpecification(LogicalOperator operator, List<RsqlSpecification<T>> children) {
+        this.operator = operator;
+        this.children = List.copyOf(children);
+    }
+
+    public LogicalOperator getOperator() {
+        return operator;
+    }
+
+    public List<RsqlSpecification<T>> getChildren() {
+        return children;
+    }
+
+    @Override
+    Predicate toPredicate(FilterScope scope) {
+        List<Predicate> predicates = new ArrayList<>();
+        Map<String, List<GenericRsqlSpecification<T>>> existsGroups = new LinkedHashMap<>();
+
+        for (RsqlSpecification<T> child : children) {
+            if (operator == LogicalOperator.OR && scope.isRoot()
+                    && child instanceof GenericRsqlSpecification<T> comparison && comparison.getPluralPath() != null) {
+                existsGroups.computeIfAbsent(comparison.getPluralPath(), pluralPath -> new ArrayList<>()).add(comparison);
+            } else {
+                predicates.add(child.toPredicate(scope));
+            }
+        }
+
+        for (Map.Entry<String, List<GenericRsqlSpecification<T>>> existsGroup : existsGroups.entrySet()) {
+            predicates.add(scope.exists(existsGroup.getKey(), existsScope -> existsScope.getBuilder().or(existsGroup.getValue().stream()
+                    .map(comparison -> comparison.compare(existsScope))
+                    .toArray(Predicate[]::new))));
+        }
+
+        Predicate[] predicateArray = predicates.toArray(new Predicate[0]);
+        return operator == LogicalOperator.AND ? scope.getBuilder().and(predicateArray) : scope.getBuilder().or(predicateArray);
+    }
+
+    @Override
+    void collectComparisons(List<GenericRsqlSpecification<T>> comparisons) {
+        for (RsqlSpecification<T> child : children) {
+            child.collectComparisons(comparisons);
+        }
+    }
+}
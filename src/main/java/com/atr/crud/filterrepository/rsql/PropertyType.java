@@ -0,0 +1,76 @@
+package com.atr.crud.filterrepository.rsql;
+
+import java.time.OffsetDateTime;
+import java.util.function.Function;
+
+//
+// Type of a filterable property path of an entity (for example 'age' or 'user.name' in Ticket), resolved at startup
+// by TypeRegistry together with the parser of its RSQL arguments.
+//
+public class PropertyType {
+
+    private final String path;
+
+    // Entity declaring the property, for example User for user.name in Ticket
+    private final Class<?> entityType;
+
+    private final Class<?> javaType;
+
+    // True if the column is optional or the path crosses an optional or plural association
+    private final boolean nullable;
+
+    // Path up to the first plural association it crosses, null if none. For example user.roles in Ticket user.roles.code
+    private final String pluralPath;
+
+    private final Function<String, Object> parser;
+
+    PropertyType(String path, Class<?> entityType, Class<?> javaType, boolean nullable, String pluralPath) {
+        this.path = path;
+        this.entityType = entityType;
+        this.javaType = javaType;
+        this.nullable = nullable;
+        this.pluralPath = pluralPath;
+        this.parser = parserOf(javaType);
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    // Last segment of the path, the property of the entity type
+    public String getName() {
+        return path.substring(path.lastIndexOf('.') + 1);
+    }
+
+    public Class<?> getEntityType() {
+        return entityType;
+    }
+
+    public Class<?> getJavaType() {
+        return javaType;
+    }
+
+    public boolean isNullable() {
+        return nullable;
+    }
+
+    public String getPluralPath() {
+        return pluralPath;
+    }
+
+    public Object parse(String argument) {
+        return parser.apply(argument);
+    }
+
+    private static Function<String, Object> parserOf(Class<?> javaType) {
+        if (javaType.equals(Integer.class) || javaType.equals(int.class)) {
+            return Integer::parseInt;
+        } else if (javaType.equals(Long.class) || javaType.equals(long.class)) {
+            return Long::parseLong;
+        } else if (javaType.equals(OffsetDateTime.class)) {
+            return OffsetDateTime::parse;
+        } else {
+            return argument -> argument;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.atr.crud.filterrepository.rsql;
+
+import com.atr.crud.filterrepository.fulltext.FullTextIndex;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+//
+// RSQL comparison evaluated on a value in memory with the semantics of GenericRsqlSpecification in SQL: strings
+// compared with == and != are LIKE patterns ('*' and '%' any characters, '_' one character) and null values only match
+// the null operators (==null, =isnull=true). Built once per compiled comparison, with its arguments already cast.
+//
+public class RsqlComparison {
+
+    private final RsqlSearchOperation operation;
+
+    private final List<Object> arguments;
+
+    // LIKE pattern of == and != with a string argument, null otherwise. Without '_' and with '%' only at the ends it is
+    // a plain string test instead of a regular expression
+    private final Predicate<String> like;
+
+    RsqlComparison(RsqlSearchOperation operation, List<Object> arguments) {
+        this.operation = operation;
+        this.arguments = arguments;
+        boolean pattern = (operation == RsqlSearchOperation.EQUAL || operation == RsqlSearchOperation.NOT_EQUAL)
+                && arguments.get(0) instanceof String;
+        this.like = pattern ? like(arguments.get(0).toString().replace('*', '%')) : null;
+    }
+
+    public RsqlSearchOperation getOperation() {
+        return operation;
+    }
+
+    public List<Object> getArguments() {
+        return arguments;
+    }
+
+    public boolean test(Object value) {
+        Object argument = arguments.get(0);
+        if (value == null) {
+            return switch (operation) {
+                case EQUAL -> argument == null;
+                case IS_NULL -> Boolean.TRUE.equals(argument);
+                case IS_NOT_NULL -> Boolean.FALSE.equals(argument);
+                default -> false;
+            };
+        }
+
+        switch (operation) {
+            case EQUAL:
+                return like != null ? like.test(value.toString()) : argument != null && compare(value, argument) == 0;
+            case NOT_EQUAL:
+                return like != null ? !like.test(value.toString()) : argument == null || compare(value, argument) != 0;
+            case GREATER_THAN:
+                return compare(value, argument) > 0;
+            case GREATER_THAN_OR_EQUAL:
+                return compare(value, argument) >= 0;
+            case LESS_THAN:
+                return compare(value, argument) < 0;
+            case LESS_THAN_OR_EQUAL:
+                return compare(value, argument) <= 0;
+            case IN:
+                return contains(value);
+            case NOT_IN:
+                return !contains(value);
+            case IS_NULL:
+                return Boolean.FALSE.equals(argument);
+            case IS_NOT_NULL:
+                return Boolean.TRUE.equals(argument);
+            case FULL_TEXT:
+                return FullTextIndex.matches(value.toString(), arguments);
+            default:
+                throw new IllegalStateException("Unsupported operation: " + operation);
+        }
+    }
+
+    private boolean contains(Object value) {
+        for (Object argument : arguments) {
+            if (compare(value, argument) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(Object value, Object argument) {
+        if (value instanceof String string) {
+            return string.compareTo(argument.toString());
+        }
+        if (value instanceof OffsetDateTime dateTime && argument instanceof OffsetDateTime argumentDateTime) {
+            return dateTime.toInstant().compareTo(argumentDateTime.toInstant());
+        }
+        if (value instanceof Number number && argument instanceof Number argumentNumber) {
+            return Long.compare(number.longValue(), argumentNumber.longValue());
+        }
+        return ((Comparable) value).compareTo(argument);
+    }
+
+    private static Predicate<String> like(String like) {
+        boolean leading = like.startsWith("%");
+        boolean trailing = like.length() > 1 && like.endsWith("%");
+        String inner = like.substring(leading ? 1 : 0, like.length() - (trailing ? 1 : 0));
+        if (inner.indexOf('%') >= 0 || inner.indexOf('_') >= 0) {
+            Pattern pattern = likePattern(like);
+            return value -> pattern.matcher(value).matches();
+        }
+
+        if (leading && trailing) {
+            return value -> value.contains(inner);
+        } else if (leading) {
+            return value -> value.endsWith(inner);
+        } else if (trailing) {
+            return value -> value.startsWith(inner);
+        }
+        return inner::equals;
+    }
+
+    private static Pattern likePattern(String like) {
+        StringBuilder regex = new StringBuilder();
+        for (char character : like.toCharArray()) {
+            if (character == '%') {
+                regex.append(".*");
+            } else if (character == '_') {
+                regex.append('.');
+            } else {
+                regex.append(Pattern.quote(String.valueOf(character)));
+            }
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+}
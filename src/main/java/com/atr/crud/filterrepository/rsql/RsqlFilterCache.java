@@ -0,0 +1,78 @@
+package com.atr.crud.filterrepository.rsql;
+
+import com.atr.crud.filterrepository.FilterRepositoryProperties;
+import com.atr.crud.filterrepository.fulltext.FullTextIndex;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import cz.jirutka.rsql.parser.RSQLParser;
+import cz.jirutka.rsql.parser.ast.Node;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Predicate;
+
+//
+// Compiled RSQL filters (parsed, visited and with their arguments cast) per entity and filter string, shared between
+// requests, and their in-memory predicates per target class. Hits and misses are published as the 'cache.gets' metric
+// with tag cache=crud.search.filters and cache=crud.search.predicates.
+//
+@Component
+public class RsqlFilterCache {
+
+    private final TypeRegistry typeRegistry;
+
+    private final FullTextIndex fullTextIndex;
+
+    private final RSQLParser parser = new RSQLParser(RsqlSearchOperation.parserOperators());
+
+    private final Cache<RsqlFilterKey, RsqlSpecification<?>> filters;
+
+    private final Cache<RsqlPredicateKey, Predicate<?>> predicates;
+
+    public RsqlFilterCache(TypeRegistry typeRegistry, FullTextIndex fullTextIndex, FilterRepositoryProperties properties,
+                           MeterRegistry meterRegistry) {
+        this.typeRegistry = typeRegistry;
+        this.fullTextIndex = fullTextIndex;
+        this.filters = Caffeine.newBuilder()
+                .maximumSize(properties.getFilterCacheSize())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, filters, "crud.search.filters");
+        this.predicates = Caffeine.newBuilder()
+                .maximumSize(properties.getFilterCacheSize())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, predicates, "crud.search.predicates");
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> RsqlSpecification<T> compile(Class<T> domainClass, String restSql) {
+        return (RsqlSpecification<T>) filters.get(new RsqlFilterKey(domainClass, restSql.trim()), key -> build(domainClass, key.restSql()));
+    }
+
+    //
+    // The filter of the entity as a predicate over instances of 'type' (the entity or a DTO with its property names), for
+    // entities or DTOs already in memory. Every object matches an empty filter.
+    //
+    @SuppressWarnings("unchecked")
+    public <D> Predicate<D> compilePredicate(Class<?> domainClass, Class<D> type, String restSql) {
+        if (restSql == null || restSql.isBlank()) {
+            return value -> true;
+        }
+        return (Predicate<D>) predicates.get(new RsqlPredicateKey(domainClass, type, restSql.trim()),
+                key -> new RsqlPredicateBuilder<>(type).createPredicate(compile(domainClass, key.restSql())));
+    }
+
+    private <T> RsqlSpecification<T> build(Class<T> domainClass, String restSql) {
+        Node rootNode = parser.parse(restSql);
+
+        return rootNode.accept(new CustomRsqlVisitor<>(typeRegistry.getTypes(domainClass), fullTextIndex));
+    }
+
+    private record RsqlFilterKey(Class<?> domainClass, String restSql) {
+    }
+
+    private record RsqlPredicateKey(Class<?> domainClass, Class<?> type, String restSql) {
+    }
+}
@@ -0,0 +1,97 @@
+package com.atr.crud.filterrepository.rsql;
+
+import com.atr.crud.filterrepository.accessor.BeanAccessor;
+import com.atr.crud.filterrepository.accessor.PropertyAccessor;
+import cz.jirutka.rsql.parser.ast.LogicalOperator;
+import org.hibernate.Hibernate;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Predicate;
+
+//
+// Second compilation target of a compiled RSQL filter: a Predicate over objects with the entity property names (the
+// entity or one of its DTOs) to filter data already in memory with the semantics of the database query. Property paths
+// are resolved once to field accessors. A plural association matches if any of its elements does (the EXISTS
+// subquery) and a null association never matches (the inner join).
+//
+class RsqlPredicateBuilder<D> {
+
+    private final Class<D> type;
+
+    RsqlPredicateBuilder(Class<D> type) {
+        this.type = type;
+    }
+
+    Predicate<D> createPredicate(RsqlSpecification<?> filter) {
+        if (filter instanceof LogicalRsqlSpecification<?> logical) {
+            List<Predicate<D>> children = new ArrayList<>();
+            for (RsqlSpecification<?> child : logical.getChildren()) {
+                children.add(createPredicate(child));
+            }
+
+            if (logical.getOperator() == LogicalOperator.AND) {
+                return value -> {
+                    for (Predicate<D> child : children) {
+                        if (!child.test(value)) {
+                            return false;
+                        }
+                    }
+                    return true;
+                };
+            }
+            return value -> {
+                for (Predicate<D> child : children) {
+                    if (child.test(value)) {
+                        return true;
+                    }
+                }
+                return false;
+            };
+        }
+
+        GenericRsqlSpecification<?> comparison = (GenericRsqlSpecification<?>) filter;
+        List<PropertyAccessor> path = resolve(comparison.getProperty());
+        RsqlComparison valueComparison = comparison.getComparison();
+        return value -> anyMatch(value, path, 0, valueComparison);
+    }
+
+    private List<PropertyAccessor> resolve(String property) {
+        List<PropertyAccessor> path = new ArrayList<>();
+        Class<?> current = type;
+        for (String segment : property.split("\\.")) {
+            PropertyAccessor accessor = BeanAccessor.of(current).getRequiredProperty(segment);
+            path.add(accessor);
+            current = Collection.class.isAssignableFrom(accessor.getType()) ? elementType(accessor) : accessor.getType();
+        }
+        return path;
+    }
+
+    private static Class<?> elementType(PropertyAccessor accessor) {
+        Type genericType = accessor.getGenericType();
+        if (genericType instanceof ParameterizedType parameterizedType && parameterizedType.getActualTypeArguments()[0] instanceof Class<?> elementType) {
+            return elementType;
+        }
+        throw new IllegalArgumentException("Unknown element type of '" + accessor.getName() + "'");
+    }
+
+    private static boolean anyMatch(Object bean, List<PropertyAccessor> path, int index, RsqlComparison comparison) {
+        Object value = path.get(index).get(Hibernate.unproxy(bean));
+        if (index == path.size() - 1) {
+            return comparison.test(value);
+        }
+
+        if (value instanceof Collection<?> elements) {
+            for (Object element : elements) {
+                if (element != null && anyMatch(element, path, index + 1, comparison)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return value != null && anyMatch(value, path, index + 1, comparison);
+    }
+}
@@ -4,6 +4,8 @@ import cz.jirutka.rsql.parser.ast.ComparisonOperator;
 import cz.jirutka.rsql.parser.ast.RSQLOperators;
 
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 public enum RsqlSearchOperation {
     EQUAL(RSQLOperators.EQUAL),
@@ -14,8 +16,9 @@ public enum RsqlSearchOperation {
     LESS_THAN_OR_EQUAL(RSQLOperators.LESS_THAN_OR_EQUAL),
     IN(RSQLOperators.IN),
     NOT_IN(RSQLOperators.NOT_IN),
-    IS_NULL(new ComparisonOperator("=isnull=", true)),
-    IS_NOT_NULL(new ComparisonOperator("=isnotnull=", true));
+    IS_NULL(new ComparisonOperator("=isnull=", false)),
+    IS_NOT_NULL(new ComparisonOperator("=isnotnull=", false)),
+    FULL_TEXT(new ComparisonOperator("=fts=", true));
     private ComparisonOperator operator;
 
     RsqlSearchOperation(final ComparisonOperator operator) {
@@ -28,6 +31,15 @@ public enum RsqlSearchOperation {
                 .findAny().orElse(null);
     }
 
+    // Operators accepted by the parser: the RSQL defaults, =isnull=, =isnotnull= (age=isnull=true) and =fts=
+    public static Set<ComparisonOperator> parserOperators() {
+        Set<ComparisonOperator> operators = new HashSet<>(RSQLOperators.defaultOperators());
+        operators.add(IS_NULL.getOperator());
+        operators.add(IS_NOT_NULL.getOperator());
+        operators.add(FULL_TEXT.getOperator());
+        return operators;
+    }
+
     public ComparisonOperator getOperator() {
         return operator;
     }
@@ -0,0 +1,32 @@
+package com.atr.crud.filterrepository.rsql;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//
+// Node of a compiled RSQL filter. The filter nodes of one query share a FilterScope (its joins and subqueries).
+//
+public abstract class RsqlSpecification<T> implements Specification<T> {
+
+    @Override
+    public Predicate toPredicate(Root<T> root, CriteriaQuery<?> query, CriteriaBuilder builder) {
+        return toPredicate(new FilterScope(root, query, builder));
+    }
+
+    // Every comparison of the filter, in filter order
+    public List<GenericRsqlSpecification<T>> getComparisons() {
+        List<GenericRsqlSpecification<T>> comparisons = new ArrayList<>();
+        collectComparisons(comparisons);
+        return comparisons;
+    }
+
+    abstract Predicate toPredicate(FilterScope scope);
+
+    abstract void collectComparisons(List<GenericRsqlSpecification<T>> comparisons);
+}
@@ -0,0 +1,72 @@
+package com.atr.crud.filterrepository.rsql;
+
+import com.atr.crud.filterrepository.FilterRepositoryProperties;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.EntityType;
+import jakarta.persistence.metamodel.ManagedType;
+import jakarta.persistence.metamodel.Metamodel;
+import jakarta.persistence.metamodel.PluralAttribute;
+import jakarta.persistence.metamodel.SingularAttribute;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+//
+// Filterable property paths of every entity, built once at startup from the metamodel. Paths go through plural and
+// singular associations up to crud.search.filter-path-depth associations. For example in Ticket: name, user.name,
+// user.roles.code.
+//
+@Component
+public class TypeRegistry {
+
+    private final Map<Class<?>, Map<String, PropertyType>> types;
+
+    public TypeRegistry(EntityManagerFactory entityManagerFactory, FilterRepositoryProperties properties) {
+        Metamodel metamodel = entityManagerFactory.getMetamodel();
+
+        Map<Class<?>, Map<String, PropertyType>> types = new HashMap<>();
+        for (EntityType<?> entityType : metamodel.getEntities()) {
+            Map<String, PropertyType> entityTypes = new HashMap<>();
+            collect(metamodel, entityType, "", false, null, properties.getFilterPathDepth(), entityTypes);
+            types.put(entityType.getJavaType(), Map.copyOf(entityTypes));
+        }
+        this.types = Map.copyOf(types);
+    }
+
+    public Map<String, PropertyType> getTypes(Class<?> domainClass) {
+        Map<String, PropertyType> entityTypes = types.get(domainClass);
+        if (entityTypes == null) {
+            throw new IllegalArgumentException(domainClass.getSimpleName() + " is not an entity");
+        }
+        return entityTypes;
+    }
+
+    private void collect(Metamodel metamodel, ManagedType<?> managedType, String prefix, boolean nullable, String pluralPath, int depth,
+                         Map<String, PropertyType> entityTypes) {
+        for (Attribute<?, ?> attribute : managedType.getAttributes()) {
+            String path = prefix + attribute.getName();
+
+            if (attribute instanceof PluralAttribute<?, ?, ?> pluralAttribute) {
+                if (depth > 0) {
+                    collect(metamodel, metamodel.entity(pluralAttribute.getBindableJavaType()), path + ".", true,
+                            pluralPath == null ? path : pluralPath, depth - 1, entityTypes);
+                }
+            }
+            else {
+                SingularAttribute<?, ?> singularAttribute = (SingularAttribute<?, ?>) attribute;
+                boolean pathNullable = nullable || singularAttribute.isOptional();
+
+                if (attribute.isAssociation()) {
+                    if (depth > 0) {
+                        collect(metamodel, metamodel.entity(singularAttribute.getBindableJavaType()), path + ".", pathNullable, pluralPath, depth - 1, entityTypes);
+                    }
+                }
+                else {
+                    entityTypes.put(path, new PropertyType(path, managedType.getJavaType(), attribute.getJavaType(), pathNullable, pluralPath));
+                }
+            }
+        }
+    }
+}
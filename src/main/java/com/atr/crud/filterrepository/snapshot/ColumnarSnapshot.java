@@ -0,0 +1,266 @@
+package com.atr.crud.filterrepository.snapshot;
+
+import com.atr.crud.filterrepository.rsql.GenericRsqlSpecification;
+import com.atr.crud.filterrepository.rsql.LogicalRsqlSpecification;
+import com.atr.crud.filterrepository.rsql.RsqlSearchOperation;
+import com.atr.crud.filterrepository.rsql.RsqlSpecification;
+import cz.jirutka.rsql.parser.ast.LogicalOperator;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+//
+// In-memory columnar copy of an entity table (crud.search.snapshot-entities): a column per basic property (no LOBs),
+// dictionary encoded strings and primitive numbers, plus a Membership per many-to-many association. Compiled RSQL
+// filters are evaluated as column scans combined with bitset AND / OR, returning the page ids or rows without the
+// database. Kept up to date by SnapshotRegistry, at most crud.search.snapshot-lag behind the database.
+// Removed rows leave a hole (cleared live bit) until the next restart.
+//
+public class ColumnarSnapshot {
+
+    private static final String ID = "id";
+
+    // Operations evaluated by the column scans (null values never match them)
+    private static final Set<RsqlSearchOperation> SUPPORTED = EnumSet.of(RsqlSearchOperation.EQUAL, RsqlSearchOperation.NOT_EQUAL,
+            RsqlSearchOperation.GREATER_THAN, RsqlSearchOperation.GREATER_THAN_OR_EQUAL, RsqlSearchOperation.LESS_THAN,
+            RsqlSearchOperation.LESS_THAN_OR_EQUAL, RsqlSearchOperation.IN, RsqlSearchOperation.NOT_IN);
+
+    private final Class<?> entityClass;
+
+    // Column properties in load order, id first
+    private final List<String> properties;
+
+    private final Map<String, SnapshotColumn> columns;
+
+    private final Map<String, Membership> memberships;
+
+    private final Map<Object, Integer> rowById = new HashMap<>();
+
+    private final BitSet live = new BitSet();
+
+    private int rowCount;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    ColumnarSnapshot(Class<?> entityClass, List<String> properties, Map<String, SnapshotColumn> columns, Map<String, Membership> memberships) {
+        this.entityClass = entityClass;
+        this.properties = List.copyOf(properties);
+        this.columns = Map.copyOf(columns);
+        this.memberships = Map.copyOf(memberships);
+    }
+
+    Class<?> getEntityClass() {
+        return entityClass;
+    }
+
+    List<String> getProperties() {
+        return properties;
+    }
+
+    Map<String, Membership> getMemberships() {
+        return memberships;
+    }
+
+    //
+    // Queries
+    //
+
+    // True if every comparison of the filter (null for none) and the sort column can be evaluated in memory
+    public boolean supports(RsqlSpecification<?> filter, String sortColumn) {
+        if (sortColumn != null && !sortColumn.isEmpty() && !columns.containsKey(sortColumn)) {
+            return false;
+        }
+        if (filter == null) {
+            return true;
+        }
+
+        for (GenericRsqlSpecification<?> comparison : filter.getComparisons()) {
+            if (!SUPPORTED.contains(RsqlSearchOperation.getSimpleOperator(comparison.getOperator()))
+                    || comparison.getArguments().contains(null)) {
+                return false;
+            }
+            String[] path = comparison.getProperty().split("\\.");
+            boolean supported = path.length == 1 ? columns.containsKey(path[0])
+                    : path.length == 2 && memberships.containsKey(path[0]) && memberships.get(path[0]).hasProperty(path[1]);
+            if (!supported) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean hasProperties(Collection<String> names) {
+        return columns.keySet().containsAll(names);
+    }
+
+    //
+    // Ids of a page of the rows matching the filter, ordered by the sort column (nulls as lowest values, default id) and
+    // id. 'afterId' (with its 'afterSortValue') is the keyset cursor row, null for none.
+    //
+    public List<Object> searchIds(RsqlSpecification<?> filter, String sortColumn, boolean ascending, Object afterSortValue, Object afterId,
+                                  int firstResult, int maxResults) {
+        SnapshotColumn idColumn = columns.get(ID);
+        SnapshotColumn sort = sortColumn == null || sortColumn.isEmpty() ? idColumn : columns.get(sortColumn);
+        Comparator<Integer> order = (rowA, rowB) -> {
+            int comparison = sort.compare(rowA, rowB);
+            if (comparison == 0 && sort != idColumn) {
+                comparison = idColumn.compare(rowA, rowB);
+            }
+            return ascending ? comparison : -comparison;
+        };
+        int limit = (int) Math.min(Integer.MAX_VALUE, (long) firstResult + maxResults);
+
+        lock.readLock().lock();
+        try {
+            BitSet matches = matches(filter);
+
+            // Best 'limit' rows, worst on top
+            PriorityQueue<Integer> page = new PriorityQueue<>(order.reversed());
+            for (int row = matches.nextSetBit(0); row >= 0; row = matches.nextSetBit(row + 1)) {
+                if (afterId != null) {
+                    int comparison = sort.compareTo(row, afterSortValue);
+                    if (comparison == 0 && sort != idColumn) {
+                        comparison = idColumn.compareTo(row, afterId);
+                    }
+                    if ((ascending ? comparison : -comparison) <= 0) {
+                        continue;
+                    }
+                }
+                page.add(row);
+                if (page.size() > limit) {
+                    page.poll();
+                }
+            }
+
+            List<Integer> rows = new ArrayList<>(page);
+            rows.sort(order);
+            List<Object> ids = new ArrayList<>();
+            for (int index = firstResult; index < rows.size(); index++) {
+                ids.add(idColumn.get(rows.get(index)));
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Values of the properties of each id, in the given order. Ids removed since searchIds are skipped
+    public List<Object[]> rows(List<Object> ids, List<String> names) {
+        lock.readLock().lock();
+        try {
+            List<Object[]> rows = new ArrayList<>(ids.size());
+            for (Object id : ids) {
+                Integer row = rowById.get(id);
+                if (row == null) {
+                    continue;
+                }
+                Object[] values = new Object[names.size()];
+                for (int index = 0; index < names.size(); index++) {
+                    values[index] = columns.get(names.get(index)).get(row);
+                }
+                rows.add(values);
+            }
+            return rows;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long count(RsqlSpecification<?> filter) {
+        lock.readLock().lock();
+        try {
+            return matches(filter).cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private BitSet matches(RsqlSpecification<?> filter) {
+        BitSet matches = filter == null ? (BitSet) live.clone() : evaluate(filter);
+        matches.and(live);
+        return matches;
+    }
+
+    private BitSet evaluate(RsqlSpecification<?> filter) {
+        if (filter instanceof LogicalRsqlSpecification<?> logical) {
+            BitSet result = null;
+            for (RsqlSpecification<?> child : logical.getChildren()) {
+                BitSet childResult = evaluate(child);
+                if (result == null) {
+                    result = childResult;
+                } else if (logical.getOperator() == LogicalOperator.AND) {
+                    result.and(childResult);
+                } else {
+                    result.or(childResult);
+                }
+            }
+            return result == null ? new BitSet() : result;
+        }
+
+        GenericRsqlSpecification<?> comparison = (GenericRsqlSpecification<?>) filter;
+        String[] path = comparison.getProperty().split("\\.");
+        if (path.length == 1) {
+            return columns.get(path[0]).scan(comparison.getComparison(), rowCount);
+        }
+        return memberships.get(path[0]).scan(path[1], comparison.getComparison());
+    }
+
+    //
+    // Updates, by SnapshotRegistry
+    //
+
+    void write(Runnable changes) {
+        lock.writeLock().lock();
+        try {
+            changes.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Values of the properties, id first. Inserted or replaced
+    void putRow(Object[] values) {
+        Integer row = rowById.get(values[0]);
+        if (row == null) {
+            row = rowCount++;
+            rowById.put(values[0], row);
+        }
+        for (int index = 0; index < properties.size(); index++) {
+            columns.get(properties.get(index)).set(row, values[index]);
+        }
+        live.set(row);
+    }
+
+    void removeRow(Object id) {
+        Integer row = rowById.remove(id);
+        if (row != null) {
+            live.clear(row);
+            for (Membership membership : memberships.values()) {
+                membership.clear(row);
+            }
+        }
+    }
+
+    // Replaces the targets of the row of the id, ignored if the row is not in the snapshot
+    void putMemberships(String association, Object id, Collection<Object> targetIds) {
+        Integer row = rowById.get(id);
+        if (row == null) {
+            return;
+        }
+        Membership membership = memberships.get(association);
+        membership.clear(row);
+        for (Object targetId : targetIds) {
+            membership.add(row, targetId);
+        }
+    }
+}
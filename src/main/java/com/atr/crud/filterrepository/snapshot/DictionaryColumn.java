@@ -0,0 +1,77 @@
+package com.atr.crud.filterrepository.snapshot;
+
+import com.atr.crud.filterrepository.rsql.RsqlComparison;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//
+// Dictionary encoded string column: a code per row and each distinct value once. A comparison is evaluated once per
+// distinct value and then the codes are scanned, cheap for low cardinality columns (country, type, language).
+//
+class DictionaryColumn extends SnapshotColumn {
+
+    private final List<String> dictionary = new ArrayList<>();
+
+    private final Map<String, Integer> codes = new HashMap<>();
+
+    private int[] rowCodes = new int[0];
+
+    @Override
+    void set(int row, Object value) {
+        if (row >= rowCodes.length) {
+            rowCodes = Arrays.copyOf(rowCodes, grow(rowCodes.length, row));
+        }
+        if (value == null) {
+            nulls.set(row);
+            return;
+        }
+        nulls.clear(row);
+        rowCodes[row] = codes.computeIfAbsent((String) value, string -> {
+            dictionary.add(string);
+            return dictionary.size() - 1;
+        });
+    }
+
+    @Override
+    Object get(int row) {
+        return nulls.get(row) ? null : dictionary.get(rowCodes[row]);
+    }
+
+    @Override
+    BitSet scan(RsqlComparison comparison, int rowCount) {
+        BitSet matchingCodes = new BitSet(dictionary.size());
+        for (int code = 0; code < dictionary.size(); code++) {
+            if (comparison.test(dictionary.get(code))) {
+                matchingCodes.set(code);
+            }
+        }
+
+        BitSet rows = new BitSet(rowCount);
+        if (matchingCodes.isEmpty()) {
+            return rows;
+        }
+        int[] scannedCodes = rowCodes;
+        for (int row = 0; row < rowCount; row++) {
+            if (matchingCodes.get(scannedCodes[row])) {
+                rows.set(row);
+            }
+        }
+        rows.andNot(nulls);
+        return rows;
+    }
+
+    @Override
+    int compareValues(int rowA, int rowB) {
+        return dictionary.get(rowCodes[rowA]).compareTo(dictionary.get(rowCodes[rowB]));
+    }
+
+    @Override
+    int compareValue(int row, Object value) {
+        return dictionary.get(rowCodes[row]).compareTo(value.toString());
+    }
+}
@@ -0,0 +1,77 @@
+package com.atr.crud.filterrepository.snapshot;
+
+import com.atr.crud.filterrepository.rsql.RsqlComparison;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//
+// Many-to-many association of the snapshot entity (for example User.roles): the snapshot rows related to each target
+// entity as a bitset, and the basic properties of the targets. A filter on a target property (roles.code==admin) is
+// evaluated once per target and ORs the bitsets of the matching ones, like the EXISTS subquery.
+//
+class Membership {
+
+    private final Class<?> targetClass;
+
+    // Target properties in load order, id first
+    private final List<String> targetProperties;
+
+    private final Map<Object, Object[]> targets = new HashMap<>();
+
+    private final Map<Object, BitSet> rowsByTarget = new HashMap<>();
+
+    Membership(Class<?> targetClass, List<String> targetProperties) {
+        this.targetClass = targetClass;
+        this.targetProperties = List.copyOf(targetProperties);
+    }
+
+    Class<?> getTargetClass() {
+        return targetClass;
+    }
+
+    List<String> getTargetProperties() {
+        return targetProperties;
+    }
+
+    boolean hasProperty(String property) {
+        return targetProperties.contains(property);
+    }
+
+    // Target row: values of targetProperties
+    void putTarget(Object[] target) {
+        targets.put(target[0], target);
+    }
+
+    void removeTarget(Object targetId) {
+        targets.remove(targetId);
+        rowsByTarget.remove(targetId);
+    }
+
+    void add(int row, Object targetId) {
+        rowsByTarget.computeIfAbsent(targetId, id -> new BitSet()).set(row);
+    }
+
+    void clear(int row) {
+        for (BitSet rows : rowsByTarget.values()) {
+            rows.clear(row);
+        }
+    }
+
+    BitSet scan(String property, RsqlComparison comparison) {
+        int propertyIndex = targetProperties.indexOf(property);
+        BitSet rows = new BitSet();
+        for (Object[] target : targets.values()) {
+            Object value = target[propertyIndex];
+            if (value != null && comparison.test(value)) {
+                BitSet targetRows = rowsByTarget.get(target[0]);
+                if (targetRows != null) {
+                    rows.or(targetRows);
+                }
+            }
+        }
+        return rows;
+    }
+}
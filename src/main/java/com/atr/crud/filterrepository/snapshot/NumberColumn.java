@@ -0,0 +1,130 @@
+package com.atr.crud.filterrepository.snapshot;
+
+import com.atr.crud.filterrepository.rsql.RsqlComparison;
+import com.atr.crud.filterrepository.rsql.RsqlSearchOperation;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.BitSet;
+
+//
+// Integer, Long and OffsetDateTime (epoch microseconds, the database precision) values as a long per row. Comparisons
+// are loops over the primitive array.
+//
+class NumberColumn extends SnapshotColumn {
+
+    enum Codec {
+        INTEGER,
+        LONG,
+        OFFSET_DATE_TIME;
+
+        static Codec of(Class<?> javaType) {
+            if (javaType.equals(Integer.class) || javaType.equals(int.class)) {
+                return INTEGER;
+            } else if (javaType.equals(Long.class) || javaType.equals(long.class)) {
+                return LONG;
+            } else if (javaType.equals(OffsetDateTime.class)) {
+                return OFFSET_DATE_TIME;
+            }
+            return null;
+        }
+
+        long encode(Object value) {
+            if (this == OFFSET_DATE_TIME) {
+                return ChronoUnit.MICROS.between(Instant.EPOCH, ((OffsetDateTime) value).toInstant());
+            }
+            return ((Number) value).longValue();
+        }
+
+        Object decode(long value) {
+            switch (this) {
+                case INTEGER:
+                    return (int) value;
+                case LONG:
+                    return value;
+                default:
+                    return OffsetDateTime.ofInstant(Instant.EPOCH.plus(value, ChronoUnit.MICROS), ZoneOffset.UTC);
+            }
+        }
+    }
+
+    private final Codec codec;
+
+    private long[] values = new long[0];
+
+    NumberColumn(Codec codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    void set(int row, Object value) {
+        if (row >= values.length) {
+            values = Arrays.copyOf(values, grow(values.length, row));
+        }
+        if (value == null) {
+            nulls.set(row);
+            return;
+        }
+        nulls.clear(row);
+        values[row] = codec.encode(value);
+    }
+
+    @Override
+    Object get(int row) {
+        return nulls.get(row) ? null : codec.decode(values[row]);
+    }
+
+    @Override
+    BitSet scan(RsqlComparison comparison, int rowCount) {
+        long[] scanned = values;
+        BitSet rows = new BitSet(rowCount);
+
+        switch (comparison.getOperation()) {
+            case IN:
+            case NOT_IN: {
+                long[] arguments = comparison.getArguments().stream().mapToLong(codec::encode).sorted().toArray();
+                boolean in = comparison.getOperation() == RsqlSearchOperation.IN;
+                for (int row = 0; row < rowCount; row++) {
+                    if ((Arrays.binarySearch(arguments, scanned[row]) >= 0) == in) {
+                        rows.set(row);
+                    }
+                }
+                break;
+            }
+            default: {
+                long argument = codec.encode(comparison.getArguments().get(0));
+                // Sign of (value - argument) accepted by the operation: bit 0 below, bit 1 equal, bit 2 above
+                int accepted = switch (comparison.getOperation()) {
+                    case EQUAL -> 0b010;
+                    case NOT_EQUAL -> 0b101;
+                    case GREATER_THAN -> 0b100;
+                    case GREATER_THAN_OR_EQUAL -> 0b110;
+                    case LESS_THAN -> 0b001;
+                    case LESS_THAN_OR_EQUAL -> 0b011;
+                    default -> throw new IllegalStateException("Unsupported snapshot operation: " + comparison.getOperation());
+                };
+                for (int row = 0; row < rowCount; row++) {
+                    if ((accepted & (1 << (Long.compare(scanned[row], argument) + 1))) != 0) {
+                        rows.set(row);
+                    }
+                }
+            }
+        }
+
+        rows.andNot(nulls);
+        return rows;
+    }
+
+    @Override
+    int compareValues(int rowA, int rowB) {
+        return Long.compare(values[rowA], values[rowB]);
+    }
+
+    @Override
+    int compareValue(int row, Object value) {
+        return Long.compare(values[row], codec.encode(value));
+    }
+}
@@ -0,0 +1,52 @@
+package com.atr.crud.filterrepository.snapshot;
+
+import com.atr.crud.filterrepository.rsql.RsqlComparison;
+
+import java.util.BitSet;
+
+//
+// Values of one entity property by snapshot row, with a null bit per row.
+//
+abstract class SnapshotColumn {
+
+    protected final BitSet nulls = new BitSet();
+
+    abstract void set(int row, Object value);
+
+    abstract Object get(int row);
+
+    // Rows below rowCount whose (non null) value satisfies the comparison
+    abstract BitSet scan(RsqlComparison comparison, int rowCount);
+
+    // Non null values of two rows
+    abstract int compareValues(int rowA, int rowB);
+
+    // Non null value of a row and a value of the property type
+    abstract int compareValue(int row, Object value);
+
+    // Null as the lowest value, like the keyset order
+    int compare(int rowA, int rowB) {
+        boolean nullA = nulls.get(rowA);
+        boolean nullB = nulls.get(rowB);
+        if (nullA || nullB) {
+            return Boolean.compare(!nullA, !nullB);
+        }
+        return compareValues(rowA, rowB);
+    }
+
+    int compareTo(int row, Object value) {
+        boolean rowNull = nulls.get(row);
+        if (rowNull || value == null) {
+            return Boolean.compare(!rowNull, value != null);
+        }
+        return compareValue(row, value);
+    }
+
+    static int grow(int capacity, int row) {
+        int newCapacity = Math.max(capacity, 16);
+        while (newCapacity <= row) {
+            newCapacity *= 2;
+        }
+        return newCapacity;
+    }
+}
@@ -0,0 +1,22 @@
+package com.atr.crud.filterrepository.snapshot;
+
+import java.util.Set;
+
+//
+// Changed rows applied to the snapshots by SnapshotRegistry, some time after their commit (crud.search.snapshot-lag).
+// Searches answered from a snapshot before it may have read the old rows: consumers holding search results drop the
+// ones of these entity classes.
+//
+public class SnapshotRefreshEvent {
+
+    // Snapshot entities and membership targets refreshed
+    private final Set<Class<?>> entityClasses;
+
+    public SnapshotRefreshEvent(Set<Class<?>> entityClasses) {
+        this.entityClasses = entityClasses;
+    }
+
+    public Set<Class<?>> getEntityClasses() {
+        return entityClasses;
+    }
+}
@@ -0,0 +1,334 @@
+package com.atr.crud.filterrepository.snapshot;
+
+import com.atr.crud.filterrepository.FilterRepositoryProperties;
+import com.atr.crud.filterrepository.change.EntityChangeEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.EntityType;
+import jakarta.persistence.metamodel.ManagedType;
+import jakarta.persistence.metamodel.PluralAttribute;
+import jakarta.persistence.metamodel.SingularAttribute;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.lang.reflect.Field;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+//
+// Columnar snapshots of the entities listed in crud.search.snapshot-entities (simple names, for example User), loaded
+// before the application serves requests. Entity changes mark their ids dirty after commit and the dirty rows (and
+// membership targets) are reloaded every crud.search.snapshot-lag, or right after the commit when it is 0.
+// Membership changes are seen through the change events of the snapshot entity (the owner of the association).
+// Refresh failures keep the ids dirty for the next run and are counted as crud.search.snapshot.refresh.failures.
+// Every refresh is followed by a SnapshotRefreshEvent, so the search results read before it (maybe cached after the
+// commit invalidated them) are dropped.
+//
+@Component
+public class SnapshotRegistry implements SmartInitializingSingleton, DisposableBean {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    private final ApplicationEventPublisher publisher;
+
+    private final int batchSize;
+
+    private final Duration lag;
+
+    private final Map<Class<?>, ColumnarSnapshot> snapshots;
+
+    // Ids changed since the last refresh, by snapshot entity and membership target class
+    private final Map<Class<?>, Set<Object>> dirtyIds = new ConcurrentHashMap<>();
+
+    private final Counter refreshFailures;
+
+    // Null when there are no snapshots or the lag is 0
+    private ScheduledExecutorService refresher;
+
+    public SnapshotRegistry(EntityManagerFactory entityManagerFactory, FilterRepositoryProperties properties, MeterRegistry meterRegistry,
+                            ApplicationEventPublisher publisher) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.publisher = publisher;
+        this.batchSize = properties.getRelatedBatchSize();
+        this.lag = properties.getSnapshotLag();
+        this.refreshFailures = meterRegistry.counter("crud.search.snapshot.refresh.failures");
+
+        Map<String, EntityType<?>> entitiesByName = new HashMap<>();
+        for (EntityType<?> entityType : entityManagerFactory.getMetamodel().getEntities()) {
+            entitiesByName.put(entityType.getJavaType().getSimpleName(), entityType);
+        }
+
+        Map<Class<?>, ColumnarSnapshot> snapshots = new HashMap<>();
+        for (String entityName : properties.getSnapshotEntities()) {
+            EntityType<?> entityType = entitiesByName.get(entityName.trim());
+            if (entityType == null) {
+                throw new IllegalArgumentException("Unknown snapshot entity: " + entityName);
+            }
+            snapshots.put(entityType.getJavaType(), createSnapshot(entityType));
+        }
+        this.snapshots = Map.copyOf(snapshots);
+    }
+
+    // Null if the entity has no snapshot
+    public ColumnarSnapshot get(Class<?> entityClass) {
+        return snapshots.get(entityClass);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (snapshots.isEmpty()) {
+            return;
+        }
+
+        for (ColumnarSnapshot snapshot : snapshots.values()) {
+            for (Membership membership : snapshot.getMemberships().values()) {
+                loadTargets(snapshot, membership, null);
+            }
+            loadRows(snapshot, null);
+        }
+
+        if (!lag.isZero()) {
+            refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "snapshot-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+            refresher.scheduleWithFixedDelay(this::refreshQuietly, lag.toMillis(), lag.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEntityChange(EntityChangeEvent event) {
+        if (!isTracked(event.getEntityClass())) {
+            return;
+        }
+
+        dirtyIds.computeIfAbsent(event.getEntityClass(), entityClass -> ConcurrentHashMap.newKeySet()).add(event.getId());
+        if (refresher == null) {
+            refresh();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+
+    private boolean isTracked(Class<?> entityClass) {
+        if (snapshots.containsKey(entityClass)) {
+            return true;
+        }
+        for (ColumnarSnapshot snapshot : snapshots.values()) {
+            for (Membership membership : snapshot.getMemberships().values()) {
+                if (membership.getTargetClass().equals(entityClass)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            refreshFailures.increment();
+        }
+    }
+
+    private synchronized void refresh() {
+        Set<Class<?>> refreshed = new HashSet<>();
+        try {
+            for (Map.Entry<Class<?>, Set<Object>> dirty : dirtyIds.entrySet()) {
+                refresh(dirty.getKey(), dirty.getValue(), refreshed);
+            }
+        } finally {
+            // After the rows are applied, including the ones of a refresh failing halfway
+            if (!refreshed.isEmpty()) {
+                publisher.publishEvent(new SnapshotRefreshEvent(Set.copyOf(refreshed)));
+            }
+        }
+    }
+
+    private void refresh(Class<?> entityClass, Set<Object> dirty, Set<Class<?>> refreshed) {
+        List<Object> ids = new ArrayList<>(dirty);
+        if (ids.isEmpty()) {
+            return;
+        }
+        dirty.removeAll(ids);
+
+        refreshed.add(entityClass);
+        try {
+            for (int from = 0; from < ids.size(); from += batchSize) {
+                List<Object> idsChunk = ids.subList(from, Math.min(from + batchSize, ids.size()));
+
+                ColumnarSnapshot snapshot = snapshots.get(entityClass);
+                if (snapshot != null) {
+                    loadRows(snapshot, idsChunk);
+                }
+                for (ColumnarSnapshot ownerSnapshot : snapshots.values()) {
+                    for (Membership membership : ownerSnapshot.getMemberships().values()) {
+                        if (membership.getTargetClass().equals(entityClass)) {
+                            loadTargets(ownerSnapshot, membership, idsChunk);
+                        }
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            dirty.addAll(ids);
+            throw e;
+        }
+    }
+
+    //
+    // Rows and memberships of the ids (null for all of them). Ids not found are removed.
+    //
+    private void loadRows(ColumnarSnapshot snapshot, List<Object> ids) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            String entityName = entityManager.getMetamodel().entity(snapshot.getEntityClass()).getName();
+
+            List<Object[]> rows = new ArrayList<>();
+            for (Tuple tuple : query(entityManager, "select " + select("e", snapshot.getProperties()) + " from " + entityName + " e", ids)) {
+                rows.add(tuple.toArray());
+            }
+
+            Map<String, Map<Object, List<Object>>> targetIdsByAssociation = new LinkedHashMap<>();
+            for (String association : snapshot.getMemberships().keySet()) {
+                Map<Object, List<Object>> targetIds = new HashMap<>();
+                String jpql = "select e.id, t.id from " + entityName + " e join e." + association + " t";
+                for (Tuple tuple : query(entityManager, jpql, ids)) {
+                    targetIds.computeIfAbsent(tuple.get(0), id -> new ArrayList<>()).add(tuple.get(1));
+                }
+                targetIdsByAssociation.put(association, targetIds);
+            }
+
+            snapshot.write(() -> {
+                Set<Object> found = new HashSet<>();
+                for (Object[] row : rows) {
+                    snapshot.putRow(row);
+                    found.add(row[0]);
+                }
+                if (ids != null) {
+                    for (Object id : ids) {
+                        if (!found.contains(id)) {
+                            snapshot.removeRow(id);
+                        }
+                    }
+                }
+                targetIdsByAssociation.forEach((association, targetIds) -> {
+                    for (Object id : found) {
+                        snapshot.putMemberships(association, id, targetIds.getOrDefault(id, List.of()));
+                    }
+                });
+            });
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    private void loadTargets(ColumnarSnapshot snapshot, Membership membership, List<Object> ids) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            String targetName = entityManager.getMetamodel().entity(membership.getTargetClass()).getName();
+            String jpql = "select " + select("e", membership.getTargetProperties()) + " from " + targetName + " e";
+            List<Tuple> targets = query(entityManager, jpql, ids);
+
+            snapshot.write(() -> {
+                Set<Object> found = new HashSet<>();
+                for (Tuple target : targets) {
+                    membership.putTarget(target.toArray());
+                    found.add(target.get(0));
+                }
+                if (ids != null) {
+                    for (Object id : ids) {
+                        if (!found.contains(id)) {
+                            membership.removeTarget(id);
+                        }
+                    }
+                }
+            });
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    private static List<Tuple> query(EntityManager entityManager, String jpql, List<Object> ids) {
+        TypedQuery<Tuple> query = entityManager.createQuery(ids == null ? jpql : jpql + " where e.id in :ids", Tuple.class);
+        if (ids != null) {
+            query.setParameter("ids", ids);
+        }
+        return query.getResultList();
+    }
+
+    private static String select(String alias, List<String> properties) {
+        List<String> selections = new ArrayList<>();
+        for (String property : properties) {
+            selections.add(alias + "." + property);
+        }
+        return String.join(", ", selections);
+    }
+
+    private ColumnarSnapshot createSnapshot(EntityType<?> entityType) {
+        Class<?> idType = entityType.getAttribute("id").getJavaType();
+        if (!idType.equals(String.class) && NumberColumn.Codec.of(idType) == null) {
+            throw new IllegalArgumentException("Unsupported snapshot id type: " + entityType.getName() + "." + idType.getSimpleName());
+        }
+
+        Map<String, SnapshotColumn> columns = new LinkedHashMap<>();
+        List<String> properties = columnProperties(entityType);
+        for (String property : properties) {
+            Class<?> javaType = entityType.getAttribute(property).getJavaType();
+            columns.put(property, javaType.equals(String.class) ? new DictionaryColumn() : new NumberColumn(NumberColumn.Codec.of(javaType)));
+        }
+
+        Map<String, Membership> memberships = new LinkedHashMap<>();
+        for (Attribute<?, ?> attribute : entityType.getAttributes()) {
+            if (attribute.getPersistentAttributeType() == Attribute.PersistentAttributeType.MANY_TO_MANY) {
+                EntityType<?> targetType = entityManagerFactory.getMetamodel().entity(((PluralAttribute<?, ?, ?>) attribute).getElementType().getJavaType());
+                memberships.put(attribute.getName(), new Membership(targetType.getJavaType(), columnProperties(targetType)));
+            }
+        }
+
+        return new ColumnarSnapshot(entityType.getJavaType(), properties, columns, memberships);
+    }
+
+    // Id and the basic properties of a supported type (String, Integer, Long, OffsetDateTime), without LOBs
+    private static List<String> columnProperties(ManagedType<?> managedType) {
+        List<String> properties = new ArrayList<>();
+        properties.add("id");
+        for (Attribute<?, ?> attribute : managedType.getAttributes()) {
+            if (!(attribute instanceof SingularAttribute<?, ?>) || attribute.isAssociation() || attribute.getName().equals("id")) {
+                continue;
+            }
+            if (attribute.getJavaMember() instanceof Field field && field.isAnnotationPresent(Lob.class)) {
+                continue;
+            }
+            if (attribute.getJavaType().equals(String.class) || NumberColumn.Codec.of(attribute.getJavaType()) != null) {
+                properties.add(attribute.getName());
+            }
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,86 @@
+package com.atr.crud;
+
+import com.atr.crud.controller.RoleDTO;
+import com.atr.crud.controller.TicketDTO;
+import com.atr.crud.controller.UserDTO;
+import com.atr.crud.domain.Role;
+import com.atr.crud.domain.Ticket;
+import com.atr.crud.domain.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+//
+// Column selection of the cached mapping plans: root fields, nested collection columns and the caller column list
+//
+class CrudMapperTests {
+
+	private final CrudMapper<User, UserDTO> mapper = new CrudMapper<>();
+
+	@Test
+	void mapsEveryFieldWithoutColumns() {
+		UserDTO dto = map(user(), null);
+
+		assertThat(dto.getId()).isEqualTo(1L);
+		assertThat(dto.getName()).isEqualTo("Anna");
+		assertThat(dto.getAge()).isEqualTo(30);
+		assertThat(dto.getRoles()).extracting(RoleDTO::getId, RoleDTO::getCode).containsExactly(tuple(10L, "admin"));
+		// TicketDTO.user can not hold a User, it is left out
+		assertThat(dto.getTickets()).extracting(TicketDTO::getName, TicketDTO::getUser).containsExactly(tuple("first", null));
+	}
+
+	@Test
+	void mapsOnlyTheSelectedColumns() {
+		UserDTO dto = map(user(), List.of("name", "roles.code"));
+
+		assertThat(dto.getName()).isEqualTo("Anna");
+		assertThat(dto.getId()).isNull();
+		assertThat(dto.getAge()).isNull();
+		// Unselected fields are cleared, collections included
+		assertThat(dto.getTickets()).isNull();
+		assertThat(dto.getRoles()).extracting(RoleDTO::getId, RoleDTO::getCode).containsExactly(tuple(null, "admin"));
+	}
+
+	@Test
+	void keepsThePlanOfAColumnListChangedAfterwards() {
+		List<String> columns = new ArrayList<>(List.of("name"));
+		assertThat(map(user(), columns).getAge()).isNull();
+
+		columns.set(0, "age");
+		UserDTO byAge = map(user(), columns);
+		assertThat(byAge.getAge()).isEqualTo(30);
+		assertThat(byAge.getName()).isNull();
+
+		UserDTO byName = map(user(), List.of("name"));
+		assertThat(byName.getName()).isEqualTo("Anna");
+		assertThat(byName.getAge()).isNull();
+	}
+
+	private UserDTO map(User user, List<String> columns) {
+		UserDTO dto = new UserDTO();
+		mapper.map(user, dto, columns);
+		return dto;
+	}
+
+	private static User user() {
+		User user = new User();
+		user.setId(1L);
+		user.setName("Anna");
+		user.setAge(30);
+
+		Role role = new Role();
+		role.setId(10L);
+		role.setCode("admin");
+		user.addRole(role);
+
+		Ticket ticket = new Ticket();
+		ticket.setName("first");
+		user.addTicket(ticket);
+		return user;
+	}
+
+}
@@ -0,0 +1,88 @@
+package com.atr.crud;
+
+import com.atr.crud.controller.RoleDTO;
+import com.atr.crud.controller.TicketDTO;
+import com.atr.crud.controller.UserDTO;
+import com.atr.crud.domain.Role;
+import com.atr.crud.domain.Ticket;
+import com.atr.crud.domain.User;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//
+// Cyclic and shared graphs (User.tickets and Ticket.user) mapped once per object, and the maxDepth cut
+//
+class MapperTests {
+
+	@Test
+	void mapsCyclesToTheSameInstance() {
+		User user = user();
+
+		UserDTO dto = Mapper.map(user, UserDTO.class);
+
+		assertThat(dto.getName()).isEqualTo("Anna");
+		assertThat(dto.getTickets()).extracting(TicketDTO::getName).containsExactly("first", "second");
+		for (TicketDTO ticket : dto.getTickets()) {
+			assertThat(ticket.getUser()).isSameAs(dto);
+		}
+		assertThat(dto.getRoles()).extracting(RoleDTO::getCode).containsExactly("admin");
+	}
+
+	@Test
+	void mapsSharedObjectsOnce() {
+		User user = user();
+		Ticket first = user.getTickets().get(0);
+		// The same ticket twice in the list
+		user.getTickets().add(first);
+
+		UserDTO dto = Mapper.map(user, UserDTO.class);
+
+		assertThat(dto.getTickets()).hasSize(3);
+		assertThat(dto.getTickets().get(2)).isSameAs(dto.getTickets().get(0));
+	}
+
+	@Test
+	void stopsAtMaxDepth() {
+		UserDTO root = Mapper.map(user(), UserDTO.class, 0);
+		assertThat(root.getName()).isEqualTo("Anna");
+		assertThat(root.getTickets()).isEmpty();
+		assertThat(root.getRoles()).isEmpty();
+
+		// Ticket.user is the root, already mapped: referenced even at the last level
+		UserDTO oneLevel = Mapper.map(user(), UserDTO.class, 1);
+		assertThat(oneLevel.getTickets()).hasSize(2);
+		assertThat(oneLevel.getTickets().get(0).getUser()).isSameAs(oneLevel);
+		assertThat(oneLevel.getRoles()).hasSize(1);
+	}
+
+	@Test
+	void mapsFromTheTicketSide() {
+		Ticket ticket = user().getTickets().get(1);
+
+		TicketDTO dto = Mapper.map(ticket, TicketDTO.class);
+
+		assertThat(dto.getName()).isEqualTo("second");
+		assertThat(dto.getUser().getName()).isEqualTo("Anna");
+		assertThat(dto.getUser().getTickets().get(1)).isSameAs(dto);
+	}
+
+	private static User user() {
+		User user = new User();
+		user.setId(1L);
+		user.setName("Anna");
+
+		Role role = new Role();
+		role.setId(10L);
+		role.setCode("admin");
+		user.addRole(role);
+
+		for (String name : new String[] {"first", "second"}) {
+			Ticket ticket = new Ticket();
+			ticket.setName(name);
+			user.addTicket(ticket);
+		}
+		return user;
+	}
+
+}
@@ -0,0 +1,110 @@
+package com.atr.crud.controller;
+
+import com.atr.crud.repository.UserRepository;
+import jakarta.servlet.ServletException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//
+// Bulk inserts in chunks of crud.search.bulk-chunk-size users (3 here): the same users from a JSON array or from
+// newline delimited JSON, a last chunk only for the remaining users, and a failing chunk rolled back on its own, the
+// chunks before it kept
+//
+@SpringBootTest(properties = "crud.search.bulk-chunk-size=3")
+@AutoConfigureMockMvc
+class BulkInsertTests {
+
+	private static final String NDJSON = "application/x-ndjson";
+
+	@Autowired
+	UserRepository userRepository;
+
+	@Autowired
+	MockMvc mockMvc;
+
+	@ParameterizedTest
+	@CsvSource({
+			"application/json,    1, 1",
+			"application/json,    3, 1",
+			"application/json,    7, 3",
+			"application/x-ndjson, 1, 1",
+			"application/x-ndjson, 6, 2",
+			"application/x-ndjson, 7, 3",
+	})
+	void insertsInChunks(String contentType, int count, int chunks) throws Exception {
+		String type = "bulk-test-" + (contentType.equals(NDJSON) ? "ndjson-" : "json-") + count;
+		List<String> users = users(type, count);
+
+		mockMvc.perform(post("/api/users/bulk").contentType(contentType).content(body(contentType, users)))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.rows").value(count))
+				.andExpect(jsonPath("$.chunks").value(chunks));
+
+		assertThat(userRepository.count("type==" + type)).isEqualTo(count);
+		// Tickets saved with their user
+		List<UserDTO> saved = userRepository.searchAs(UserDTO.class, List.of("name", "tickets"), "type==" + type, 0, 20, "id", "asc");
+		assertThat(saved).extracting(UserDTO::getName)
+				.containsExactlyElementsOf(names(type, count));
+		assertThat(saved).allSatisfy(user -> assertThat(user.getTickets()).extracting(TicketDTO::getName)
+				.containsExactly(user.getName() + "-ticket"));
+	}
+
+	@Test
+	void rollsBackTheFailingChunkOnly() {
+		String type = "bulk-failure-test";
+		List<String> users = users(type, 7);
+		// Too long for the name column, in the second chunk
+		users.set(4, user(type, "x".repeat(300)));
+
+		assertThatThrownBy(() -> mockMvc.perform(post("/api/users/bulk").contentType(MediaType.APPLICATION_JSON)
+				.content(body(MediaType.APPLICATION_JSON_VALUE, users))))
+				.isInstanceOf(ServletException.class);
+
+		List<UserDTO> saved = userRepository.searchAs(UserDTO.class, List.of("name"), "type==" + type, 0, 20, "id", "asc");
+		assertThat(saved).extracting(UserDTO::getName)
+				.containsExactlyElementsOf(names(type, 3));
+	}
+
+	private static List<String> users(String type, int count) {
+		List<String> users = new ArrayList<>();
+		for (String name : names(type, count)) {
+			users.add(user(type, name));
+		}
+		return users;
+	}
+
+	private static String user(String type, String name) {
+		return "{\"type\":\"" + type + "\",\"name\":\"" + name + "\",\"tickets\":[{\"name\":\"" + name + "-ticket\"}]}";
+	}
+
+	private static List<String> names(String type, int count) {
+		List<String> names = new ArrayList<>();
+		for (int index = 0; index < count; index++) {
+			names.add(type + "-" + index);
+		}
+		return names;
+	}
+
+	private static String body(String contentType, List<String> users) {
+		return contentType.equals(NDJSON)
+				? users.stream().collect(Collectors.joining("\n", "", "\n"))
+				: users.stream().collect(Collectors.joining(",", "[", "]"));
+	}
+
+}
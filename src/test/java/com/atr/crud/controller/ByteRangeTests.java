@@ -0,0 +1,50 @@
+package com.atr.crud.controller;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//
+// Range headers parsed by hand: bounded, open and suffix ranges resolved against a text of 10 bytes, and the malformed
+// headers (or with several ranges) rejected
+//
+class ByteRangeTests {
+
+	@ParameterizedTest
+	@CsvSource(delimiter = '|', value = {
+			"bytes=0-4          | true  | 0  | 4",
+			"bytes=4-100        | true  | 4  | 9",
+			"bytes=9-9          | true  | 9  | 9",
+			"' Bytes = 2 - 3 '  | true  | 2  | 3",
+			"bytes=5-           | false | 5  | 9",
+			"bytes=12-          | false | 12 | 9",
+			"bytes=-3           | false | 7  | 9",
+			"bytes=-30          | false | 0  | 9",
+			"bytes=-0           | false | 10 | 9",
+	})
+	void resolvesTheRange(String header, boolean bounded, long first, long last) {
+		ByteRange range = ByteRange.parse(header);
+
+		assertThat(range).isNotNull();
+		assertThat(range.isBounded()).isEqualTo(bounded);
+		assertThat(range.first(10)).isEqualTo(first);
+		assertThat(range.last(10)).isEqualTo(last);
+	}
+
+	@ParameterizedTest
+	@CsvSource({"bytes=0-0, 1", "bytes=3-7, 8", "bytes=0-, 9223372036854775807", "bytes=-5, 9223372036854775807",
+			"bytes=0-9223372036854775807, 9223372036854775807"})
+	void measuresUpToOnePastTheLastByte(String header, long limit) {
+		assertThat(ByteRange.parse(header).measureLimit()).isEqualTo(limit);
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"", "bytes=", "bytes=-", "bytes=3-1", "bytes=a-b", "bytes=+1-2", "bytes=0-1,3-4", "items=0-1",
+			"bytes=99999999999999999999-", "bytes 0-1"})
+	void rejectsMalformedHeaders(String header) {
+		assertThat(ByteRange.parse(header)).isNull();
+	}
+
+}
@@ -0,0 +1,78 @@
+package com.atr.crud.controller;
+
+import com.atr.crud.domain.User;
+import com.atr.crud.repository.UserRepository;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+//
+// Byte ranges of a description of 13 UTF-8 bytes: bounded ranges within the text (length '*') or past its end, open and
+// suffix ranges, unsatisfiable ranges, and malformed or multiple ranges answered with the whole text
+//
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class UserDescriptionTests {
+
+	private static final String DESCRIPTION = "héllo wörld";
+
+	private static final byte[] BYTES = DESCRIPTION.getBytes(StandardCharsets.UTF_8);
+
+	@Autowired
+	UserRepository userRepository;
+
+	@Autowired
+	MockMvc mockMvc;
+
+	private Long id;
+
+	@BeforeAll
+	void createUser() {
+		User user = new User();
+		user.setType("description-test");
+		user.setName("described");
+		user.setDescription(DESCRIPTION);
+		id = userRepository.save(user).getId();
+	}
+
+	@ParameterizedTest
+	@CsvSource(delimiter = '|', nullValues = "none", value = {
+			"none           | 200 | none           | 0  | 12",
+			"bytes=0-4      | 206 | bytes 0-4/*    | 0  | 4",
+			"bytes=2-100    | 206 | bytes 2-12/13  | 2  | 12",
+			"bytes=7-       | 206 | bytes 7-12/13  | 7  | 12",
+			"bytes=-3       | 206 | bytes 10-12/13 | 10 | 12",
+			"bytes=-30      | 206 | bytes 0-12/13  | 0  | 12",
+			"bytes=13-      | 416 | bytes */13     | 0  | -1",
+			"bytes=20-30    | 416 | bytes */13     | 0  | -1",
+			"bytes=5-2      | 200 | none           | 0  | 12",
+			"bytes=0-1,3-4  | 200 | none           | 0  | 12",
+			"bytes=x-       | 200 | none           | 0  | 12",
+	})
+	void answersTheRange(String range, int status, String contentRange, int first, int last) throws Exception {
+		MockHttpServletResponse response = mockMvc.perform(range == null
+						? get("/api/users/{id}/description", id)
+						: get("/api/users/{id}/description", id).header(HttpHeaders.RANGE, range))
+				.andReturn()
+				.getResponse();
+
+		assertThat(response.getStatus()).isEqualTo(status);
+		assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo(contentRange);
+		assertThat(response.getContentAsByteArray()).isEqualTo(Arrays.copyOfRange(BYTES, first, last + 1));
+	}
+
+}
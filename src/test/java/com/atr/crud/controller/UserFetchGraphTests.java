@@ -0,0 +1,97 @@
+package com.atr.crud.controller;
+
+import com.atr.crud.domain.Role;
+import com.atr.crud.domain.Ticket;
+import com.atr.crud.domain.User;
+import com.atr.crud.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Persistence;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//
+// One user by id with the requested columns: two collections come back whole (one joined by the fetch graph, the other
+// loaded on its own, no row repeated), and the associations not requested are neither loaded nor written
+//
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class UserFetchGraphTests {
+
+	@Autowired
+	UserRepository userRepository;
+
+	@Autowired
+	EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	MockMvc mockMvc;
+
+	private Long id;
+
+	@BeforeAll
+	void createUser() {
+		User user = new User();
+		user.setType("fetch-graph-test");
+		user.setName("graph");
+		for (String code : new String[] {"graph-admin", "graph-guest"}) {
+			Role role = new Role();
+			role.setCode(code);
+			user.getRoles().add(role);
+		}
+		for (int index = 0; index < 3; index++) {
+			Ticket ticket = new Ticket();
+			ticket.setName("graph-ticket" + index);
+			user.addTicket(ticket);
+		}
+		id = userRepository.save(user).getId();
+	}
+
+	@Test
+	void returnsBothRequestedCollections() throws Exception {
+		mockMvc.perform(get("/api/users/{id}", id).param("columns", "name,roles,tickets"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.name").value("graph"))
+				.andExpect(jsonPath("$.roles[*].code").value(containsInAnyOrder("graph-admin", "graph-guest")))
+				.andExpect(jsonPath("$.tickets[*].name").value(containsInAnyOrder("graph-ticket0", "graph-ticket1", "graph-ticket2")));
+	}
+
+	@Test
+	void neitherLoadsNorWritesTheOtherAssociations() throws Exception {
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		long collectionFetches = statistics.getCollectionFetchCount();
+
+		mockMvc.perform(get("/api/users/{id}", id).param("columns", "name"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.name").value("graph"))
+				.andExpect(jsonPath("$.roles").doesNotExist())
+				.andExpect(jsonPath("$.tickets").doesNotExist());
+
+		assertThat(statistics.getCollectionFetchCount()).isEqualTo(collectionFetches);
+	}
+
+	@Test
+	void leavesTheOtherAssociationsUnloaded() {
+		User user = userRepository.findById(id, List.of("name", "roles")).orElseThrow();
+
+		assertThat(Persistence.getPersistenceUtil().isLoaded(user, "roles")).isTrue();
+		assertThat(Persistence.getPersistenceUtil().isLoaded(user, "tickets")).isFalse();
+		assertThat(user.getRoles()).extracting(Role::getCode).containsExactlyInAnyOrder("graph-admin", "graph-guest");
+	}
+
+}
@@ -0,0 +1,77 @@
+package com.atr.crud.controller;
+
+import com.atr.crud.domain.User;
+import com.atr.crud.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//
+// Offset listings through the result cache when it is enabled: a repeated page is written without any query
+//
+@SpringBootTest(properties = {"crud.search.result-cache-enabled=true", "spring.jpa.properties.hibernate.generate_statistics=true"})
+@AutoConfigureMockMvc
+class UserListingCacheTests {
+
+	@Autowired
+	UserRepository userRepository;
+
+	@Autowired
+	EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	MockMvc mockMvc;
+
+	@Test
+	void repeatsAListingFromTheCache() throws Exception {
+		for (int index = 0; index < 3; index++) {
+			User user = new User();
+			user.setType("listing-cache-test");
+			user.setName("listing" + index);
+			userRepository.save(user);
+		}
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+		String first = listing();
+		long statements = statistics.getPrepareStatementCount();
+		String second = listing();
+
+		assertThat(first).contains("listing0", "listing1", "listing2");
+		assertThat(second).isEqualTo(first);
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(statements);
+	}
+
+	@Test
+	void listsAChangeAfterItsCommit() throws Exception {
+		User user = new User();
+		user.setType("listing-change-test");
+		user.setName("before");
+		user = userRepository.save(user);
+		assertThat(listing("listing-change-test")).contains("before");
+
+		user.setName("after");
+		userRepository.save(user);
+
+		assertThat(listing("listing-change-test")).contains("after").doesNotContain("before");
+	}
+
+	private String listing() throws Exception {
+		return listing("listing-cache-test");
+	}
+
+	private String listing(String type) throws Exception {
+		return mockMvc.perform(get("/api/users/").param("q", "type==" + type).param("columns", "name,roles"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+	}
+
+}
@@ -0,0 +1,113 @@
+package com.atr.crud.controller;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//
+// Lengths and byte ranges against String.getBytes(UTF_8): multibyte characters, surrogate pairs across the 8192
+// characters chunks, unpaired surrogates ('?') and reading stopped at the limit or at the last byte
+//
+class Utf8RangesTests {
+
+	static List<String> texts() {
+		return List.of(
+				"",
+				"plain ascii",
+				"é ñ € 😀 中文",
+				"x".repeat(8191) + "😀" + "é".repeat(100),
+				"€".repeat(8191) + "😀",
+				"unpaired high \uD83D at the middle",
+				"unpaired low \uDE00 at the middle",
+				"trailing high \uD83D",
+				"x".repeat(8191) + "\uD83D",
+				"x".repeat(8191) + "\uD83D" + "y"
+		);
+	}
+
+	@ParameterizedTest
+	@MethodSource("texts")
+	void measuresTheEncodedLength(String text) throws IOException {
+		assertThat(Utf8Ranges.length(new StringReader(text), Long.MAX_VALUE)).isEqualTo(bytes(text).length);
+	}
+
+	@ParameterizedTest
+	@MethodSource("texts")
+	void writesTheBytesOfTheRange(String text) throws IOException {
+		byte[] bytes = bytes(text);
+		long[][] ranges = {{0, 0}, {0, 4}, {1, 2}, {3, 5}, {0, bytes.length - 1}, {8190, 8195}, {bytes.length - 3, bytes.length - 1}, {5, 100_000}};
+		for (long[] range : ranges) {
+			long first = Math.max(0, range[0]);
+			long last = range[1];
+			if (first >= bytes.length || last < first) {
+				continue;
+			}
+
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			Utf8Ranges.write(new StringReader(text), output, first, last);
+			assertThat(output.toByteArray())
+					.as("bytes %d-%d", first, last)
+					.isEqualTo(Arrays.copyOfRange(bytes, (int) first, (int) Math.min(last + 1, bytes.length)));
+		}
+	}
+
+	@Test
+	void stopsMeasuringAtTheLimit() throws IOException {
+		String text = "é".repeat(100_000);
+
+		CountingReader reader = new CountingReader(text);
+		assertThat(Utf8Ranges.length(reader, 10)).isGreaterThanOrEqualTo(10);
+		assertThat(reader.read).isLessThanOrEqualTo(8192);
+
+		assertThat(Utf8Ranges.length(new StringReader(text), 200_001)).isEqualTo(200_000);
+	}
+
+	@Test
+	void stopsWritingAfterTheLastByte() throws IOException {
+		CountingReader reader = new CountingReader("x".repeat(100_000));
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+		Utf8Ranges.write(reader, output, 10, 19);
+
+		assertThat(output.toString(StandardCharsets.UTF_8)).isEqualTo("x".repeat(10));
+		assertThat(reader.read).isLessThanOrEqualTo(8192);
+	}
+
+	private static byte[] bytes(String text) {
+		return text.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static class CountingReader extends Reader {
+
+		private final StringReader reader;
+
+		private long read;
+
+		CountingReader(String text) {
+			this.reader = new StringReader(text);
+		}
+
+		@Override
+		public int read(char[] buffer, int offset, int length) throws IOException {
+			int count = reader.read(buffer, offset, length);
+			read += Math.max(count, 0);
+			return count;
+		}
+
+		@Override
+		public void close() {
+			reader.close();
+		}
+	}
+
+}
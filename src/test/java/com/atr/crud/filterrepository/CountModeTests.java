@@ -0,0 +1,92 @@
+package com.atr.crud.filterrepository;
+
+import com.atr.crud.domain.User;
+import com.atr.crud.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "crud.search.count-estimate-threshold=10")
+@AutoConfigureMockMvc
+class CountModeTests {
+
+	@Autowired
+	UserRepository userRepository;
+
+	@Autowired
+	MockMvc mockMvc;
+
+	@Test
+	void exactCountsEveryMatchingRow() {
+		createUsers("count-exact", 12);
+
+		SearchCount count = userRepository.count("type==count-exact", CountMode.EXACT);
+
+		assertThat(count.getValue()).isEqualTo(12);
+		assertThat(count.isLowerBound()).isFalse();
+	}
+
+	@Test
+	void cachedKeepsTheCountOfTheFilter() {
+		createUsers("count-cached", 3);
+		assertThat(userRepository.count("type==count-cached", CountMode.CACHED).getValue()).isEqualTo(3);
+
+		createUsers("count-cached", 2);
+
+		assertThat(userRepository.count("type==count-cached", CountMode.CACHED).getValue()).isEqualTo(3);
+		assertThat(userRepository.count(" type==count-cached ", CountMode.CACHED).getValue()).isEqualTo(3);
+		assertThat(userRepository.count("type==count-cached", CountMode.EXACT).getValue()).isEqualTo(5);
+	}
+
+	@Test
+	void estimatedStopsAtTheThreshold() {
+		createUsers("count-estimated", 7);
+		SearchCount below = userRepository.count("type==count-estimated", CountMode.ESTIMATED);
+
+		createUsers("count-estimated", 7);
+		SearchCount above = userRepository.count("type==count-estimated", CountMode.ESTIMATED);
+
+		assertThat(below.getValue()).isEqualTo(7);
+		assertThat(below.isLowerBound()).isFalse();
+		assertThat(above.getValue()).isEqualTo(10);
+		assertThat(above.isLowerBound()).isTrue();
+		assertThat(above).hasToString("10+");
+	}
+
+	@Test
+	void parsesTheModeParameter() throws Exception {
+		createUsers("count-parameter", 2);
+
+		mockMvc.perform(get("/api/tickets/").param("total", "Exact"))
+				.andExpect(status().isOk());
+		mockMvc.perform(get("/api/users/").param("q", "type==count-parameter").param("total", "estimated"))
+				.andExpect(status().isOk())
+				.andExpect(header().string("X-Total-Count", "2"));
+		mockMvc.perform(get("/api/users/").param("total", "bogus"))
+				.andExpect(status().isBadRequest());
+		mockMvc.perform(get("/api/tickets/").param("cursor", "").param("total", "bogus"))
+				.andExpect(status().isBadRequest());
+	}
+
+	private void createUsers(String type, int count) {
+		List<User> users = new ArrayList<>();
+		for (int index = 0; index < count; index++) {
+			User user = new User();
+			user.setType(type);
+			user.setName(type + index);
+			users.add(user);
+		}
+		userRepository.saveAll(users);
+	}
+
+}
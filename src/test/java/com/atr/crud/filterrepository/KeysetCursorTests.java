@@ -0,0 +1,66 @@
+package com.atr.crud.filterrepository;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeysetCursorTests {
+
+	@Test
+	void decodesWhatItEncodes() {
+		OffsetDateTime createdAt = OffsetDateTime.of(2023, 7, 17, 10, 30, 0, 0, ZoneOffset.ofHours(2));
+		String cursor = new KeysetCursor("createdAt", "desc", createdAt, 42L).encode();
+
+		KeysetCursor decoded = KeysetCursor.decode(cursor, "createdAt", "desc", OffsetDateTime.class, Long.class);
+
+		assertThat(decoded.getSortValue()).isEqualTo(createdAt);
+		assertThat(decoded.getId()).isEqualTo(42L);
+	}
+
+	@Test
+	void keepsNullSortValuesAndSeparatorsInValues() {
+		String nullCursor = new KeysetCursor("nickname", "asc", null, 7L).encode();
+		String dottedCursor = new KeysetCursor("nickname", "asc", "a.b~c", 8L).encode();
+
+		assertThat(KeysetCursor.decode(nullCursor, "nickname", "asc", String.class, Long.class).getSortValue()).isNull();
+		assertThat(KeysetCursor.decode(dottedCursor, "nickname", "asc", String.class, Long.class).getSortValue()).isEqualTo("a.b~c");
+	}
+
+	@Test
+	void rejectsCursorsOfAnotherSort() {
+		String cursor = new KeysetCursor("age", "asc", 41, 1L).encode();
+
+		assertThatThrownBy(() -> KeysetCursor.decode(cursor, "age", "desc", Integer.class, Long.class))
+				.isInstanceOf(InvalidCursorException.class);
+		assertThatThrownBy(() -> KeysetCursor.decode(cursor, "name", "asc", String.class, Long.class))
+				.isInstanceOf(InvalidCursorException.class);
+	}
+
+	@Test
+	void rejectsMalformedAndTamperedCursors() {
+		String cursor = new KeysetCursor("age", "asc", 41, 1L).encode();
+		String[] parts = cursor.split("\\.");
+		String tampered = String.join(".", parts[0], parts[1], "bm90LWEtbnVtYmVy", parts[3]);
+
+		assertThatThrownBy(() -> KeysetCursor.decode("garbage", "age", "asc", Integer.class, Long.class))
+				.isInstanceOf(InvalidCursorException.class);
+		assertThatThrownBy(() -> KeysetCursor.decode("a.b.c.d", "age", "asc", Integer.class, Long.class))
+				.isInstanceOf(InvalidCursorException.class);
+		assertThatThrownBy(() -> KeysetCursor.decode(tampered, "age", "asc", Integer.class, Long.class))
+				.isInstanceOf(InvalidCursorException.class);
+	}
+
+	@Test
+	void rejectsUnsupportedSortTypes() {
+		String cursor = new KeysetCursor("score", "asc", 4.5, 1L).encode();
+
+		assertThat(KeysetCursor.supports(Double.class)).isFalse();
+		assertThatThrownBy(() -> KeysetCursor.decode(cursor, "score", "asc", Double.class, Long.class))
+				.isInstanceOf(InvalidCursorException.class);
+	}
+
+}
@@ -0,0 +1,102 @@
+package com.atr.crud.filterrepository;
+
+import com.atr.crud.controller.UserDTO;
+import com.atr.crud.domain.User;
+import com.atr.crud.repository.UserRepository;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+//
+// Keyset pages (seek predicate) against the same order computed in memory: sort column with ties and nulls, then id
+//
+@SpringBootTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class KeysetPaginationTests {
+
+	private static final String FILTER = "type==keyset-test";
+
+	@Autowired
+	UserRepository userRepository;
+
+	private List<User> users;
+
+	@BeforeAll
+	void createUsers() {
+		List<User> users = new ArrayList<>();
+		for (int index = 0; index < 23; index++) {
+			User user = new User();
+			user.setType("keyset-test");
+			user.setName("keyset" + index);
+			// Ties and nulls
+			user.setAge(index % 4 == 0 ? null : index % 5);
+			users.add(user);
+		}
+		this.users = userRepository.saveAll(users);
+	}
+
+	@Test
+	void pagesBySortColumnAscending() {
+		Comparator<User> order = Comparator.comparing(User::getAge, Comparator.nullsFirst(Comparator.naturalOrder()))
+				.thenComparing(User::getId);
+
+		assertThat(pageIds("age", "asc", 4)).isEqualTo(expectedIds(order));
+	}
+
+	@Test
+	void pagesBySortColumnDescending() {
+		Comparator<User> order = Comparator.comparing(User::getAge, Comparator.nullsFirst(Comparator.naturalOrder()))
+				.thenComparing(User::getId)
+				.reversed();
+
+		assertThat(pageIds("age", "desc", 4)).isEqualTo(expectedIds(order));
+	}
+
+	@Test
+	void pagesById() {
+		assertThat(pageIds("id", "desc", 5)).isEqualTo(expectedIds(Comparator.comparing(User::getId).reversed()));
+	}
+
+	@Test
+	void rejectsUnknownSortColumns() {
+		// Wrapped by the repository exception translation, still answered with 400 through the cause
+		assertThatThrownBy(() -> userRepository.searchAfter(UserDTO.class, List.of("name"), FILTER, "", 5, "unknown", "asc"))
+				.isInstanceOf(InvalidDataAccessApiUsageException.class)
+				.hasCauseInstanceOf(InvalidCursorException.class);
+	}
+
+	@Test
+	void rejectsSortColumnsACursorCanNotCarry() {
+		assertThatThrownBy(() -> userRepository.searchAfter(UserDTO.class, List.of("name"), FILTER, "", 5, "roles", "asc"))
+				.isInstanceOf(InvalidDataAccessApiUsageException.class)
+				.hasCauseInstanceOf(InvalidCursorException.class);
+	}
+
+	// Every page following the cursors, until there is none
+	private List<Long> pageIds(String sortColumn, String sortDirection, int pageSize) {
+		List<Long> ids = new ArrayList<>();
+		String cursor = "";
+		do {
+			SearchPage<UserDTO> page = userRepository.searchAfter(UserDTO.class, List.of("name", "age"), FILTER, cursor, pageSize, sortColumn, sortDirection);
+			assertThat(page.getContent()).hasSizeLessThanOrEqualTo(pageSize);
+			page.getContent().forEach(user -> ids.add(user.getId()));
+			cursor = page.getNextCursor();
+		} while (cursor != null);
+		return ids;
+	}
+
+	private List<Long> expectedIds(Comparator<User> order) {
+		return users.stream().sorted(order).map(User::getId).toList();
+	}
+
+}
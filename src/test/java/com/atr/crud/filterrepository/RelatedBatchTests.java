@@ -0,0 +1,109 @@
+package com.atr.crud.filterrepository;
+
+import com.atr.crud.controller.RoleDTO;
+import com.atr.crud.controller.TicketDTO;
+import com.atr.crud.controller.UserDTO;
+import com.atr.crud.domain.Role;
+import com.atr.crud.domain.Ticket;
+import com.atr.crud.domain.User;
+import com.atr.crud.repository.UserRepository;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//
+// Relations loaded by IN chunks of crud.search.related-batch-size root ids (4 here, 11 roots): every root gets its own
+// related rows whatever its chunk, and the roots without any get empty collections
+//
+@SpringBootTest(properties = "crud.search.related-batch-size=4")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class RelatedBatchTests {
+
+	private static final String FILTER = "type==related-batch-test";
+
+	private static final List<String> COLUMNS = List.of("name", "roles", "tickets");
+
+	@Autowired
+	UserRepository userRepository;
+
+	// Roles and tickets by user name
+	private final Map<String, String> expected = new LinkedHashMap<>();
+
+	@BeforeAll
+	void createUsers() {
+		Role admin = new Role();
+		admin.setCode("admin");
+		List<User> users = new ArrayList<>();
+		for (int index = 0; index < 11; index++) {
+			User user = new User();
+			user.setType("related-batch-test");
+			user.setName("batch" + index);
+			if (index % 2 == 0) {
+				user.getRoles().add(admin);
+			}
+			for (int ticketIndex = 0; ticketIndex < index % 3; ticketIndex++) {
+				Ticket ticket = new Ticket();
+				ticket.setName("ticket" + index + "-" + ticketIndex);
+				user.addTicket(ticket);
+			}
+			users.add(user);
+			expected.put(user.getName(), describe(user.getRoles().stream().map(Role::getCode), user.getTickets().stream().map(Ticket::getName)));
+		}
+		userRepository.saveAll(users);
+	}
+
+	@Test
+	void stitchesDtosAcrossChunks() {
+		List<UserDTO> users = userRepository.searchAs(UserDTO.class, COLUMNS, FILTER, 0, 20, "id", "asc");
+
+		Map<String, String> found = new LinkedHashMap<>();
+		for (UserDTO user : users) {
+			assertThat(user.getRoles()).isNotNull();
+			assertThat(user.getTickets()).isNotNull();
+			found.put(user.getName(), describe(user.getRoles().stream().map(RoleDTO::getCode), user.getTickets().stream().map(TicketDTO::getName)));
+		}
+		assertThat(found).containsExactlyEntriesOf(expected);
+	}
+
+	@Test
+	void stitchesEntitiesAcrossChunks() {
+		List<User> users = userRepository.search(COLUMNS, FILTER, 0, 20, "id", "asc");
+
+		Map<String, String> found = new LinkedHashMap<>();
+		for (User user : users) {
+			assertThat(user.getRoles()).isNotNull();
+			assertThat(user.getTickets()).isNotNull();
+			found.put(user.getName(), describe(user.getRoles().stream().map(Role::getCode), user.getTickets().stream().map(Ticket::getName)));
+		}
+		assertThat(found).containsExactlyEntriesOf(expected);
+	}
+
+	// The stream reads on the connection of the transaction
+	@Test
+	@Transactional(readOnly = true)
+	void stitchesStreamedRowsAcrossChunks() {
+		Map<String, String> found = new LinkedHashMap<>();
+		try (Stream<UserDTO> users = userRepository.searchStream(UserDTO.class, COLUMNS, FILTER, "id", "asc")) {
+			users.forEach(user -> found.put(user.getName(),
+					describe(user.getRoles().stream().map(RoleDTO::getCode), user.getTickets().stream().map(TicketDTO::getName))));
+		}
+		assertThat(found).containsExactlyEntriesOf(expected);
+	}
+
+	private static String describe(Stream<String> roles, Stream<String> tickets) {
+		return roles.sorted().collect(Collectors.joining(",")) + "|" + tickets.sorted().collect(Collectors.joining(","));
+	}
+
+}
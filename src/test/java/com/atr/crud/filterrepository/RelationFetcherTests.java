@@ -0,0 +1,212 @@
+package com.atr.crud.filterrepository;
+
+import com.atr.crud.controller.RoleDTO;
+import com.atr.crud.controller.TicketDTO;
+import com.atr.crud.controller.UserDTO;
+import com.atr.crud.domain.Role;
+import com.atr.crud.domain.Ticket;
+import com.atr.crud.domain.User;
+import com.atr.crud.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+//
+// Relation fetches on worker threads (3 permits: the caller and up to 2 workers): results in fetch order, fetches run
+// on the caller without a free permit, and every permit given back, also when a fetch fails
+//
+@SpringBootTest(properties = {"crud.search.bulkhead-permits=3", "crud.search.relation-parallelism=2", "crud.search.relation-threads=2",
+		"crud.search.related-batch-size=3"})
+class RelationFetcherTests {
+
+	private static final int PERMITS = 3;
+
+	@Autowired
+	RelationFetcher relationFetcher;
+
+	@Autowired
+	RepositoryBulkhead repositoryBulkhead;
+
+	@Autowired
+	UserRepository userRepository;
+
+	@Autowired
+	EntityManagerFactory entityManagerFactory;
+
+	private EntityManager entityManager;
+
+	@BeforeEach
+	void createEntityManager() {
+		entityManager = entityManagerFactory.createEntityManager();
+	}
+
+	@AfterEach
+	void closeEntityManager() {
+		entityManager.close();
+	}
+
+	@Test
+	void returnsTheResultsInFetchOrder() {
+		List<Function<EntityManager, String>> fetches = new ArrayList<>();
+		for (int index = 0; index < 8; index++) {
+			int fetchIndex = index;
+			fetches.add(fetchEntityManager -> {
+				sleep(fetchIndex % 3 == 0 ? 50 : 5);
+				return fetchIndex + "@" + Thread.currentThread().getName();
+			});
+		}
+
+		List<String> results = relationFetcher.fetchAll(entityManager, fetches);
+
+		assertThat(results).extracting(result -> result.substring(0, result.indexOf('@')))
+				.containsExactlyElementsOf(IntStream.range(0, 8).mapToObj(String::valueOf).toList());
+		assertThat(results).anyMatch(result -> result.contains("@relation-fetch-"));
+		assertThat(results).anyMatch(result -> result.endsWith("@" + Thread.currentThread().getName()));
+		assertPermitsFree();
+	}
+
+	@Test
+	void runsOnTheCallerWithoutAFreePermit() {
+		for (int permit = 0; permit < PERMITS; permit++) {
+			assertThat(repositoryBulkhead.tryAcquireExtra()).isTrue();
+		}
+		try {
+			List<Function<EntityManager, String>> fetches = new ArrayList<>();
+			for (int index = 0; index < 4; index++) {
+				fetches.add(fetchEntityManager -> Thread.currentThread().getName());
+			}
+
+			assertThat(relationFetcher.fetchAll(entityManager, fetches)).containsOnly(Thread.currentThread().getName());
+		} finally {
+			for (int permit = 0; permit < PERMITS; permit++) {
+				repositoryBulkhead.releaseExtra();
+			}
+		}
+		assertPermitsFree();
+	}
+
+	@Test
+	void givesThePermitsBackWhenAFetchFails() throws InterruptedException {
+		List<Function<EntityManager, String>> fetches = new ArrayList<>();
+		for (int index = 0; index < 8; index++) {
+			int fetchIndex = index;
+			fetches.add(fetchEntityManager -> {
+				sleep(20);
+				if (fetchIndex == 1) {
+					throw new IllegalStateException("fetch " + fetchIndex);
+				}
+				return "fetch " + fetchIndex;
+			});
+		}
+
+		assertThatThrownBy(() -> relationFetcher.fetchAll(entityManager, fetches))
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessage("fetch 1");
+
+		// Workers already running give theirs back when they finish
+		for (int attempt = 0; attempt < 50 && !permitsFree(); attempt++) {
+			Thread.sleep(20);
+		}
+		assertPermitsFree();
+	}
+
+	@Test
+	void stitchesTheRelationsOfTheSerialSearch() {
+		Role admin = new Role();
+		admin.setCode("admin");
+		Role guest = new Role();
+		guest.setCode("guest");
+		List<User> users = new ArrayList<>();
+		Map<String, String> expected = new LinkedHashMap<>();
+		for (int index = 0; index < 10; index++) {
+			User user = new User();
+			user.setType("relation-fetch-test");
+			user.setName("user" + index);
+			if (index % 2 == 0) {
+				user.getRoles().add(admin);
+			}
+			if (index % 3 == 0) {
+				user.getRoles().add(guest);
+			}
+			for (int ticketIndex = 0; ticketIndex < index % 4; ticketIndex++) {
+				Ticket ticket = new Ticket();
+				ticket.setName("ticket" + index + "-" + ticketIndex);
+				user.addTicket(ticket);
+			}
+			users.add(user);
+			expected.put(user.getName(), describe(user.getRoles().stream().map(Role::getCode), user.getTickets().stream().map(Ticket::getName)));
+		}
+		userRepository.saveAll(users);
+
+		// 10 users in chunks of 3: 4 fetches by relation, 8 in all. Serial with the 2 worker permits taken
+		assertThat(repositoryBulkhead.tryAcquireExtra()).isTrue();
+		assertThat(repositoryBulkhead.tryAcquireExtra()).isTrue();
+		Map<String, String> serial;
+		try {
+			serial = relations();
+		} finally {
+			repositoryBulkhead.releaseExtra();
+			repositoryBulkhead.releaseExtra();
+		}
+		Map<String, String> parallel = relations();
+
+		assertThat(serial).containsExactlyEntriesOf(expected);
+		assertThat(parallel).containsExactlyEntriesOf(serial);
+		assertPermitsFree();
+	}
+
+	private Map<String, String> relations() {
+		List<UserDTO> found = userRepository.searchAs(UserDTO.class, List.of("name", "roles", "tickets"), "type==relation-fetch-test",
+				0, 20, "id", "asc");
+
+		Map<String, String> relations = new LinkedHashMap<>();
+		for (UserDTO user : found) {
+			relations.put(user.getName(), describe(user.getRoles().stream().map(RoleDTO::getCode), user.getTickets().stream().map(TicketDTO::getName)));
+		}
+		return relations;
+	}
+
+	private static String describe(Stream<String> roles, Stream<String> tickets) {
+		return roles.sorted().collect(Collectors.joining(",")) + "|" + tickets.sorted().collect(Collectors.joining(","));
+	}
+
+	private boolean permitsFree() {
+		int acquired = 0;
+		while (acquired < PERMITS && repositoryBulkhead.tryAcquireExtra()) {
+			acquired++;
+		}
+		for (int permit = 0; permit < acquired; permit++) {
+			repositoryBulkhead.releaseExtra();
+		}
+		return acquired == PERMITS;
+	}
+
+	private void assertPermitsFree() {
+		assertThat(permitsFree()).as("every permit free").isTrue();
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
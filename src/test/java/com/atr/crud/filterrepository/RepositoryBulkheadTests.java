@@ -0,0 +1,161 @@
+package com.atr.crud.filterrepository;
+
+import com.atr.crud.controller.UserDTO;
+import com.atr.crud.domain.User;
+import com.atr.crud.repository.UserRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Reader;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//
+// One permit: taken by @BulkheadPermit methods before their transaction, reused by their repository calls, and kept by
+// returned streams and readers until they are closed
+//
+@SpringBootTest(properties = {"crud.search.bulkhead-permits=1", "crud.search.bulkhead-timeout=500ms"})
+@AutoConfigureMockMvc
+class RepositoryBulkheadTests {
+
+	@Autowired
+	UserRepository userRepository;
+
+	@Autowired
+	RepositoryBulkhead repositoryBulkhead;
+
+	@Autowired
+	PermitHolder permitHolder;
+
+	@Autowired
+	DataSource dataSource;
+
+	@Autowired
+	MockMvc mockMvc;
+
+	@Test
+	void takesThePermitBeforeTheTransaction() {
+		permitHolder.run(() -> {
+			assertThat(TransactionSynchronizationManager.isActualTransactionActive()).isTrue();
+			assertThat(repositoryBulkhead.tryAcquireExtra()).isFalse();
+			// Nested repository calls reuse the permit
+			userRepository.count("");
+		});
+
+		assertPermitFree();
+	}
+
+	@Test
+	void waitsForThePermitWithoutAConnection() throws Exception {
+		CountDownLatch holding = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(1);
+		CompletableFuture<Void> holder = CompletableFuture.runAsync(() -> permitHolder.run(() -> {
+			holding.countDown();
+			await(done);
+		}));
+		holding.await(5, TimeUnit.SECONDS);
+
+		AtomicBoolean ran = new AtomicBoolean();
+		CompletableFuture<Void> waiting = CompletableFuture.runAsync(() -> permitHolder.run(() -> ran.set(true)));
+		Thread.sleep(200);
+		// Only the holder has a connection, the other one waits before its transaction
+		assertThat(((HikariDataSource) dataSource).getHikariPoolMXBean().getActiveConnections()).isEqualTo(1);
+
+		assertThatThrownBy(waiting::join).hasCauseInstanceOf(TransientDataAccessResourceException.class);
+		assertThat(ran).isFalse();
+
+		done.countDown();
+		holder.join();
+		assertPermitFree();
+	}
+
+	@Test
+	void keepsThePermitUntilTheStreamIsClosed() {
+		Stream<UserDTO> users = userRepository.searchStream(UserDTO.class, null, "id==0", "id", "desc");
+		assertThat(repositoryBulkhead.tryAcquireExtra()).isFalse();
+
+		users.close();
+		users.close();
+
+		assertPermitFree();
+	}
+
+	@Test
+	void keepsThePermitUntilTheReaderIsClosed() throws Exception {
+		User user = new User();
+		user.setType("bulkhead-test");
+		user.setDescription("text");
+		Long id = userRepository.save(user).getId();
+
+		Reader description = permitHolder.call(() -> userRepository.readClob(id, "description"));
+		assertThat(repositoryBulkhead.tryAcquireExtra()).isFalse();
+
+		description.close();
+
+		assertPermitFree();
+	}
+
+	@Test
+	void streamsHandlersWithTheirOwnPermit() throws Exception {
+		mockMvc.perform(get("/api/users/stream").param("q", "id==0")).andExpect(status().isOk());
+
+		assertPermitFree();
+	}
+
+	private void assertPermitFree() {
+		assertThat(repositoryBulkhead.tryAcquireExtra()).isTrue();
+		repositoryBulkhead.releaseExtra();
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@TestConfiguration
+	static class PermitHolderConfiguration {
+
+		@Bean
+		PermitHolder permitHolder() {
+			return new PermitHolder();
+		}
+	}
+
+	static class PermitHolder {
+
+		@Transactional(readOnly = true)
+		@BulkheadPermit
+		public void run(Runnable body) {
+			body.run();
+		}
+
+		// Not a @BulkheadPermit method: the repository call takes the permit and hands it to its result
+		@Transactional(readOnly = true)
+		public <V> V call(Supplier<V> body) {
+			return body.get();
+		}
+	}
+
+}
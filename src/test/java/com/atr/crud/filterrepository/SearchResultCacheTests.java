@@ -0,0 +1,164 @@
+package com.atr.crud.filterrepository;
+
+import com.atr.crud.controller.RoleDTO;
+import com.atr.crud.controller.UserDTO;
+import com.atr.crud.domain.Role;
+import com.atr.crud.domain.Ticket;
+import com.atr.crud.domain.User;
+import com.atr.crud.filterrepository.change.EntityChangeEvent;
+import com.atr.crud.filterrepository.snapshot.SnapshotRefreshEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SearchResultCacheTests {
+
+	private static final SearchResultCache.SearchResultKey KEY = new SearchResultCache.SearchResultKey(User.class, UserDTO.class,
+			List.of("name", "roles"), "", null, 0, 20, "id", "desc");
+
+	private SearchResultCache cache;
+
+	private final AtomicInteger searches = new AtomicInteger();
+
+	@BeforeEach
+	void createCache() {
+		FilterRepositoryProperties properties = new FilterRepositoryProperties();
+		properties.setResultCacheEnabled(true);
+		cache = new SearchResultCache(properties, new SimpleMeterRegistry());
+	}
+
+	@Test
+	void returnsCopiesOfTheCachedPage() {
+		SearchPage<UserDTO> first = get(Set.of(User.class, Role.class), false);
+		first.getContent().get(0).setName("changed");
+		first.getContent().get(0).getRoles().clear();
+		first.getContent().add(new UserDTO());
+
+		SearchPage<UserDTO> second = get(Set.of(User.class, Role.class), false);
+		SearchPage<UserDTO> third = get(Set.of(User.class, Role.class), false);
+
+		assertThat(searches).hasValue(1);
+		assertThat(second.getContent()).hasSize(2);
+		assertThat(second.getContent().get(0).getName()).isEqualTo("user1");
+		assertThat(second.getContent().get(0).getRoles()).extracting(RoleDTO::getCode).containsExactly("admin");
+		assertThat(second.getContent().get(0)).isNotSameAs(third.getContent().get(0));
+		assertThat(second.getContent().get(0).getRoles()).isNotSameAs(third.getContent().get(0).getRoles());
+	}
+
+	@Test
+	void removesPagesOfTheChangedType() {
+		get(Set.of(User.class, Role.class), false);
+
+		cache.onEntityChange(change(EntityChangeEvent.ChangeType.UPDATE, Ticket.class, 1L));
+		get(Set.of(User.class, Role.class), false);
+		assertThat(searches).hasValue(1);
+
+		cache.onEntityChange(change(EntityChangeEvent.ChangeType.UPDATE, Role.class, 1L));
+		get(Set.of(User.class, Role.class), false);
+		assertThat(searches).hasValue(2);
+	}
+
+	@Test
+	void removesPagesTrackedByIdOnlyForTheirRows() {
+		get(Set.of(User.class, Role.class), true);
+
+		cache.onEntityChange(change(EntityChangeEvent.ChangeType.UPDATE, User.class, 3L));
+		get(Set.of(User.class, Role.class), true);
+		assertThat(searches).hasValue(1);
+
+		cache.onEntityChange(change(EntityChangeEvent.ChangeType.UPDATE, User.class, 2L));
+		get(Set.of(User.class, Role.class), true);
+		assertThat(searches).hasValue(2);
+
+		// A new row can belong to the page
+		cache.onEntityChange(change(EntityChangeEvent.ChangeType.PERSIST, User.class, 3L));
+		get(Set.of(User.class, Role.class), true);
+		assertThat(searches).hasValue(3);
+
+		cache.onEntityChange(change(EntityChangeEvent.ChangeType.UPDATE, Role.class, 9L));
+		get(Set.of(User.class, Role.class), true);
+		assertThat(searches).hasValue(4);
+	}
+
+	@Test
+	void removesFilteredPagesOnAnyChange() {
+		get(null, false);
+
+		cache.onEntityChange(change(EntityChangeEvent.ChangeType.REMOVE, Ticket.class, 1L));
+		get(null, false);
+
+		assertThat(searches).hasValue(2);
+	}
+
+	@Test
+	void doesNotCachePagesSearchedWhileAChangeIsFlushed() {
+		cache.get(KEY, Set.of(User.class, Role.class), false, rootIds -> {
+			// Flushed (not committed yet) while the search reads
+			cache.onEntityFlush(change(EntityChangeEvent.ChangeType.UPDATE, Ticket.class, 1L));
+			return page(rootIds);
+		});
+
+		get(Set.of(User.class, Role.class), false);
+
+		assertThat(searches).hasValue(2);
+	}
+
+	@Test
+	void removesPagesOfARefreshedSnapshot() {
+		get(Set.of(User.class, Role.class), true);
+
+		cache.onSnapshotRefresh(new SnapshotRefreshEvent(Set.of(Ticket.class)));
+		get(Set.of(User.class, Role.class), true);
+		assertThat(searches).hasValue(1);
+
+		// Every row of the type, not only the ids of the page
+		cache.onSnapshotRefresh(new SnapshotRefreshEvent(Set.of(User.class)));
+		get(Set.of(User.class, Role.class), true);
+		assertThat(searches).hasValue(2);
+
+		// Refreshed while the search reads: not cached
+		SearchResultCache.SearchResultKey filtered = new SearchResultCache.SearchResultKey(User.class, UserDTO.class,
+				List.of("name"), "roles.code==admin", null, 0, 20, "id", "desc");
+		cache.get(filtered, null, false, rootIds -> {
+			cache.onSnapshotRefresh(new SnapshotRefreshEvent(Set.of(Role.class)));
+			return page(rootIds);
+		});
+		cache.get(filtered, null, false, this::page);
+		assertThat(searches).hasValue(4);
+	}
+
+	private SearchPage<UserDTO> get(Set<Class<?>> types, boolean idTracked) {
+		return cache.get(KEY, types, idTracked, this::page);
+	}
+
+	// Users 1 and 2, their ids collected when tracked
+	private SearchPage<UserDTO> page(Set<Object> rootIds) {
+		searches.incrementAndGet();
+		List<UserDTO> users = new ArrayList<>();
+		for (long id = 1; id <= 2; id++) {
+			UserDTO user = new UserDTO();
+			user.setId(id);
+			user.setName("user" + id);
+			RoleDTO role = new RoleDTO();
+			role.setCode("admin");
+			user.getRoles().add(role);
+			users.add(user);
+			if (rootIds != null) {
+				rootIds.add(id);
+			}
+		}
+		return new SearchPage<>(users, null);
+	}
+
+	private static EntityChangeEvent change(EntityChangeEvent.ChangeType changeType, Class<?> entityClass, Object id) {
+		return new EntityChangeEvent(changeType, entityClass, id, null);
+	}
+
+}
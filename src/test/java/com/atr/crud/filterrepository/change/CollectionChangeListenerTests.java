@@ -0,0 +1,70 @@
+package com.atr.crud.filterrepository.change;
+
+import com.atr.crud.domain.Role;
+import com.atr.crud.domain.User;
+import com.atr.crud.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@RecordApplicationEvents
+class CollectionChangeListenerTests {
+
+	@Autowired
+	UserRepository userRepository;
+
+	@Autowired
+	EntityManager entityManager;
+
+	@Autowired
+	TransactionTemplate transactionTemplate;
+
+	@Autowired
+	ApplicationEvents events;
+
+	@Test
+	void publishesAnOwnerUpdateWhenOnlyACollectionChanges() {
+		User user = new User();
+		user.setType("collection-change");
+		Long userId = userRepository.save(user).getId();
+		events.clear();
+
+		transactionTemplate.executeWithoutResult(status -> {
+			Role role = new Role();
+			role.setCode("collection-change");
+			entityManager.persist(role);
+			entityManager.find(User.class, userId).addRole(role);
+		});
+
+		assertThat(events.stream(EntityChangeEvent.class))
+				.anySatisfy(event -> {
+					assertThat(event.getChangeType()).isEqualTo(EntityChangeEvent.ChangeType.UPDATE);
+					assertThat(event.getEntityClass()).isEqualTo(User.class);
+					assertThat(event.getId()).isEqualTo(userId);
+				});
+	}
+
+	@Test
+	void publishesNoUpdateOfARemovedOwner() {
+		User user = new User();
+		user.setType("collection-change");
+		Role role = new Role();
+		role.setCode("collection-removed");
+		user.addRole(role);
+		Long userId = userRepository.save(user).getId();
+		events.clear();
+
+		userRepository.deleteById(userId);
+
+		assertThat(events.stream(EntityChangeEvent.class).map(EntityChangeEvent::getChangeType))
+				.containsExactly(EntityChangeEvent.ChangeType.REMOVE);
+	}
+
+}
@@ -0,0 +1,78 @@
+package com.atr.crud.filterrepository.fulltext;
+
+import com.atr.crud.controller.UserDTO;
+import com.atr.crud.domain.User;
+import com.atr.crud.repository.UserRepository;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//
+// =fts= through the index ids, bound in one IN list up to crud.search.full-text-max-ids ids and in several above it:
+// the same whole word and prefix matches as FullTextIndex.matches on both sides of the cap
+//
+@SpringBootTest(properties = "crud.search.full-text-max-ids=2")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class FullTextSearchTests {
+
+	private static final String[] DESCRIPTIONS = {"Alpha beta", "alpha Gamma", "ALPHA delta", "beta", "alphabet", "xalpha gamma"};
+
+	@Autowired
+	UserRepository userRepository;
+
+	private final List<Long> ids = new ArrayList<>();
+
+	@BeforeAll
+	void createUsers() {
+		for (String description : DESCRIPTIONS) {
+			User user = new User();
+			user.setType("fts-test");
+			user.setDescription(description);
+			ids.add(userRepository.save(user).getId());
+		}
+	}
+
+	@Test
+	void bindsTheIdsOfFewMatches() {
+		assertThat(search("description=fts='alpha gam*'")).containsExactly(ids.get(1));
+		assertThat(search("description=fts=(delta,'gam*')")).containsExactlyInAnyOrder(ids.get(1), ids.get(2), ids.get(5));
+	}
+
+	@Test
+	void bindsTheIdsOfManyMatchesInChunks() {
+		// Whole words only: not 'alphabet' nor 'xalpha'
+		assertThat(search("description=fts=alpha")).containsExactlyInAnyOrder(ids.get(0), ids.get(1), ids.get(2));
+		assertThat(search("description=fts=alp*")).containsExactlyInAnyOrder(ids.get(0), ids.get(1), ids.get(2), ids.get(4));
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"alpha", "alp*", "gam*", "'alpha gam*'", "('BETA',delta)", "'alp* beta'", "x*", "missing"})
+	void matchesLikeTheIndexAtAnySize(String query) {
+		List<String> queries = query.startsWith("(") ? List.of(query.substring(1, query.length() - 1).replace("'", "").split(","))
+				: List.of(query.replace("'", ""));
+		List<Long> expected = new ArrayList<>();
+		for (int index = 0; index < DESCRIPTIONS.length; index++) {
+			if (FullTextIndex.matches(DESCRIPTIONS[index], queries)) {
+				expected.add(ids.get(index));
+			}
+		}
+
+		assertThat(search("description=fts=" + query)).isEqualTo(expected);
+	}
+
+	private List<Long> search(String filter) {
+		return userRepository.searchAs(UserDTO.class, List.of("name"), "type==fts-test;" + filter, 0, 20, "id", "asc").stream()
+				.map(UserDTO::getId)
+				.toList();
+	}
+
+}
@@ -0,0 +1,66 @@
+package com.atr.crud.filterrepository.fulltext;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InvertedIndexTests {
+
+	@Test
+	void findsRowsContainingEveryTerm() {
+		InvertedIndex index = new InvertedIndex();
+		index.put(1L, "The quick brown fox");
+		index.put(2L, "A quick-witted dog, quick!");
+		index.put(3L, "Brown DOG");
+
+		assertThat(index.search("quick")).containsExactlyInAnyOrder(1L, 2L);
+		assertThat(index.search("QUICK dog")).containsExactly(2L);
+		assertThat(index.search("brown, dog")).containsExactly(3L);
+		assertThat(index.search("cat")).isEmpty();
+		assertThat(index.search(" ,.")).isEmpty();
+	}
+
+	@Test
+	void findsTermsByPrefix() {
+		InvertedIndex index = new InvertedIndex();
+		index.put(1L, "description");
+		index.put(2L, "describe it");
+		index.put(3L, "desk");
+		index.put(4L, "other");
+
+		assertThat(index.search("descr*")).containsExactlyInAnyOrder(1L, 2L);
+		assertThat(index.search("des*")).containsExactlyInAnyOrder(1L, 2L, 3L);
+		assertThat(index.search("des* it")).containsExactly(2L);
+		// Anything after the wildcard is ignored, a leading one is not a term
+		assertThat(index.search("desk*xyz")).containsExactly(3L);
+		assertThat(index.search("*other")).isEmpty();
+	}
+
+	@Test
+	void replacesAndRemovesRows() {
+		InvertedIndex index = new InvertedIndex();
+		index.put(1L, "old text");
+		index.put(1L, "new text");
+
+		assertThat(index.search("old")).isEmpty();
+		assertThat(index.search("new text")).containsExactly(1L);
+
+		index.remove(1L);
+		index.put(2L, null);
+
+		assertThat(index.search("text")).isEmpty();
+		assertThat(index.search("t*")).isEmpty();
+	}
+
+	@Test
+	void matchesLikeTheIndex() {
+		String text = "Año 2023: naïve café";
+		InvertedIndex index = new InvertedIndex();
+		index.put(1L, text);
+
+		for (String query : new String[] {"año", "2023", "NAÏVE caf*", "cafe", "naï*", "año 2024", "20*"}) {
+			assertThat(InvertedIndex.matches(text, query)).as(query).isEqualTo(!index.search(query).isEmpty());
+		}
+	}
+
+}
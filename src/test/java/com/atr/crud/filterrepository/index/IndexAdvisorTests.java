@@ -0,0 +1,82 @@
+package com.atr.crud.filterrepository.index;
+
+import com.atr.crud.domain.User;
+import com.atr.crud.filterrepository.FilterRepositoryProperties;
+import com.atr.crud.filterrepository.rsql.RsqlFilterCache;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//
+// Index recommendations from usages recorded on their own statistics: the columns already leading an index (primary
+// and foreign keys) skipped, the others ranked by latency weighted by usage kind. The web endpoint only reads them
+//
+@SpringBootTest
+@AutoConfigureMockMvc
+class IndexAdvisorTests {
+
+	private static final long MILLIS = 1_000_000;
+
+	@Autowired
+	RsqlFilterCache rsqlFilterCache;
+
+	@Autowired
+	FilterRepositoryProperties properties;
+
+	@Autowired
+	EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	MockMvc mockMvc;
+
+	@Test
+	void ranksTheColumnsWithoutAnIndexByWeightedLatency() {
+		SearchUsageStatistics statistics = new SearchUsageStatistics(rsqlFilterCache, properties);
+		// Primary key
+		statistics.record(User.class, "id==1", null, 500 * MILLIS);
+		// Foreign key of us_ticket skipped, its name column kept: 45
+		statistics.record(User.class, "tickets.name==t", null, 45 * MILLIS);
+		// 100 * 0.6
+		statistics.record(User.class, "age=gt=3", null, 100 * MILLIS);
+		// 100 * 0.8
+		statistics.record(User.class, "surname==smi*", null, 100 * MILLIS);
+		// 30 + 50 * 0.4, a single recommendation for both usages
+		statistics.record(User.class, "name==x", null, 30 * MILLIS);
+		statistics.record(User.class, null, "name", 50 * MILLIS);
+		// Can not use an index
+		statistics.record(User.class, "nickname==*x", null, 900 * MILLIS);
+		statistics.record(User.class, "country!=es", null, 900 * MILLIS);
+
+		List<IndexRecommendation> recommendations = new IndexAdvisor(statistics, entityManagerFactory, jdbcTemplate, properties).recommend();
+
+		assertThat(recommendations).extracting(recommendation -> recommendation.getTable() + "." + String.join(",", recommendation.getColumns()))
+				.containsExactly("us_user.surname", "us_user.age", "us_user.name", "us_ticket.name");
+		assertThat(recommendations).extracting(IndexRecommendation::getScore)
+				.containsExactly(80.0, 60.0, 50.0, 45.0);
+		assertThat(recommendations.get(2).getProperties()).containsExactly("User.name");
+		assertThat(recommendations.get(2).getSearches()).isEqualTo(2);
+	}
+
+	@Test
+	void readsTheEndpointOnlyOverTheWeb() throws Exception {
+		mockMvc.perform(get("/actuator/searchindexes"))
+				.andExpect(status().isOk());
+		mockMvc.perform(delete("/actuator/searchindexes"))
+				.andExpect(status().isMethodNotAllowed());
+	}
+
+}
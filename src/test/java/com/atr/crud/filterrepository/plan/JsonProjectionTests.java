@@ -0,0 +1,90 @@
+package com.atr.crud.filterrepository.plan;
+
+import com.atr.crud.controller.UserDTO;
+import com.atr.crud.domain.Role;
+import com.atr.crud.domain.Ticket;
+import com.atr.crud.domain.User;
+import com.atr.crud.repository.UserRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.StringWriter;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//
+// searchJson written straight from the rows against the same page hydrated into DTOs and written by the ObjectMapper:
+// the same bytes for every column selection, with nulls, dates and empty relations
+//
+@SpringBootTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class JsonProjectionTests {
+
+	private static final String FILTER = "type==json-test";
+
+	@Autowired
+	UserRepository userRepository;
+
+	@Autowired
+	ObjectMapper objectMapper;
+
+	@BeforeAll
+	void createUsers() {
+		Role admin = new Role();
+		admin.setCode("admin");
+		List<User> users = new ArrayList<>();
+		for (int index = 0; index < 6; index++) {
+			User user = new User();
+			user.setType("json-test");
+			user.setName(index == 3 ? null : "json \"" + index + "\" é");
+			user.setAge(index % 2 == 0 ? null : index * 10);
+			user.setDescription("description " + index);
+			user.setCreatedAt(OffsetDateTime.of(2023, 5, index + 1, 10, 30, 15, 0, ZoneOffset.UTC));
+			if (index % 3 != 2) {
+				user.getRoles().add(admin);
+			}
+			for (int ticketIndex = 0; ticketIndex < index % 3; ticketIndex++) {
+				Ticket ticket = new Ticket();
+				ticket.setName("ticket " + index + "-" + ticketIndex);
+				user.addTicket(ticket);
+			}
+			users.add(user);
+		}
+		userRepository.saveAll(users);
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {
+			"",
+			"name",
+			"name,age,createdAt",
+			"id,description",
+			"name,roles",
+			"roles.code,tickets",
+			"age,tickets.name,roles"
+	})
+	void writesTheBytesOfTheDtos(String columnList) throws Exception {
+		List<String> columns = columnList.isEmpty() ? List.of() : Arrays.asList(columnList.split(","));
+
+		StringWriter json = new StringWriter();
+		try (JsonGenerator generator = objectMapper.getFactory().createGenerator(json)) {
+			userRepository.searchJson(generator, UserDTO.class, columns, FILTER, 0, 10, "id", "desc");
+		}
+
+		String dtos = objectMapper.writeValueAsString(userRepository.searchAs(UserDTO.class, columns, FILTER, 0, 10, "id", "desc"));
+		assertThat(dtos).startsWith("[{");
+		assertThat(json.toString()).isEqualTo(dtos);
+	}
+
+}
@@ -0,0 +1,108 @@
+package com.atr.crud.filterrepository.rsql;
+
+import com.atr.crud.controller.UserDTO;
+import com.atr.crud.domain.Role;
+import com.atr.crud.domain.User;
+import com.atr.crud.repository.UserRepository;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//
+// filterPredicate (entities and DTOs in memory) against the same filter run as SQL: same rows for each operator,
+// LIKE patterns, nulls and plural relations
+//
+@SpringBootTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class FilterPredicateTests {
+
+	private static final String TYPE = "predicate-test";
+
+	@Autowired
+	UserRepository userRepository;
+
+	@BeforeAll
+	void createUsers() {
+		Role admin = role("admin");
+		Role guest = role("guest");
+		String[] names = {"Anna", "anna", "Ann_a", "Bob", "bobby", null, "Carla", "Dave"};
+		// Saved together, the roles are shared
+		List<User> users = new ArrayList<>();
+		for (int index = 0; index < names.length; index++) {
+			User user = new User();
+			user.setType(TYPE);
+			user.setName(names[index]);
+			user.setAge(index % 3 == 0 ? null : 20 + index * 5);
+			if (index % 2 == 0) {
+				user.getRoles().add(admin);
+			}
+			if (index % 3 == 1) {
+				user.getRoles().add(guest);
+			}
+			users.add(user);
+		}
+		userRepository.saveAll(users);
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {
+			"name==Anna",
+			"name==anna",
+			"name==A*",
+			"name==*a",
+			"name==Ann_a",
+			"name!=*b*",
+			"name=in=(Bob,Dave,nobody)",
+			"name=out=(Bob,Dave)",
+			"name=isnull=true",
+			"name=isnotnull=true",
+			"age>40",
+			"age=ge=40;age=lt=55",
+			"age<=30,name==Dave",
+			"age==25",
+			"age!=25",
+			"age=in=(25,30,55)",
+			"age=isnull=true",
+			"roles.code==admin",
+			"roles.code==gu*",
+			"roles.code=in=(admin,guest)",
+			"roles.code==admin;roles.code==guest",
+			"roles.code==admin,age>50"
+	})
+	void matchesTheSqlRows(String filter) {
+		List<Long> sqlIds = userRepository.searchAs(UserDTO.class, List.of("name"), "type==" + TYPE + ";(" + filter + ")", 0, 100, "id", "asc").stream()
+				.map(UserDTO::getId)
+				.toList();
+
+		List<Long> dtoIds = userRepository.searchAs(UserDTO.class, List.of("name", "age", "roles"), "type==" + TYPE, 0, 100, "id", "asc").stream()
+				.filter(userRepository.filterPredicate(UserDTO.class, filter))
+				.map(UserDTO::getId)
+				.toList();
+
+		List<Long> entityIds = userRepository.findAll(List.of("roles")).stream()
+				.filter(user -> TYPE.equals(user.getType()))
+				.filter(userRepository.filterPredicate(User.class, filter))
+				.map(User::getId)
+				.sorted()
+				.toList();
+
+		assertThat(sqlIds).isNotEmpty();
+		assertThat(dtoIds).isEqualTo(sqlIds);
+		assertThat(entityIds).isEqualTo(sqlIds);
+	}
+
+	private static Role role(String code) {
+		Role role = new Role();
+		role.setCode(code);
+		return role;
+	}
+
+}
@@ -0,0 +1,88 @@
+package com.atr.crud.filterrepository.rsql;
+
+import com.atr.crud.controller.UserDTO;
+import com.atr.crud.domain.Role;
+import com.atr.crud.domain.User;
+import com.atr.crud.repository.UserRepository;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//
+// Filters on the plural roles path: each comparison of an AND group matches any role on its own (two different roles
+// can match), an OR group any role matching one of them, and no root row is repeated in the pages nor in the count
+//
+@SpringBootTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class PluralFilterTests {
+
+	private static final String FILTER = "type==plural-test;";
+
+	@Autowired
+	UserRepository userRepository;
+
+	private final Map<String, Long> ids = new HashMap<>();
+
+	@BeforeAll
+	void createUsers() {
+		Map<String, Role> roles = new HashMap<>();
+		for (String code : new String[] {"A", "B", "C"}) {
+			Role role = new Role();
+			role.setCode("plural-" + code);
+			roles.put(code, role);
+		}
+
+		// Name and role codes
+		String[][] users = {{"u0", "A"}, {"u1", "B"}, {"u2", "A", "B"}, {"u3"}, {"u4", "A", "C"}, {"u5", "C"}, {"u6", "A", "B", "C"}};
+		List<User> saved = new ArrayList<>();
+		for (String[] user : users) {
+			User entity = new User();
+			entity.setType("plural-test");
+			entity.setName(user[0]);
+			for (int index = 1; index < user.length; index++) {
+				entity.getRoles().add(roles.get(user[index]));
+			}
+			saved.add(entity);
+		}
+		for (User user : userRepository.saveAll(saved)) {
+			ids.put(user.getName(), user.getId());
+		}
+	}
+
+	@ParameterizedTest
+	@CsvSource(delimiter = '|', value = {
+			"roles.code==plural-A;roles.code==plural-B               | u2,u6",
+			"roles.code==plural-A,roles.code==plural-B               | u0,u1,u2,u4,u6",
+			"roles.code==plural-A;roles.code==plural-B;roles.code==plural-C | u6",
+			"roles.code!=plural-A                                    | u1,u2,u4,u5,u6",
+			"roles.code=out=(plural-A,plural-B)                      | u4,u5,u6",
+			"roles.code==plural-A;roles.code!=plural-A               | u2,u4,u6",
+			"roles.code==plural-C,name==u0                           | u0,u4,u5,u6",
+			"(roles.code==plural-A,roles.code==plural-C);roles.code==plural-B | u2,u6",
+	})
+	void matchesEveryRootOnce(String filter, String names) {
+		List<Long> expected = Arrays.stream(names.split(",")).map(ids::get).sorted().toList();
+
+		List<Long> found = new ArrayList<>();
+		for (int pageNumber = 0; pageNumber < 4; pageNumber++) {
+			for (UserDTO user : userRepository.searchAs(UserDTO.class, List.of("name"), FILTER + "(" + filter + ")", pageNumber, 2, "id", "asc")) {
+				found.add(user.getId());
+			}
+		}
+
+		assertThat(found).isEqualTo(expected);
+		assertThat(userRepository.count(FILTER + "(" + filter + ")")).isEqualTo(expected.size());
+	}
+
+}
@@ -0,0 +1,56 @@
+package com.atr.crud.filterrepository.snapshot;
+
+import com.atr.crud.controller.UserDTO;
+import com.atr.crud.domain.User;
+import com.atr.crud.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//
+// A page searched from the snapshot between a commit and the snapshot refresh (old rows) is cached after the commit
+// invalidation: the refresh removes it, well before the cache TTL
+//
+@SpringBootTest(properties = {"crud.search.snapshot-entities=User", "crud.search.snapshot-lag=200ms",
+		"crud.search.result-cache-enabled=true", "crud.search.result-cache-ttl=1h"})
+class SnapshotCacheTests {
+
+	private static final String FILTER = "type==snapshot-cache-test";
+
+	@Autowired
+	UserRepository userRepository;
+
+	@Test
+	void dropsPagesReadBeforeTheRefresh() throws InterruptedException {
+		User user = new User();
+		user.setType("snapshot-cache-test");
+		user.setName("before");
+		user = userRepository.save(user);
+		waitForName("before");
+
+		user.setName("after");
+		userRepository.save(user);
+		// Maybe the old row, from the snapshot not refreshed yet
+		names();
+
+		waitForName("after");
+	}
+
+	private void waitForName(String name) throws InterruptedException {
+		for (int attempt = 0; attempt < 50 && !names().equals(List.of(name)); attempt++) {
+			Thread.sleep(100);
+		}
+		assertThat(names()).containsExactly(name);
+	}
+
+	private List<String> names() {
+		return userRepository.searchAs(UserDTO.class, List.of("name"), FILTER, 0, 20, "id", "asc").stream()
+				.map(UserDTO::getName)
+				.toList();
+	}
+
+}
@@ -0,0 +1,138 @@
+package com.atr.crud.filterrepository.snapshot;
+
+import com.atr.crud.CrudApplication;
+import com.atr.crud.controller.RoleDTO;
+import com.atr.crud.controller.UserDTO;
+import com.atr.crud.domain.Role;
+import com.atr.crud.domain.User;
+import com.atr.crud.filterrepository.CountMode;
+import com.atr.crud.filterrepository.SearchPage;
+import com.atr.crud.repository.UserRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//
+// The same searches on two applications with the same rows: one scanning the User snapshot, one querying the database
+//
+class SnapshotParityTests {
+
+	private static final List<String> COLUMNS = List.of("name", "age", "roles.code");
+
+	private static ConfigurableApplicationContext snapshotContext;
+
+	private static ConfigurableApplicationContext databaseContext;
+
+	@BeforeAll
+	static void startApplications() {
+		snapshotContext = start("--crud.search.snapshot-entities=User", "--crud.search.snapshot-lag=0");
+		databaseContext = start();
+		createUsers(snapshotContext.getBean(UserRepository.class));
+		createUsers(databaseContext.getBean(UserRepository.class));
+
+		assertThat(snapshotContext.getBean(SnapshotRegistry.class).get(User.class)).isNotNull();
+		assertThat(databaseContext.getBean(SnapshotRegistry.class).get(User.class)).isNull();
+	}
+
+	@AfterAll
+	static void stopApplications() {
+		snapshotContext.close();
+		databaseContext.close();
+	}
+
+	@ParameterizedTest
+	@CsvSource(delimiter = '|', value = {
+			"''                                  | id   | asc",
+			"''                                  | id   | desc",
+			"age>30                              | age  | asc",
+			"age>=30;age<60                      | age  | desc",
+			"age<=20,age>70                      | name | asc",
+			"age=in=(20,40,41)                   | id   | desc",
+			"age=out=(20,40,41)                  | age  | asc",
+			"name==user1*                        | name | desc",
+			"name!=user1*                        | age  | desc",
+			"name==user7                         | id   | asc",
+			"roles.code==admin                   | age  | asc",
+			"roles.code=in=(admin,guest);age<50  | id   | asc",
+	})
+	void findsTheSamePages(String filter, String sortColumn, String sortDirection) {
+		for (int pageNumber = 0; pageNumber < 4; pageNumber++) {
+			assertThat(page(snapshotContext, filter, pageNumber, sortColumn, sortDirection))
+					.as("%s by %s %s, page %d", filter, sortColumn, sortDirection, pageNumber)
+					.isEqualTo(page(databaseContext, filter, pageNumber, sortColumn, sortDirection));
+		}
+		assertThat(keysetPages(snapshotContext, filter, sortColumn, sortDirection))
+				.isEqualTo(keysetPages(databaseContext, filter, sortColumn, sortDirection));
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"", "age>30", "name==user1*", "roles.code==user", "age=out=(20,40)"})
+	void countsTheSameRows(String filter) {
+		assertThat(snapshotContext.getBean(UserRepository.class).count(filter, CountMode.EXACT).getValue())
+				.isEqualTo(databaseContext.getBean(UserRepository.class).count(filter, CountMode.EXACT).getValue());
+	}
+
+	private static ConfigurableApplicationContext start(String... args) {
+		return new SpringApplicationBuilder(CrudApplication.class)
+				.web(WebApplicationType.NONE)
+				.run(args);
+	}
+
+	// Same rows (and ids) in both databases: ties, nulls and several roles
+	private static void createUsers(UserRepository userRepository) {
+		List<Role> roles = new ArrayList<>();
+		for (String code : new String[] {"admin", "user", "guest"}) {
+			Role role = new Role();
+			role.setCode(code);
+			roles.add(role);
+		}
+
+		List<User> users = new ArrayList<>();
+		for (int index = 0; index < 40; index++) {
+			User user = new User();
+			user.setName("user" + index);
+			user.setAge(index % 7 == 0 ? null : (index * 37) % 80);
+			for (int roleIndex = 0; roleIndex < roles.size(); roleIndex++) {
+				if (index % (roleIndex + 2) == 0) {
+					user.addRole(roles.get(roleIndex));
+				}
+			}
+			users.add(user);
+		}
+		userRepository.saveAll(users);
+	}
+
+	private static List<String> page(ConfigurableApplicationContext context, String filter, int pageNumber, String sortColumn, String sortDirection) {
+		return describe(context.getBean(UserRepository.class).searchAs(UserDTO.class, COLUMNS, filter, pageNumber, 7, sortColumn, sortDirection));
+	}
+
+	private static List<String> keysetPages(ConfigurableApplicationContext context, String filter, String sortColumn, String sortDirection) {
+		List<String> users = new ArrayList<>();
+		String cursor = "";
+		do {
+			SearchPage<UserDTO> page = context.getBean(UserRepository.class).searchAfter(UserDTO.class, COLUMNS, filter, cursor, 6, sortColumn, sortDirection);
+			users.addAll(describe(page.getContent()));
+			cursor = page.getNextCursor();
+		} while (cursor != null);
+		return users;
+	}
+
+	private static List<String> describe(List<UserDTO> users) {
+		return users.stream()
+				.map(user -> user.getId() + " " + user.getName() + " " + user.getAge() + " "
+						+ user.getRoles().stream().map(RoleDTO::getCode).sorted().collect(Collectors.joining(",")))
+				.toList();
+	}
+
+}